@@ -1,9 +1,11 @@
 package fse.eclipse.branchrecorder;
 
 import org.eclipse.ui.plugin.AbstractUIPlugin;
+import org.jtool.changerecorder.history.HistoryJournal;
 import org.osgi.framework.BundleContext;
 
 import fse.eclipse.branchrecorder.changerecorder.DirectoryWatcher;
+import fse.eclipse.branchrecorder.changerecorder.ProjectBranchResolver;
 import fse.eclipse.branchrecorder.commit.CommitListener;
 import fse.eclipse.branchrecorder.util.PathUtil;
 
@@ -22,6 +24,8 @@ public class Activator extends AbstractUIPlugin {
         super.start(context);
         plugin = this;
 
+        // ChangeRecorderのジャーナルにブランチを記録させる
+        HistoryJournal.setBranchResolver(new ProjectBranchResolver());
         // ChangeRecorder出力監視
         DirectoryWatcher.start(PathUtil.getOperationHistoryDirPath());
         // Commit監視
@@ -31,6 +35,7 @@ public class Activator extends AbstractUIPlugin {
     }
 
     public void stop(BundleContext context) throws Exception {
+        HistoryJournal.setBranchResolver(null);
         plugin = null;
         super.stop(context);
     }
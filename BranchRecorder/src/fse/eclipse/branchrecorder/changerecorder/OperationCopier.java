@@ -1,23 +1,62 @@
 package fse.eclipse.branchrecorder.changerecorder;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.apache.commons.io.FileUtils;
 import org.eclipse.core.resources.IProject;
-import org.jtool.changerecorder.history.OperationHistory;
-import org.jtool.changerecorder.history.Xml2Operation;
-import org.jtool.changerecorder.operation.IOperation;
-import org.jtool.changerecorder.util.XmlFileStream;
-import org.w3c.dom.Document;
 
 import fse.eclipse.branchrecorder.util.PathUtil;
 
 public class OperationCopier {
+    /**
+     * 最後のファイル追加からコピーまで待つ時間(ms)
+     */
+    private static final long DEBOUNCE_TIME = 500;
+
+    /**
+     * 書き込み途中のHistoryファイルを読み直す最大回数
+     */
+    private static final int MAX_ATTEMPTS = 20;
+
+    private static final String FILE_ATTR = "file";
+    private static final String BRANCH_ATTR = "branch";
+    private static final int TAIL_SIZE = 256;
+
     private final String parentDirPath;
 
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "OperationCopier");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * コピー待ちのHistoryファイルと，その読み込みを試みた回数
+     */
+    private final Map<String, Integer> pendings = new LinkedHashMap<>();
+    private ScheduledFuture<?> flushing;
+
     /**
      * コンストラクタ(親ディレクトリ)
      * @param parentDirPath
@@ -27,21 +66,78 @@ public class OperationCopier {
     }
 
     /**
-     * Historyファイルから，そのプロジェクトがリポジトリかどうか リポジトリならHistoryファイルをコピーする
+     * Historyファイルをコピー待ちに加える<br>
+     * 一定時間ファイルの追加が続かなければ，まとめてコピーし，プロジェクトを1度だけrefreshする
      * @param xmlFile Historyファイル
-     * @throws InterruptedException
      */
-    public void copy(Path xmlFile) throws InterruptedException {
+    public void copy(Path xmlFile) {
+        // ジャーナルのディレクトリなど，XML以外のファイルはコピーしない
+        if (!xmlFile.toString().endsWith(".xml")) {
+            return;
+        }
+
         String filePath = validateXmlFilePath(xmlFile);
-        List<IOperation> operations = readOperations(filePath);
-        String projName = readProjectName(operations);
-
-        ProjectChache pChache = ProjectChache.getInstance();
-        if (shouldCopy(pChache, projName)) {
-            String branchName = pChache.getBranchName();
-            copyHistoryFile(filePath, pChache.getProject(), branchName);
-            // プロジェクトをrefreshして，コピーしたファイルを即時反映する
-            pChache.refreshIProject();
+        synchronized (pendings) {
+            pendings.putIfAbsent(filePath, 0);
+            schedule();
+        }
+    }
+
+    private void schedule() {
+        if (flushing != null) {
+            flushing.cancel(false);
+        }
+        flushing = scheduler.schedule(this::flush, DEBOUNCE_TIME, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * コピー待ちのHistoryファイルから，そのプロジェクトがリポジトリかどうか リポジトリならHistoryファイルをコピーする
+     */
+    private void flush() {
+        Map<String, Integer> files;
+        synchronized (pendings) {
+            files = new LinkedHashMap<>(pendings);
+            pendings.clear();
+            flushing = null;
+        }
+
+        Map<String, Integer> retries = new LinkedHashMap<>();
+        Set<IProject> projects = new LinkedHashSet<>();
+        for (Entry<String, Integer> entry : files.entrySet()) {
+            String filePath = entry.getKey();
+            HistoryInfo info = readHistoryInfo(filePath);
+            if (info == null) {
+                // ファイルが作成された瞬間に飛んでくるため，書き込みが終わっていないことがある
+                int attempts = entry.getValue() + 1;
+                if (attempts < MAX_ATTEMPTS) {
+                    retries.put(filePath, attempts);
+                } else {
+                    System.err.println("Fails to read the history file " + filePath);
+                }
+                continue;
+            }
+
+            ProjectChache pChache = ProjectChache.getInstance();
+            if (shouldCopy(pChache, info.projName)) {
+                // 記録時のブランチがルート要素にあればそれを使い，なければ現在のブランチを使う
+                String branchName = info.branchName != null ? info.branchName : pChache.getBranchName();
+                copyHistoryFile(filePath, pChache.getProject(), branchName);
+                projects.add(pChache.getProject());
+            }
+        }
+
+        // プロジェクトをrefreshして，コピーしたファイルを反映する
+        for (IProject project : projects) {
+            ProjectChache.refreshIProject(project);
+        }
+
+        if (!retries.isEmpty()) {
+            synchronized (pendings) {
+                for (Entry<String, Integer> entry : retries.entrySet()) {
+                    pendings.putIfAbsent(entry.getKey(), entry.getValue());
+                }
+                schedule();
+            }
         }
     }
 
@@ -65,37 +161,66 @@ public class OperationCopier {
     }
 
     /**
-     * Historyファイルから全Operationを取り出す
+     * Historyファイルを先頭から読み，ルート要素からブランチ名を，最初に現れたファイルパスからプロジェクト名を抜き取る
      * @param filePath Historyファイル
-     * @return operations 全Operation
-     * @throws InterruptedException
+     * @return プロジェクト名とブランチ名，ファイルの書き込みが終わっていなければnull
      */
-    private List<IOperation> readOperations(String filePath) throws InterruptedException {
-        // ファイルが作成された瞬間に飛んでくるため(?)，読み込みに失敗することがある(NullPointerException)
-        try {
-            Document doc = XmlFileStream.read(filePath);
-            OperationHistory history = Xml2Operation.convert(doc);
-            return history.getOperations();
-        } catch (NullPointerException n) {
-            // 読み込みに失敗した際，一瞬間をおき再度処理
-            Thread.sleep(100);
-            return readOperations(filePath);
+    private HistoryInfo readHistoryInfo(String filePath) {
+        String rootName = null;
+        HistoryInfo info = new HistoryInfo();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(filePath))) {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+
+                    if (rootName == null) {
+                        rootName = reader.getLocalName();
+                        info.branchName = reader.getAttributeValue(null, BRANCH_ATTR);
+                    }
+                    String projPath = reader.getAttributeValue(null, FILE_ATTR);
+                    if (!isNullPath(projPath)) {
+                        info.projName = cutoutProjectName(projPath);
+                        break;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | XMLStreamException e) {
+            return null;
         }
+
+        if (rootName == null || !isClosed(filePath, rootName)) {
+            return null;
+        }
+        return info;
     }
 
     /**
-     * Operationからプロジェクト名を抜き取る
-     * @param operations
-     * @return プロジェクト名
+     * Historyファイルの末尾がルート要素の終了タグかどうか
+     * @param filePath Historyファイル
+     * @param rootName ルート要素名
+     * @return 書き込みが終わっていればtrue
      */
-    private String readProjectName(List<IOperation> operations) {
-        for (IOperation operation : operations) {
-            String projPath = operation.getFilePath();
-            if (!isNullPath(projPath)) {
-                return cutoutProjectName(projPath);
-            }
+    private boolean isClosed(String filePath, String rootName) {
+        try (RandomAccessFile file = new RandomAccessFile(filePath, "r")) {
+            long length = file.length();
+            int size = (int) Math.min(length, TAIL_SIZE);
+            byte[] bytes = new byte[size];
+            file.seek(length - size);
+            file.readFully(bytes);
+
+            String tail = new String(bytes, StandardCharsets.ISO_8859_1).trim();
+            return tail.endsWith("</" + rootName + ">");
+        } catch (IOException e) {
+            return false;
         }
-        return "";
     }
 
     /**
@@ -141,4 +266,19 @@ public class OperationCopier {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Historyファイルから読み込んだ情報
+     */
+    private static class HistoryInfo {
+        /**
+         * プロジェクト名，ファイルパスがなければ空文字列
+         */
+        String projName = "";
+
+        /**
+         * 記録時のブランチ名，記録されていなければnull
+         */
+        String branchName;
+    }
 }
@@ -0,0 +1,70 @@
+package fse.eclipse.branchrecorder.changerecorder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.jtool.changerecorder.history.BranchResolver;
+
+/**
+ * ChangeRecorderのジャーナルに，Operationを記録したブランチを伝える
+ */
+public class ProjectBranchResolver implements BranchResolver {
+
+    /**
+     * プロジェクト名と，そのリポジトリ(リポジトリでなければnull)
+     */
+    private final Map<String, Repository> repositories = new HashMap<>();
+
+    @Override
+    public String getBranchName(String projectName) {
+        Repository repository = getRepository(projectName);
+        if (repository == null) {
+            return null;
+        }
+
+        try {
+            return repository.getBranch();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * プロジェクトのリポジトリを探す(ProjectChacheと同じく，2つ上のディレクトリまで)
+     * @param projectName プロジェクト名
+     * @return リポジトリ，リポジトリでなければnull
+     */
+    private synchronized Repository getRepository(String projectName) {
+        if (repositories.containsKey(projectName)) {
+            return repositories.get(projectName);
+        }
+
+        Repository repository = null;
+        IProject p = ResourcesPlugin.getWorkspace().getRoot().getProject(projectName);
+        if (p != null && p.getLocation() != null) {
+            File file = new File(p.getLocation().toString());
+            File gParent = file.getParentFile().getParentFile();
+
+            FileRepositoryBuilder b = new FileRepositoryBuilder();
+            b.addCeilingDirectory(gParent);
+            b.findGitDir(file);
+            if (b.getGitDir() != null) {
+                try {
+                    repository = b.build();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        repositories.put(projectName, repository);
+        return repository;
+    }
+}
@@ -1,9 +1,11 @@
 package fse.eclipse.branchrecorder.commit;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.jgit.events.RefsChangedEvent;
 import org.eclipse.jgit.events.RefsChangedListener;
@@ -12,8 +14,10 @@ import org.eclipse.jgit.lib.Repository;
 import org.jtool.changerecorder.history.OperationHistory;
 import org.jtool.changerecorder.util.Time;
 
+import fse.eclipse.branchrecorder.commit.history.CommitBlobStore;
 import fse.eclipse.branchrecorder.commit.history.XmlCommitWriter;
 import fse.eclipse.branchrecorder.commit.operation.CommitOperation;
+import fse.eclipse.branchrecorder.util.RepositoryUtil;
 
 public class CommitListener implements RefsChangedListener {
 
@@ -71,14 +75,17 @@ public class CommitListener implements RefsChangedListener {
             return;
         }
 
-        OperationHistory commitHistory = new OperationHistory();
-        for (Entry<String, String> entry : codeMap.entrySet()) {
-            String path = entry.getKey();
-            String code = codeMap.get(path);
-            commitHistory.add(new CommitOperation(time, path, "", code, id, parentId));
-        }
-
+        IProject project = RepositoryUtil.convertIProject(repository);
+        File blobDir = CommitBlobStore.getBlobDir(project);
         try {
+            // 前回のコミットから変更されたソースコードのみが書き込まれる
+            OperationHistory commitHistory = new OperationHistory();
+            for (Entry<String, String> entry : codeMap.entrySet()) {
+                String path = entry.getKey();
+                String blobId = CommitBlobStore.write(blobDir, entry.getValue());
+                commitHistory.add(new CommitOperation(time, path, "", blobDir, blobId, id, parentId));
+            }
+
             XmlCommitWriter.writeCommitHistory(repository, commitHistory);
         } catch (IOException e) {
             e.printStackTrace();
@@ -0,0 +1,153 @@
+package fse.eclipse.branchrecorder.commit.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.eclipse.core.resources.IProject;
+import org.w3c.dom.Document;
+
+import fse.eclipse.branchrecorder.util.PathUtil;
+
+/**
+ * コミット時のソースコードを内容のハッシュ値をファイル名として格納する<br>
+ * 同じ内容のソースコードは1度だけ書き込まれるため，コミット毎には前回から変更されたファイルのみが書き込まれる
+ */
+public class CommitBlobStore {
+
+    public static final String BlobDirName = ".blobs";
+
+    /**
+     * プロジェクトのHistoryディレクトリ下の格納先を返す
+     * @param project プロジェクト
+     * @return 格納先
+     */
+    public static File getBlobDir(IProject project) {
+        return new File(PathUtil.getProjectBranchPath(project, BlobDirName));
+    }
+
+    /**
+     * Historyファイルから，同じHistoryディレクトリ下の格納先を返す
+     * @param historyFilePath Historyファイル(Historyディレクトリ/ブランチ名/ファイル名)
+     * @return 格納先
+     */
+    public static File getBlobDir(String historyFilePath) {
+        File branchDir = new File(historyFilePath).getAbsoluteFile().getParentFile();
+        if (branchDir == null || branchDir.getParentFile() == null) {
+            return null;
+        }
+        return new File(branchDir.getParentFile(), BlobDirName);
+    }
+
+    /**
+     * 読み込んだDocumentのファイルから，同じHistoryディレクトリ下の格納先を返す
+     * @param doc Historyファイルから読み込んだDocument
+     * @return 格納先，ファイルが分からなければnull
+     */
+    public static File getBlobDir(Document doc) {
+        String uri = doc.getDocumentURI();
+        if (uri == null) {
+            return null;
+        }
+
+        try {
+            return getBlobDir(new File(URI.create(uri)).getPath());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * ソースコードを格納する 同じ内容が格納済みなら書き込まない
+     * @param blobDir 格納先
+     * @param code ソースコード
+     * @return ソースコードのハッシュ値
+     * @throws IOException
+     */
+    public static String write(File blobDir, String code) throws IOException {
+        byte[] bytes = code.getBytes(StandardCharsets.UTF_8);
+        String blobId = digest(bytes);
+
+        File file = new File(blobDir, blobId);
+        if (file.exists()) {
+            return blobId;
+        }
+
+        if (!blobDir.exists() && !blobDir.mkdirs() && !blobDir.exists()) {
+            throw new IOException("cannot create " + blobDir);
+        }
+
+        File tmp = new File(blobDir, blobId + ".tmp");
+        try (OutputStream out = new DeflaterOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.write(bytes);
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            if (!file.exists()) {
+                throw new IOException("cannot write " + file);
+            }
+        }
+        return blobId;
+    }
+
+    /**
+     * ソースコードを格納せずにハッシュ値だけを求める
+     * @param code ソースコード
+     * @return ソースコードのハッシュ値
+     */
+    public static String getBlobId(String code) {
+        return digest(code.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 格納されたソースコードを読み込む
+     * @param blobDir 格納先
+     * @param blobId ソースコードのハッシュ値
+     * @return ソースコード，格納されていなければnull
+     */
+    public static String read(File blobDir, String blobId) {
+        if (blobDir == null || blobId == null) {
+            return null;
+        }
+
+        File file = new File(blobDir, blobId);
+        try (InputStream in = new InflaterInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length() * 4);
+            byte[] buf = new byte[8192];
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                out.write(buf, 0, len);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+        return null;
+    }
+
+    private static String digest(byte[] bytes) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(bytes);
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
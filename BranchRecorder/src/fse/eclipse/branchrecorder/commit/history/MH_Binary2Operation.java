@@ -0,0 +1,40 @@
+package fse.eclipse.branchrecorder.commit.history;
+
+import java.io.IOException;
+
+import org.jtool.changerecorder.history.Binary2Operation;
+import org.jtool.changerecorder.operation.IOperation;
+
+import fse.eclipse.branchrecorder.commit.operation.CommitOperation;
+
+/**
+ * {@link org.jtool.changerecorder.history.Binary2Operation}
+ */
+public class MH_Binary2Operation extends Binary2Operation {
+
+    /**
+     * {@link org.jtool.changerecorder.history.Binary2Operation#readOperation(int)}
+     */
+    @Override
+    protected IOperation readOperation(int tag) throws IOException {
+        if (tag == MH_Operation2Binary.CommitOperationTag) {
+            return readCommitOperation();
+        }
+        return super.readOperation(tag);
+    }
+
+    private CommitOperation readCommitOperation() throws IOException {
+        long time = readTime();
+        String file = readString();
+        String author = readString();
+        String commitId = readString();
+        String parentId = readString();
+        String code = readText();
+        if (code == null) {
+            code = "";
+        }
+
+        CommitOperation op = new CommitOperation(time, file, author, code, commitId, parentId);
+        return op;
+    }
+}
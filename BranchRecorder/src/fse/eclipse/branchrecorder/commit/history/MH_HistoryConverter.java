@@ -0,0 +1,36 @@
+package fse.eclipse.branchrecorder.commit.history;
+
+import java.io.File;
+
+import org.jtool.changerecorder.history.HistoryConverter;
+
+/**
+ * {@link org.jtool.changerecorder.history.HistoryConverter}
+ */
+public class MH_HistoryConverter extends HistoryConverter {
+
+    public MH_HistoryConverter() {
+        super(new MH_Xml2OperationReader(), new MH_Operation2Binary());
+    }
+
+    /**
+     * Converts the XML history files under the given directories into binary files.
+     * Usage: MH_HistoryConverter [-delete] &lt;dir&gt;...
+     */
+    public static void main(String[] args) {
+        boolean delete = false;
+        MH_HistoryConverter converter = new MH_HistoryConverter();
+        try {
+            for (String arg : args) {
+                if (arg.equals("-delete")) {
+                    delete = true;
+                } else {
+                    int count = converter.convert(new File(arg), delete);
+                    System.out.println(arg + ": " + count + " files converted");
+                }
+            }
+        } finally {
+            converter.close();
+        }
+    }
+}
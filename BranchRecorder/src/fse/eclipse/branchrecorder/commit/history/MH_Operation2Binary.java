@@ -0,0 +1,39 @@
+package fse.eclipse.branchrecorder.commit.history;
+
+import java.io.IOException;
+
+import org.jtool.changerecorder.history.BinaryConstants;
+import org.jtool.changerecorder.history.Operation2Binary;
+import org.jtool.changerecorder.operation.IOperation;
+
+import fse.eclipse.branchrecorder.commit.operation.CommitOperation;
+
+/**
+ * {@link org.jtool.changerecorder.history.Operation2Binary}
+ */
+public class MH_Operation2Binary extends Operation2Binary {
+
+    public static final int CommitOperationTag = BinaryConstants.ExtendedOperationTag;
+
+    /**
+     * {@link org.jtool.changerecorder.history.Operation2Binary#writeOperation(IOperation)}
+     */
+    @Override
+    protected void writeOperation(IOperation op) throws IOException {
+        if (op instanceof CommitOperation) {
+            writeCommitOperation((CommitOperation) op);
+        } else {
+            super.writeOperation(op);
+        }
+    }
+
+    private void writeCommitOperation(CommitOperation op) throws IOException {
+        writeTag(CommitOperationTag);
+        writeTime(op.getTime());
+        writeString(op.getFilePath());
+        writeString(op.getAuthor());
+        writeString(op.getCommitId());
+        writeString(op.getParentCommitId());
+        writeText(op.getCode());
+    }
+}
@@ -1,5 +1,6 @@
 package fse.eclipse.branchrecorder.commit.history;
 
+import java.io.File;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
@@ -30,6 +31,10 @@ public class MH_Xml2Operation {
      * {@link org.jtool.changerecorder.history.Xml2Operation#convert(Document)}
      */
     public static OperationHistory convert(Document doc) {
+        if (doc == null) {
+            return null;
+        }
+
         NodeList list = doc.getElementsByTagName(XmlConstantStrings.OperationHistoryElem);
         if (list.getLength() <= 0) {
             System.err.print("invalid operation history format");
@@ -66,12 +71,14 @@ public class MH_Xml2Operation {
             return null;
         }
 
+        File blobDir = CommitBlobStore.getBlobDir(doc);
+
         List<IOperation> ops = new ArrayList<IOperation>();
         NodeList childOperations = operations.getChildNodes();
         for (int i = 0; i < childOperations.getLength(); i++) {
             Node node = childOperations.item(i);
             if (node.getNodeType() == Node.ELEMENT_NODE) {
-                IOperation op = getOperation(node);
+                IOperation op = getOperation(node, blobDir);
                 if (op != null) {
                     ops.add(op);
                 }
@@ -82,21 +89,26 @@ public class MH_Xml2Operation {
         return history;
     }
 
-    private static IOperation getOperation(Node node) {
+    private static IOperation getOperation(Node node, File blobDir) {
         Element elem = (Element) node;
         if (StringComparator.isSame(elem.getNodeName(), XmlCommitWriter.CommitOperationElem)) {
-            return getCommitOperation(elem);
+            return getCommitOperation(elem, blobDir);
         } else {
             return getBaseOperation(node);
         }
     }
 
-    private static CommitOperation getCommitOperation(Element elem) {
+    private static CommitOperation getCommitOperation(Element elem, File blobDir) {
         String time = elem.getAttribute(XmlConstantStrings.TimeAttr);
         String file = elem.getAttribute(XmlConstantStrings.FileAttr);
         String author = elem.getAttribute(XmlConstantStrings.AuthorAttr);
         String commitId = elem.getAttribute(XmlCommitWriter.CommitIdAttr);
         String parentId = elem.getAttribute(XmlCommitWriter.ParentCommitIdAttr);
+        if (elem.hasAttribute(XmlCommitWriter.BlobAttr)) {
+            String blobId = elem.getAttribute(XmlCommitWriter.BlobAttr);
+            return new CommitOperation(Long.parseLong(time), file, author, blobDir, blobId, commitId, parentId);
+        }
+
         String code = getFirstChildText(elem.getElementsByTagName(XmlConstantStrings.CodeElem));
 
         CommitOperation op = new CommitOperation(Long.parseLong(time), file, author, code, commitId, parentId);
@@ -0,0 +1,67 @@
+package fse.eclipse.branchrecorder.commit.history;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.jtool.changerecorder.history.OperationHandler;
+import org.jtool.changerecorder.history.Xml2OperationReader;
+import org.jtool.changerecorder.history.XmlConstantStrings;
+import org.jtool.changerecorder.operation.IOperation;
+import org.jtool.changerecorder.util.StringComparator;
+
+import fse.eclipse.branchrecorder.commit.operation.CommitOperation;
+
+/**
+ * {@link org.jtool.changerecorder.history.Xml2OperationReader}
+ */
+public class MH_Xml2OperationReader extends Xml2OperationReader {
+
+    private File blobDir;
+
+    /**
+     * {@link org.jtool.changerecorder.history.Xml2OperationReader#read(String, OperationHandler)}
+     */
+    @Override
+    public boolean read(String path, OperationHandler handler) throws IOException, XMLStreamException {
+        blobDir = CommitBlobStore.getBlobDir(path);
+        try {
+            return super.read(path, handler);
+        } finally {
+            blobDir = null;
+        }
+    }
+
+    /**
+     * {@link org.jtool.changerecorder.history.Xml2OperationReader#createOperation(String, Map, Map)}
+     */
+    @Override
+    protected IOperation createOperation(String name, Map<String, String> attrs, Map<String, String> texts) {
+        if (StringComparator.isSame(name, XmlCommitWriter.CommitOperationElem)) {
+            return createCommitOperation(attrs, texts);
+        }
+        return super.createOperation(name, attrs, texts);
+    }
+
+    private CommitOperation createCommitOperation(Map<String, String> attrs, Map<String, String> texts) {
+        String time = getAttribute(attrs, XmlConstantStrings.TimeAttr);
+        String file = getAttribute(attrs, XmlConstantStrings.FileAttr);
+        String author = getAttribute(attrs, XmlConstantStrings.AuthorAttr);
+        String commitId = getAttribute(attrs, XmlCommitWriter.CommitIdAttr);
+        String parentId = getAttribute(attrs, XmlCommitWriter.ParentCommitIdAttr);
+        String blobId = attrs.get(XmlCommitWriter.BlobAttr);
+        if (blobId != null) {
+            return new CommitOperation(Long.parseLong(time), file, author, blobDir, blobId, commitId, parentId);
+        }
+
+        String code = texts.get(XmlConstantStrings.CodeElem);
+        if (code == null) {
+            code = "";
+        }
+
+        CommitOperation op = new CommitOperation(Long.parseLong(time), file, author, code, commitId, parentId);
+        return op;
+    }
+}
@@ -27,6 +27,7 @@ public class XmlCommitWriter {
     public static final String CommitOperationElem = "commitOperation";
     public static final String CommitIdAttr = "commitId";
     public static final String ParentCommitIdAttr = "parentId";
+    public static final String BlobAttr = "blob";
 
     public static final String CommitXmlFileName = "-commit.xml";
 
@@ -99,6 +100,12 @@ public class XmlCommitWriter {
         commitElem.setAttribute(ParentCommitIdAttr, cop.getParentCommitId());
         parent.appendChild(commitElem);
 
+        // ソースコードはCommitBlobStoreに格納済み
+        if (cop.getBlobId() != null) {
+            commitElem.setAttribute(BlobAttr, cop.getBlobId());
+            return;
+        }
+
         Element codeElem = doc.createElement(XmlConstantStrings.CodeElem);
         codeElem.appendChild(doc.createTextNode(cop.getCode()));
         commitElem.appendChild(codeElem);
@@ -1,15 +1,24 @@
 package fse.eclipse.branchrecorder.commit.operation;
 
+import java.io.File;
+import java.lang.ref.SoftReference;
+
 import org.jtool.changerecorder.operation.AbstractOperation;
 import org.jtool.changerecorder.operation.IOperation;
 import org.jtool.changerecorder.util.StringComparator;
 
+import fse.eclipse.branchrecorder.commit.history.CommitBlobStore;
+
 public class CommitOperation extends AbstractOperation {
 
     private final String code;
     private final String id;
     private final String parentId;
 
+    private final File blobDir;
+    private final String blobId;
+    private SoftReference<String> blobCode;
+
     public static final IOperation.Type TYPE = IOperation.Type.NULL;
 
     public CommitOperation(long time, String path, String author, String code, String id, String parentId) {
@@ -17,6 +26,21 @@ public class CommitOperation extends AbstractOperation {
         this.code = code;
         this.id = id;
         this.parentId = parentId;
+        this.blobDir = null;
+        this.blobId = null;
+    }
+
+    /**
+     * ソースコードを{@link CommitBlobStore}に格納されたものとして生成する<br>
+     * ソースコードは必要になった時点で読み込む
+     */
+    public CommitOperation(long time, String path, String author, File blobDir, String blobId, String id, String parentId) {
+        super(time, path, AbstractOperation.getUserName());
+        this.code = null;
+        this.id = id;
+        this.parentId = parentId;
+        this.blobDir = blobDir;
+        this.blobId = blobId;
     }
 
     public String getCommitId() {
@@ -44,7 +68,33 @@ public class CommitOperation extends AbstractOperation {
     }
 
     public String getCode() {
-        return code;
+        if (blobId == null) {
+            return code;
+        }
+
+        String c = blobCode != null ? blobCode.get() : null;
+        if (c == null) {
+            c = CommitBlobStore.read(blobDir, blobId);
+            if (c == null) {
+                c = "";
+            }
+            blobCode = new SoftReference<>(c);
+        }
+        return c;
+    }
+
+    public String getBlobId() {
+        return blobId;
+    }
+
+    /**
+     * ソースコードのハッシュ値を返す 格納済みのソースコードは読み込まない
+     */
+    private String getContentId() {
+        if (blobId != null) {
+            return blobId;
+        }
+        return code != null ? CommitBlobStore.getBlobId(code) : null;
     }
 
     @Override
@@ -59,6 +109,6 @@ public class CommitOperation extends AbstractOperation {
         }
 
         CommitOperation cop = (CommitOperation) op;
-        return super.equals(cop) && StringComparator.isSame(code, cop.getCode()) && StringComparator.isSame(id, cop.getCommitId());
+        return super.equals(cop) && StringComparator.isSame(getContentId(), cop.getContentId()) && StringComparator.isSame(id, cop.getCommitId());
     }
 }
@@ -9,6 +9,7 @@ package org.jtool.changerecorder.editor;
 import org.jtool.changerecorder.diff.DiffOperationGenerator;
 import org.jtool.changerecorder.event.OperationEventListener;
 import org.jtool.changerecorder.event.OperationEventSource;
+import org.jtool.changerecorder.history.HistoryJournal;
 import org.jtool.changerecorder.history.OperationHistory;
 import org.jtool.changerecorder.operation.CompoundOperation;
 import org.jtool.changerecorder.operation.CopyOperation;
@@ -29,7 +30,6 @@ import org.jtool.editrecorder.recorder.MacroListener;
 import org.jtool.editrecorder.recorder.Recorder;
 import org.jtool.editrecorder.util.WorkspaceUtilities;
 import org.eclipse.core.resources.IFile;
-import org.eclipse.core.runtime.CoreException;
 import org.eclipse.ui.IEditorPart;
 import java.util.List;
 import java.util.ArrayList;
@@ -46,9 +46,14 @@ public class HistoryManager extends OperationEventSource implements MacroListene
     private static HistoryManager instance = new HistoryManager();
     
     /**
-     * The operation history.
+     * The journal that stores the operation history.
      */
-    private OperationHistory history = new OperationHistory();
+    private HistoryJournal journal = null;
+    
+    /**
+     * The operation stored last, or <code>null</code> if none.
+     */
+    private IOperation lastOperation = null;
     
     /**
      * A recorder that records macros.
@@ -70,6 +75,12 @@ public class HistoryManager extends OperationEventSource implements MacroListene
      */
     private OperationEventListener consoleOperationListener = new ConsoleOperationListener();
     
+    /**
+     * The queue of tasks that convert macros into operations, store them, and send them to the listeners.
+     * All the accesses to the journal are performed by these tasks on a background thread.
+     */
+    private HistoryQueue queue = new HistoryQueue("Operation history");
+    
     /**
      * Creates a manager that records operations performed on an editor.
      */
@@ -90,6 +101,9 @@ public class HistoryManager extends OperationEventSource implements MacroListene
      * Starts recording of operations.
      */
     public void start() {
+        journal = new HistoryJournal(OperationHistory.getOperationHistoryDirPath() + '/' + HistoryJournal.JournalDirName,
+                                     WorkspaceUtilities.getEncoding());
+        journal.recover();
         recorder.addMacroListener(this);
         addOperationEventListener(consoleOperationListener);
     }
@@ -106,9 +120,13 @@ public class HistoryManager extends OperationEventSource implements MacroListene
     
     /**
      * Stops recording of operations.
+     * The operations not yet exported remain in the journal, which are exported when recording starts next.
      */
     public void stop() {
-        writeHistory();
+        queue.flush();
+        if (journal != null) {
+            journal.close();
+        }
         
         if (recorder != null) {
             recorder.removeMacroListener(this);
@@ -128,28 +146,48 @@ public class HistoryManager extends OperationEventSource implements MacroListene
     
     /**
      * Receives a macro event when a new macro is added.
+     * The macro is converted into an operation on the background thread.
      * @param evt the macro event
      */
     @Override
     public void macroAdded(MacroEvent evt) {
-        Macro macro = evt.getMacro();
+        final Macro macro = evt.getMacro();
+        final long time = Time.getCurrentTime();
+        queue.post(new Runnable() {
+            
+            /**
+             * Converts the macro into an operation and stores it.
+             */
+            @Override
+            public void run() {
+                addMacro(macro, time);
+            }
+        });
+    }
+    
+    /**
+     * Converts a macro into an operation and stores it into the operation history.
+     * @param macro the macro
+     * @param time the time when the macro was received
+     */
+    private void addMacro(Macro macro, long time) {
         // System.out.println(macro.toString());
         
         IOperation op = null;
         if (macro instanceof DocumentMacro) {
-            op = createOperation((DocumentMacro)macro);
+            op = createOperation((DocumentMacro)macro, time);
             
         } else if (macro instanceof ExecutionMacro) {
             op = createOperation((ExecutionMacro)macro);
             
         } else if (macro instanceof CopyMacro) {
-            op = createOperation((CopyMacro)macro);
+            op = createOperation((CopyMacro)macro, time);
             
         } else if (macro instanceof CompoundMacro) {
-            op = createOperation((CompoundMacro)macro);
+            op = createOperation((CompoundMacro)macro, time);
             
         } else if (macro instanceof ResourceMacro) {
-            createOperation((ResourceMacro)macro);
+            createOperation((ResourceMacro)macro, time);
         }
         
         if (op != null) {
@@ -171,55 +209,92 @@ public class HistoryManager extends OperationEventSource implements MacroListene
     }
     
     /**
-     * Stores an operation into the operation history.
+     * Stores an operation into the operation history by appending it to the journal.
      * @param op the operation to be stored
      */
     private void storeOperation(IOperation op) {
-        history.add(op);
+        lastOperation = op;
+        if (journal != null) {
+            journal.append(op);
+        }
         notify(op);
     }
     
     /**
-     * Obtains the last operation from this operation history.
-     * @return the last operation, or <code>null</code> if none
+     * Records a file open operation.
+     * @param file the file
+     * @param code the contents of the source code when the operation was performed
      */
-    IOperation getLastOperation() {
-        return history.getLastOperation();
+    void recordFileOpenOperation(IFile file, final String code) {
+        final String path = file.getFullPath().toString();
+        final long time = Time.getCurrentTime();
+        queue.post(new Runnable() {
+            
+            /**
+             * Stores the file open operation.
+             */
+            @Override
+            public void run() {
+                if (newOperation != null) {
+                    NormalOperation nop = new NormalOperation(time, 0, path, 0, code, "", NormalOperation.Type.EDIT);
+                    storeOperation(nop);
+                }
+                
+                FileOperation op = new FileOperation(time, path, FileOperation.Type.OPEN, code);
+                storeOperation(op);
+                
+                newOperation = null;
+                closeOperation = null;
+            }
+        });
     }
     
     /**
-     * Records a file open operation.
+     * Records a file close operation.
      * @param file the file
      * @param code the contents of the source code when the operation was performed
      */
-    void recordFileOpenOperation(IFile file, String code) {
-        String path = file.getFullPath().toString();
-        
-        if (newOperation != null) {
-            NormalOperation nop = new NormalOperation(Time.getCurrentTime(), 0, path, 0, code, "", NormalOperation.Type.EDIT);
-            storeOperation(nop);
-            
-            FileOperation op = new FileOperation(Time.getCurrentTime(), path, FileOperation.Type.OPEN, code);
-            storeOperation(op);
+    void recordFileCloseOperation(IFile file, final String code) {
+        final String path = file.getFullPath().toString();
+        final long time = Time.getCurrentTime();
+        queue.post(new Runnable() {
             
-        } else {
-            FileOperation op = new FileOperation(Time.getCurrentTime(), path, FileOperation.Type.OPEN, code);
-            storeOperation(op);
-        }
-        
-        newOperation = null;
-        closeOperation = null;
+            /**
+             * Stores the file close operation.
+             */
+            @Override
+            public void run() {
+                closeOperation = new FileOperation(time, path, FileOperation.Type.CLOSE, code);
+                storeOperation(closeOperation);
+            }
+        });
     }
     
     /**
-     * Records a file close operation.
+     * Records a file activation operation unless the last operation is the activation of the same file.
      * @param file the file
-     * @param code the contents of the source code when the operation was performed
      */
-    void recordFileCloseOperation(IFile file, String code) {
-        String path = file.getFullPath().toString();
-        closeOperation = new FileOperation(Time.getCurrentTime(), path, FileOperation.Type.CLOSE, code);
-        storeOperation(closeOperation);
+    void recordFileActivationOperation(IFile file) {
+        final String path = file.getFullPath().toString();
+        final long time = Time.getCurrentTime();
+        queue.post(new Runnable() {
+            
+            /**
+             * Stores the file activation operation.
+             */
+            @Override
+            public void run() {
+                IOperation op = lastOperation;
+                if (op != null && op.getOperationType() == IOperation.Type.FILE) {
+                    FileOperation fop = (FileOperation)op;
+                    if (fop.getActionType() == FileOperation.Type.ACT && fop.getFilePath().compareTo(path) == 0) {
+                        return;
+                    }
+                }
+                
+                storeOperation(new FileOperation(time, path, FileOperation.Type.ACT, null));
+            }
+        });
     }
     
     /**
@@ -230,22 +305,32 @@ public class HistoryManager extends OperationEventSource implements MacroListene
      * @param codeWrite <code>true</code> if source code will be written, otherwise <code>false</code>
      */
     void recordFileOperation(IFile file, String code, FileOperation.Type type, boolean codeWrite) {
-        FileOperation op;
+        final FileOperation op;
         if (codeWrite) {
             op = new FileOperation(Time.getCurrentTime(), file.getFullPath().toString(), type, code);
         } else {
             op = new FileOperation(Time.getCurrentTime(), file.getFullPath().toString(), type, null);
         }
         
-        storeOperation(op);
+        queue.post(new Runnable() {
+            
+            /**
+             * Stores the file operation.
+             */
+            @Override
+            public void run() {
+                storeOperation(op);
+            }
+        });
     }
     
     /**
      * Creates a text operation from a macro.
      * @param macro the recorded macro
+     * @param time the time when the macro was received
      * @return the created operation
      */
-    private TextOperation createOperation(DocumentMacro macro) {
+    private TextOperation createOperation(DocumentMacro macro, long time) {
         NormalOperation.Type type = NormalOperation.Type.EDIT;
         if (macro.getType().compareTo("Cut") == 0) {
             type = NormalOperation.Type.CUT;
@@ -257,7 +342,7 @@ public class HistoryManager extends OperationEventSource implements MacroListene
             type = NormalOperation.Type.REDO;
         }
         
-        return new NormalOperation(Time.getCurrentTime(), macro.getPath(), 
+        return new NormalOperation(time, macro.getPath(), 
                                    macro.getStart(), macro.getInsertedText(), macro.getDeletedText(), type);
     }
     
@@ -273,18 +358,20 @@ public class HistoryManager extends OperationEventSource implements MacroListene
     /**
      * Creates a copy operation from a macro.
      * @param macro the recorded macro
+     * @param time the time when the macro was received
      * @return the created operation
      */
-    private IOperation createOperation(CopyMacro macro) {
-        return new CopyOperation(Time.getCurrentTime(), macro.getPath(), macro.getStart(), macro.getCopiedText());
+    private IOperation createOperation(CopyMacro macro, long time) {
+        return new CopyOperation(time, macro.getPath(), macro.getStart(), macro.getCopiedText());
     }
     
     /**
      * Creates a compound operation from a macro.
      * @param macro the recorded macro
+     * @param time the time when the macro was received
      * @return the created operation
      */
-    private IOperation createOperation(CompoundMacro macro) {
+    private IOperation createOperation(CompoundMacro macro, long time) {
         if (macro.getMacros().size() == 0) {
             return null;
         }
@@ -292,7 +379,7 @@ public class HistoryManager extends OperationEventSource implements MacroListene
         List<IOperation> ops = new ArrayList<IOperation>();
         for (Macro m : macro.getMacros()) {
             if (m instanceof DocumentMacro) {
-                ops.add(createOperation((DocumentMacro)m));
+                ops.add(createOperation((DocumentMacro)m, time));
             }
         }
         return new CompoundOperation(macro.getStartTime(), ops, macro.getType());
@@ -301,9 +388,9 @@ public class HistoryManager extends OperationEventSource implements MacroListene
     /**
      * Creates a compound operation from a macro.
      * @param macro the recorded macro
-     * @return the created operation
+     * @param time the time when the macro was received
      */
-    private void createOperation(ResourceMacro macro) {
+    private void createOperation(ResourceMacro macro, long time) {
         if (macro.getTarget().compareTo("File") == 0) {
             
             if (macro.isAdded()) {
@@ -315,13 +402,15 @@ public class HistoryManager extends OperationEventSource implements MacroListene
             } else if (macro.isRemoved()) {
                 
                 if (closeOperation != null) {
-                    CompoundOperation cop = createDiffOperation(closeOperation.getFilePath(), closeOperation.getCode(), "");
+                    CompoundOperation cop = createDiffOperation(time, closeOperation.getFilePath(), closeOperation.getCode(), "");
                     storeOperation(cop);
                 }
                 
-                IOperation op = new FileOperation(Time.getCurrentTime(), macro.getPath(), FileOperation.Type.DELETE, macro.getCode());
+                IOperation op = new FileOperation(time, macro.getPath(), FileOperation.Type.DELETE, macro.getCode());
                 storeOperation(op);
-                writeHistory(macro.getPath(), macro.getEncoding());
+                if (journal != null) {
+                    journal.seal();
+                }
                 
                 closeOperation = null;
             }
@@ -330,123 +419,35 @@ public class HistoryManager extends OperationEventSource implements MacroListene
     
     /**
      * Creates a compound operation that contains normal operations representing respective differences.
+     * @param time the time when the differences were generated
      * @param path the name of the file path on which this operation was performed
      * @param oldCode the old contents of the file
      * @param newCode the new contents of the file
      * @return the created compound operation
      */
-    private CompoundOperation createDiffOperation(String path, String oldCode, String newCode) {
-        long time = Time.getCurrentTime();
+    private CompoundOperation createDiffOperation(long time, String path, String oldCode, String newCode) {
         List<NormalOperation> ops = DiffOperationGenerator.generate(time, path, oldCode, newCode);
         return new CompoundOperation(time, ops, "Diff");
     }
     
     /**
      * Writes the operation history related to a file.
+     * The segment of the journal storing the operations recorded before is sealed and exported into a history file.
      * @param file the file
      */
     void writeHistory(IFile file) {
-        String encoding = null;
-        try {
-            if (file != null) {
-                encoding = file.getCharset();
-            }
-        } catch (CoreException e) {
-        }
-        
-        writeHistory(file.getFullPath().toString(), encoding);
-    }
-    
-    /**
-     * Writes the operation history not related to a specific file.
-     */
-    void writeHistory() {
-        writeHistory(history, WorkspaceUtilities.getEncoding());
-    }
-    
-    /**
-     * Writes the operation history related to a file.
-     * @param path the path of the file
-     * @param encoding the encoding of the file
-     */
-    private void writeHistory(String path, String encoding) {
-        OperationHistory fhistory = history.extractHistory(path);
-        if (encoding == null) {
-            encoding = WorkspaceUtilities.getEncoding();
-        }
-        
-        writeHistory(fhistory, encoding);
-    }
-    
-    /**
-     * Writes the operation history related to a file.
-     * @param path the path of the file
-     * @param encoding the encoding of the file
-     */
-    private void writeHistory(OperationHistory fhistory, String encoding) {
-        if (!toBeWritten(fhistory)) {
-            return;
-        }
-        
-        fhistory.sort();
-        
-        if (encoding == null) {
-            encoding = WorkspaceUtilities.getEncoding();
-        }
-        
-        String dpath = OperationHistory.getOperationHistoryDirPath();
-        String wpath = dpath + '/' + String.valueOf(Time.getCurrentTime()) + ".xml";
-        
-        fhistory.write(wpath, encoding);
-        // System.out.println(history.toString());
-    }
-    
-    /**
-     * Tests if a given history will be written.
-     * @param history the history to be checked
-     * @return <code>true</code> the history should be written, otherwise <code>false</code>
-     */
-    private boolean toBeWritten(OperationHistory history) {
-        if (history.size() == 0) {
-            return false;
-        }
-        
-        if (history.size() == 1) {
-            return true;
-        }
-        
-        IOperation op1 = history.getOperation(0);
-        if (op1.getOperationType() != IOperation.Type.FILE) {
-            return true;
-        }
-        
-        FileOperation fop1 = (FileOperation)op1;
-        if (fop1.getActionType() != FileOperation.Type.OPEN) {
-            return true;
-        }
-        
-        IOperation op2 = history.getOperation(history.size() - 1);
-        if (op2.getOperationType() != IOperation.Type.FILE) {
-            return true;
-        }
-        
-        FileOperation fop2 = (FileOperation)op2;
-        if (fop2.getActionType() != FileOperation.Type.CLOSE) {
-            return true;
-        }
-        
-        for (int idx = 1; idx < history.size() - 1; idx++) {
-            IOperation op = history.getOperation(idx);
-            if (op.isTextEditOperation()) {
-                return true;
+        queue.post(new Runnable() {
+            
+            /**
+             * Seals the segment of the journal.
+             */
+            @Override
+            public void run() {
+                if (journal != null) {
+                    journal.seal();
+                }
             }
-        }
-        
-        if (fop1.getFilePath().compareTo(fop2.getFilePath()) != 0) {
-            return true;
-        }
-        
-        return false;
+        });
     }
     
     /**
@@ -0,0 +1,138 @@
+package org.jtool.changerecorder.editor;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs tasks that update the operation history one by one on a background thread.
+ * Tasks are posted without locking, so that the threads recording macros are not blocked by the tasks.
+ */
+class HistoryQueue {
+    
+    /**
+     * The tasks waiting to be run.
+     */
+    private Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    
+    /**
+     * A flag indicating whether the background thread is parked because no task is waiting.
+     */
+    private AtomicBoolean parked = new AtomicBoolean(false);
+    
+    /**
+     * The background thread that runs the tasks.
+     */
+    private volatile Thread consumer;
+    
+    /**
+     * The name of the background thread.
+     */
+    private String name;
+    
+    /**
+     * Creates a queue whose tasks are run on a background thread.
+     * @param name the name of the background thread
+     */
+    HistoryQueue(String name) {
+        this.name = name;
+    }
+    
+    /**
+     * Posts a task, which will be run after all the tasks previously posted.
+     * @param task the task
+     */
+    void post(Runnable task) {
+        tasks.offer(task);
+        
+        Thread thread = consumer;
+        if (thread == null) {
+            thread = startConsumer();
+        }
+        if (parked.get()) {
+            LockSupport.unpark(thread);
+        }
+    }
+    
+    /**
+     * Waits until all the tasks previously posted have been run.
+     */
+    void flush() {
+        if (Thread.currentThread() == consumer) {
+            runTasks();
+            return;
+        }
+        
+        final CountDownLatch latch = new CountDownLatch(1);
+        post(new Runnable() {
+            
+            /**
+             * Notifies that all the preceding tasks have been run.
+             */
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Starts the background thread if it has not been started.
+     * @return the background thread
+     */
+    private synchronized Thread startConsumer() {
+        if (consumer == null) {
+            Thread thread = new Thread(new Runnable() {
+                
+                /**
+                 * Runs posted tasks, and parks while no task is waiting.
+                 */
+                @Override
+                public void run() {
+                    while (true) {
+                        runTasks();
+                        
+                        parked.set(true);
+                        if (tasks.isEmpty()) {
+                            LockSupport.park(this);
+                        }
+                        parked.set(false);
+                    }
+                }
+            }, name);
+            thread.setDaemon(true);
+            consumer = thread;
+            thread.start();
+        }
+        return consumer;
+    }
+    
+    /**
+     * Runs all the waiting tasks.
+     */
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
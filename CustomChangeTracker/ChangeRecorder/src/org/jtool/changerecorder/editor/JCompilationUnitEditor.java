@@ -7,7 +7,6 @@
 package org.jtool.changerecorder.editor;
 
 import org.jtool.changerecorder.operation.FileOperation;
-import org.jtool.changerecorder.operation.IOperation;
 import org.jtool.editrecorder.util.EditorUtilities;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.CoreException;
@@ -64,15 +63,7 @@ public class JCompilationUnitEditor extends CompilationUnitEditor {
         super.setFocus();
         
         if (historyManager != null) {
-            IOperation op = historyManager.getLastOperation();
-            if (op != null && op.getOperationType() == IOperation.Type.FILE) {
-                FileOperation fop = (FileOperation)op;
-                if (fop.getActionType() == FileOperation.Type.ACT && fop.getFilePath().compareTo(getInputFilePath()) == 0) {
-                    return;
-                }
-            }
-            
-            historyManager.recordFileOperation(getInputFile(), getSourceCode(), FileOperation.Type.ACT, false);
+            historyManager.recordFileActivationOperation(getInputFile());
         }
     }
     
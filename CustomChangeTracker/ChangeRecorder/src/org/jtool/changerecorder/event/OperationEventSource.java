@@ -8,7 +8,7 @@ package org.jtool.changerecorder.event;
 
 import org.jtool.changerecorder.operation.IOperation;
 import java.util.List;
-import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Manages a source that send an operation event.
@@ -19,7 +19,7 @@ public class OperationEventSource {
     /**
      * The collection of listeners that receives operation events.
      */
-    private List<OperationEventListener> listeners = new ArrayList<OperationEventListener>();
+    private List<OperationEventListener> listeners = new CopyOnWriteArrayList<OperationEventListener>();
     
     /**
      * Creates an object that performs as an event source.
@@ -0,0 +1,320 @@
+package org.jtool.changerecorder.history;
+
+import org.jtool.changerecorder.operation.CompoundOperation;
+import org.jtool.changerecorder.operation.CopyOperation;
+import org.jtool.changerecorder.operation.FileOperation;
+import org.jtool.changerecorder.operation.IOperation;
+import org.jtool.changerecorder.operation.MenuOperation;
+import org.jtool.changerecorder.operation.NormalOperation;
+import org.jtool.changerecorder.operation.ResourceOperation;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the binary representation of the operation history and converts it into operations one at a time.
+ * An instance is not thread-safe, but can be reused for reading several histories one after another.
+ */
+public class Binary2Operation {
+    
+    /**
+     * The character set of strings stored in the binary representation.
+     */
+    protected static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    /**
+     * The stream from which the binary representation is read.
+     */
+    private DataInputStream in;
+    
+    /**
+     * The strings that have already been read, in the order of their indices.
+     */
+    private List<String> strings = new ArrayList<String>();
+    
+    /**
+     * The time of the operation read last.
+     */
+    private long lastTime;
+    
+    /**
+     * The decompressor of long texts.
+     */
+    private Inflater inflater = new Inflater();
+    
+    /**
+     * Tests if a file stores the binary representation of the operation history.
+     * @param path the full path indicating the file
+     * @return <code>true</code> if the file name has the extension of the binary representation, otherwise <code>false</code>
+     */
+    public static boolean isBinaryFile(String path) {
+        return path.endsWith(BinaryConstants.FileExtension);
+    }
+    
+    /**
+     * Reads operations from a binary file and passes them to a given handler in the order of the file.
+     * @param path the full path indicating the binary file to be read
+     * @param handler the handler receiving the operations
+     * @return <code>true</code> if the file was read, or <code>false</code> if it is not a binary operation history
+     * @throws IOException if the file cannot be read or its contents are broken
+     */
+    public boolean read(String path, OperationHandler handler) throws IOException {
+        InputStream is = new BufferedInputStream(new FileInputStream(path));
+        try {
+            return read(is, handler);
+        } finally {
+            is.close();
+        }
+    }
+    
+    /**
+     * Reads operations from a binary stream and passes them to a given handler in the order of the stream.
+     * @param is the input stream of the binary representation
+     * @param handler the handler receiving the operations
+     * @return <code>true</code> if the stream was read, or <code>false</code> if it is not a binary operation history
+     * @throws IOException if the stream cannot be read or its contents are broken
+     */
+    public boolean read(InputStream is, OperationHandler handler) throws IOException {
+        in = new DataInputStream(is);
+        strings.clear();
+        lastTime = 0;
+        
+        try {
+            if (in.readInt() != BinaryConstants.Magic) {
+                return false;
+            }
+        } catch (EOFException e) {
+            return false;
+        }
+        
+        int version = readInt();
+        if (version > BinaryConstants.Version) {
+            throw new IOException("unsupported binary history version: " + version);
+        }
+        
+        int tag;
+        while ((tag = readTag()) != BinaryConstants.EndTag) {
+            IOperation op = readOperation(tag);
+            if (op != null) {
+                handler.handle(op);
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Releases the native memory of the decompressor. This reader cannot be used after it was closed.
+     */
+    public void close() {
+        inflater.end();
+    }
+    
+    /**
+     * Reads the operation following the specified tag.
+     * Subclasses can override this method to read additional kinds of operations,
+     * which are tagged with values not less than {@link BinaryConstants#ExtendedOperationTag}.
+     * @param tag the tag indicating the kind of the operation
+     * @return the operation
+     * @throws IOException if the stream cannot be read or its contents are broken
+     */
+    protected IOperation readOperation(int tag) throws IOException {
+        if (tag == BinaryConstants.NormalOperationTag) {
+            long time = readTime();
+            int seq = readInt();
+            String path = readString();
+            String author = readString();
+            int offset = readInt();
+            String itext = readText();
+            String dtext = readText();
+            String action = readString();
+            return new NormalOperation(time, seq, path, author, offset, itext, dtext, NormalOperation.Type.parseType(action));
+            
+        } else if (tag == BinaryConstants.CompoundOperationTag) {
+            long time = readTime();
+            String author = readString();
+            String label = readString();
+            List<IOperation> ops = new ArrayList<IOperation>();
+            int t;
+            while ((t = readTag()) != BinaryConstants.EndTag) {
+                ops.add(readOperation(t));
+            }
+            return new CompoundOperation(time, author, ops, label);
+            
+        } else if (tag == BinaryConstants.CopyOperationTag) {
+            long time = readTime();
+            String path = readString();
+            String author = readString();
+            int offset = readInt();
+            String ctext = readText();
+            return new CopyOperation(time, path, author, offset, ctext);
+            
+        } else if (tag == BinaryConstants.FileOperationTag) {
+            long time = readTime();
+            String path = readString();
+            String author = readString();
+            String action = readString();
+            String code = readText();
+            return new FileOperation(time, path, author, FileOperation.Type.parseType(action), code);
+            
+        } else if (tag == BinaryConstants.MenuOperationTag) {
+            long time = readTime();
+            String path = readString();
+            String author = readString();
+            String label = readString();
+            return new MenuOperation(time, path, author, label);
+            
+        } else if (tag == BinaryConstants.ResourceOperationTag) {
+            long time = readTime();
+            String path = readString();
+            String author = readString();
+            String action = readString();
+            String target = readString();
+            String ipath = readString();
+            return new ResourceOperation(time, path, author, ResourceOperation.Type.parseType(action),
+                ResourceOperation.Target.parseType(target), ipath);
+        }
+        
+        throw new IOException("unknown operation tag: " + tag);
+    }
+    
+    /**
+     * Reads the tag indicating the kind of an operation.
+     * @return the tag
+     * @throws IOException if the stream cannot be read
+     */
+    protected int readTag() throws IOException {
+        return (int)readUnsigned();
+    }
+    
+    /**
+     * Reads the time of an operation stored as the difference from the time of the operation read last.
+     * @return the time
+     * @throws IOException if the stream cannot be read
+     */
+    protected long readTime() throws IOException {
+        long value = readUnsigned();
+        lastTime = lastTime + ((value >>> 1) ^ -(value & 1));
+        return lastTime;
+    }
+    
+    /**
+     * Reads an integer stored as a variable-length value.
+     * @return the integer
+     * @throws IOException if the stream cannot be read
+     */
+    protected int readInt() throws IOException {
+        long value = readUnsigned();
+        return (int)((value >>> 1) ^ -(value & 1));
+    }
+    
+    /**
+     * Reads a string stored through the string table.
+     * @return the string, or <code>null</code> if <code>null</code> was stored
+     * @throws IOException if the stream cannot be read or its contents are broken
+     */
+    protected String readString() throws IOException {
+        int idx = (int)readUnsigned();
+        if (idx == 0) {
+            return null;
+        }
+        
+        if (idx <= strings.size()) {
+            return strings.get(idx - 1);
+        }
+        
+        if (idx == strings.size() + 1) {
+            String str = new String(readBytes(), UTF8);
+            strings.add(str);
+            return str;
+        }
+        throw new IOException("broken string table: " + idx);
+    }
+    
+    /**
+     * Reads a text of an operation, which is decompressed if it was compressed.
+     * @return the text, or <code>null</code> if <code>null</code> was stored
+     * @throws IOException if the stream cannot be read or its contents are broken
+     */
+    protected String readText() throws IOException {
+        int kind = (int)readUnsigned();
+        if (kind == BinaryConstants.NullText) {
+            return null;
+            
+        } else if (kind == BinaryConstants.PlainText) {
+            return new String(readBytes(), UTF8);
+            
+        } else if (kind == BinaryConstants.DeflatedText) {
+            int len = (int)readUnsigned();
+            return new String(inflate(readBytes(), len), UTF8);
+        }
+        throw new IOException("unknown text kind: " + kind);
+    }
+    
+    /**
+     * Reads a byte array preceded by its length.
+     * @return the byte array
+     * @throws IOException if the stream cannot be read
+     */
+    private byte[] readBytes() throws IOException {
+        int len = (int)readUnsigned();
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return bytes;
+    }
+    
+    /**
+     * Reads a non-negative value stored as a variable-length value, seven bits per byte.
+     * @return the value
+     * @throws IOException if the stream cannot be read or its contents are broken
+     */
+    private long readUnsigned() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift = shift + 7) {
+            int b = in.readUnsignedByte();
+            value = value | ((long)(b & 0x7F) << shift);
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("broken variable-length value");
+    }
+    
+    /**
+     * Decompresses a byte array.
+     * @param bytes the compressed bytes
+     * @param len the length of the decompressed bytes
+     * @return the decompressed bytes
+     * @throws IOException if the compressed bytes are broken
+     */
+    private byte[] inflate(byte[] bytes, int len) throws IOException {
+        inflater.reset();
+        inflater.setInput(bytes);
+        
+        byte[] buf = new byte[len];
+        try {
+            int off = 0;
+            while (off < len && !inflater.finished()) {
+                int n = inflater.inflate(buf, off, len - off);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                off = off + n;
+            }
+            if (off != len) {
+                throw new IOException("broken compressed text");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        }
+        return buf;
+    }
+}
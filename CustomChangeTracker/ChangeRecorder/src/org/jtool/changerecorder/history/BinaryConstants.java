@@ -0,0 +1,33 @@
+package org.jtool.changerecorder.history;
+
+/**
+ * The tags and values appearing in binary files that store information on the operation history.
+ */
+public interface BinaryConstants {
+    
+    static final int Magic = 0x4F504842;
+    static final int Version = 1;
+    static final String FileExtension = ".hist";
+    
+    static final int EndTag = 0;
+    static final int NormalOperationTag = 1;
+    static final int CompoundOperationTag = 2;
+    static final int CopyOperationTag = 3;
+    static final int FileOperationTag = 4;
+    static final int MenuOperationTag = 5;
+    static final int ResourceOperationTag = 6;
+    static final int ExtendedOperationTag = 16;
+    
+    static final int NullText = 0;
+    static final int PlainText = 1;
+    static final int DeflatedText = 2;
+    
+    static final int CompressionThreshold = 256;
+    
+    static final int JournalMagic = 0x4F50484A;
+    static final int JournalVersion = 2;
+    static final String JournalExtension = ".journal";
+    static final int JournalOperationRecord = 1;
+    static final int JournalReleaseRecord = 2;
+    static final int JournalBranchRecord = 3;
+}
@@ -0,0 +1,14 @@
+package org.jtool.changerecorder.history;
+
+/**
+ * Defines the interface used for obtaining the branch on which a project is recorded.
+ */
+public interface BranchResolver {
+
+    /**
+     * Returns the name of the branch that is currently checked out in a project.
+     * @param projectName the name of the project
+     * @return the name of the branch, or <code>null</code> if the project is not managed by any repository
+     */
+    public String getBranchName(String projectName);
+}
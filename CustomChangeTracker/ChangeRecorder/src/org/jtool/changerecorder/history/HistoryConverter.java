@@ -0,0 +1,154 @@
+package org.jtool.changerecorder.history;
+
+import org.jtool.changerecorder.operation.IOperation;
+import org.jtool.changerecorder.util.XmlFileStream;
+import org.w3c.dom.Document;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Migrates history files in the XML representation into the binary representation.
+ */
+public class HistoryConverter {
+    
+    /**
+     * The reader of the XML representation.
+     */
+    private Xml2OperationReader reader;
+    
+    /**
+     * The writer of the binary representation.
+     */
+    private Operation2Binary writer;
+    
+    /**
+     * Creates a converter handling the operations recorded by the change recorder.
+     */
+    public HistoryConverter() {
+        this(new Xml2OperationReader(), new Operation2Binary());
+    }
+    
+    /**
+     * Creates a converter with a given reader and writer, which may handle additional kinds of operations.
+     * @param reader the reader of the XML representation
+     * @param writer the writer of the binary representation
+     */
+    public HistoryConverter(Xml2OperationReader reader, Operation2Binary writer) {
+        this.reader = reader;
+        this.writer = writer;
+    }
+    
+    /**
+     * Releases the writer of the binary representation. This converter cannot be used after it was closed.
+     */
+    public void close() {
+        writer.close();
+    }
+    
+    /**
+     * Returns the path of the binary file corresponding to an XML history file.
+     * @param path the path of the XML history file
+     * @return the path of the binary file
+     */
+    public static String getBinaryPath(String path) {
+        if (path.endsWith(".xml")) {
+            path = path.substring(0, path.length() - ".xml".length());
+        }
+        return path + BinaryConstants.FileExtension;
+    }
+    
+    /**
+     * Converts all the XML history files under a given file or directory into binary files.
+     * XML files whose binary files already exist are skipped.
+     * @param file the history file or the directory containing history files
+     * @param deleteOriginal <code>true</code> if the XML files are deleted after their conversion
+     * @return the number of the converted files
+     */
+    public int convert(File file, boolean deleteOriginal) {
+        int count = 0;
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File f : children) {
+                    count = count + convert(f, deleteOriginal);
+                }
+            }
+            
+        } else if (file.isFile() && file.getName().endsWith(".xml")) {
+            String bpath = getBinaryPath(file.getAbsolutePath());
+            if (!new File(bpath).exists() && convert(file.getAbsolutePath(), bpath)) {
+                count++;
+                if (deleteOriginal) {
+                    file.delete();
+                }
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Converts an XML history file into a binary file.
+     * @param xpath the path of the XML history file
+     * @param bpath the path of the binary file to be written
+     * @return <code>true</code> if the conversion succeeded, otherwise <code>false</code>
+     */
+    public boolean convert(String xpath, String bpath) {
+        OperationHistory history = read(xpath);
+        if (history == null) {
+            System.err.println("Fails to convert the history file " + xpath);
+            return false;
+        }
+        
+        File tmp = new File(bpath + ".tmp");
+        try {
+            writer.write(history, tmp.getPath());
+            if (tmp.renameTo(new File(bpath))) {
+                return true;
+            }
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+        
+        tmp.delete();
+        System.err.println("Fails to write the history file " + bpath);
+        return false;
+    }
+    
+    /**
+     * Reads an XML history file.
+     * @param path the path of the XML history file
+     * @return the operation history, or <code>null</code> if the file cannot be read
+     */
+    private OperationHistory read(String path) {
+        final List<IOperation> ops = new ArrayList<IOperation>();
+        try {
+            boolean read = reader.read(path, new OperationHandler() {
+                
+                /**
+                 * Stores an operation read from the history file.
+                 * @param op the operation
+                 */
+                @Override
+                public void handle(IOperation op) {
+                    ops.add(op);
+                }
+            });
+            
+            if (read) {
+                return new OperationHistory(ops);
+            }
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+            return null;
+        }
+        
+        Document doc = XmlFileStream.read(path);
+        if (doc == null) {
+            return null;
+        }
+        return Xml2Operation.convert(doc);
+    }
+}
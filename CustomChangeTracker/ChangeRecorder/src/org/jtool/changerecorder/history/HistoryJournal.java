@@ -0,0 +1,778 @@
+package org.jtool.changerecorder.history;
+
+import org.jtool.changerecorder.operation.CompoundOperation;
+import org.jtool.changerecorder.operation.FileOperation;
+import org.jtool.changerecorder.operation.IOperation;
+import org.jtool.changerecorder.util.Time;
+import org.jtool.changerecorder.util.XmlFileStream;
+import org.w3c.dom.Document;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Stores the operation history as a journal, into which operations are appended as soon as they are stored.
+ * Operations are written in batches on a background thread, each batch is forced to the disk at once,
+ * and no operation is kept in memory after it has been written.
+ * <p>
+ * The journal is divided into segment files. A segment stores the operations of a single project recorded on
+ * a single branch, and is sealed when the project or the branch changes, when its size exceeds the limit, or when
+ * {@link #seal()} is called. A sealed segment is exported into a history file on the background thread, and is deleted
+ * after the history file has been forced to the disk. The history file is named after its segment and is created by
+ * renaming a temporary file, so a segment left by a crash during its export is exported again into the same file
+ * without duplicating its operations. The segments left by an earlier session are exported when the next session starts.
+ * <p>
+ * A segment begins with {@link BinaryConstants#JournalMagic}, {@link BinaryConstants#JournalVersion}, and the identifier
+ * of the session that wrote it. Each record following them consists of the length and the CRC-32 checksum of its contents,
+ * and the contents. The contents of {@link BinaryConstants#JournalBranchRecord} are the names of the project and the branch
+ * of the segment, which is empty if the project is not managed by any repository. The contents of
+ * {@link BinaryConstants#JournalOperationRecord} are the identifier of its first operation and the binary representation
+ * of a batch of operations, whose identifiers are consecutive.
+ */
+public class HistoryJournal {
+    
+    /**
+     * The name of the directory storing the segments, which is placed in the directory of the history files.
+     */
+    public static final String JournalDirName = ".journal";
+    
+    /**
+     * The number of operations that are written without waiting for more operations.
+     */
+    private static final int BATCH_SIZE = 256;
+    
+    /**
+     * The maximum time in milliseconds that an operation waits for other operations written together.
+     */
+    private static final long FLUSH_INTERVAL = 1000;
+    
+    /**
+     * The size in bytes beyond which a new segment is created.
+     */
+    private static final long MAX_SEGMENT_SIZE = 4 * 1024 * 1024;
+    
+    /**
+     * The size in bytes of the header of a segment.
+     */
+    private static final int SEGMENT_HEADER_SIZE = 16;
+    
+    /**
+     * The size in bytes of the header of a record.
+     */
+    private static final int RECORD_HEADER_SIZE = 8;
+    
+    /**
+     * The extension of a history file being exported.
+     */
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+    
+    /**
+     * The resolver that obtains the branch on which a project is recorded, or <code>null</code> if none was set.
+     */
+    private static volatile BranchResolver branchResolver = null;
+    
+    /**
+     * The directory storing the segments.
+     */
+    private File dir;
+    
+    /**
+     * The encoding of the exported history files.
+     */
+    private String encoding;
+    
+    /**
+     * The identifier of this session, which distinguishes its operations from those written by other sessions.
+     */
+    private long sessionId;
+    
+    /**
+     * The identifier given to the next operation to be written, which is used only by the background thread.
+     */
+    private long nextId = 0;
+    
+    /**
+     * The operations waiting to be written.
+     */
+    private List<IOperation> pending = new ArrayList<IOperation>();
+    
+    /**
+     * The sealed segment files waiting to be exported.
+     */
+    private List<File> exports = new ArrayList<File>();
+    
+    /**
+     * A flag indicating whether a batch of operations is being written.
+     */
+    private boolean writing = false;
+    
+    /**
+     * The segment to which records are appended, or <code>null</code> if none is open.
+     * This segment is used only by the background thread until it is closed.
+     */
+    private Segment current = null;
+    
+    /**
+     * The time used for the name of the segment created last.
+     */
+    private long lastSegmentTime = 0;
+    
+    /**
+     * A flag indicating whether the waiting operations should be written without waiting for more operations.
+     */
+    private boolean flushRequested = false;
+    
+    /**
+     * A flag indicating whether the current segment should be sealed after the waiting operations have been written.
+     */
+    private boolean sealRequested = false;
+    
+    /**
+     * A flag indicating whether this journal was closed.
+     */
+    private boolean closed = false;
+    
+    /**
+     * The background thread that writes the operations and exports the sealed segments.
+     */
+    private Thread writer = null;
+    
+    /**
+     * The converter that creates the binary representation of operations, which is used only by the background thread.
+     */
+    private Operation2Binary converter = new Operation2Binary();
+    
+    /**
+     * Creates a journal.
+     * @param path the path of the directory storing the segments
+     * @param encoding the encoding of the exported history files
+     */
+    public HistoryJournal(String path, String encoding) {
+        dir = new File(path);
+        this.encoding = encoding;
+        sessionId = Time.getCurrentTime();
+    }
+    
+    /**
+     * Sets the resolver that obtains the branch on which a project is recorded.
+     * @param resolver the resolver, or <code>null</code> if no branch is recorded
+     */
+    public static void setBranchResolver(BranchResolver resolver) {
+        branchResolver = resolver;
+    }
+    
+    /**
+     * Exports the segments left by earlier sessions, including torn ones, on the background thread.
+     */
+    public synchronized void recover() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isFile() && Journal2Operation.isJournalFile(file.getPath())) {
+                exports.add(file);
+            }
+        }
+        
+        if (exports.size() > 0) {
+            if (writer == null) {
+                startWriter();
+            }
+            notifyAll();
+        }
+    }
+    
+    /**
+     * Appends an operation to this journal. The operation will be written on the background thread.
+     * @param op the operation
+     */
+    public synchronized void append(IOperation op) {
+        if (closed) {
+            return;
+        }
+        
+        pending.add(op);
+        if (writer == null) {
+            startWriter();
+        }
+        if (pending.size() >= BATCH_SIZE) {
+            notifyAll();
+        }
+    }
+    
+    /**
+     * Seals the current segment after the operations appended before have been written, so that it is exported.
+     */
+    public synchronized void seal() {
+        if (closed || writer == null) {
+            return;
+        }
+        
+        sealRequested = true;
+        notifyAll();
+    }
+    
+    /**
+     * Waits until all the operations appended before have been written.
+     */
+    public synchronized void flush() {
+        if (writer == null) {
+            return;
+        }
+        
+        flushRequested = true;
+        notifyAll();
+        
+        boolean interrupted = false;
+        while ((!pending.isEmpty() || writing) && writer.isAlive()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        flushRequested = false;
+        
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Writes all the operations appended before and closes this journal.
+     * The segments that have not been exported remain, which are read together with the history files
+     * and are exported when the next session starts.
+     */
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+            thread = writer;
+        }
+        
+        if (thread != null) {
+            boolean interrupted = false;
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        if (current != null) {
+            try {
+                current.sync();
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+            }
+            current.close();
+            current = null;
+        }
+        converter.close();
+    }
+    
+    /**
+     * Starts the background thread that writes the operations and exports the sealed segments.
+     */
+    private void startWriter() {
+        writer = new Thread(new Runnable() {
+            
+            /**
+             * Writes the waiting operations in batches until this journal is closed.
+             */
+            @Override
+            public void run() {
+                writeBatches();
+            }
+        }, "Operation journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    
+    /**
+     * Writes the waiting operations in batches and exports the sealed segments until this journal is closed.
+     */
+    private void writeBatches() {
+        while (true) {
+            List<IOperation> batch;
+            boolean seal;
+            synchronized (this) {
+                try {
+                    while (pending.isEmpty() && exports.isEmpty() && !sealRequested && !closed) {
+                        wait();
+                    }
+                    if (!pending.isEmpty() && pending.size() < BATCH_SIZE && !closed && !flushRequested && !sealRequested) {
+                        wait(FLUSH_INTERVAL);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                
+                if (pending.isEmpty() && closed) {
+                    return;
+                }
+                
+                batch = pending;
+                pending = new ArrayList<IOperation>();
+                seal = sealRequested;
+                sealRequested = false;
+                writing = true;
+            }
+            
+            try {
+                if (batch.size() > 0) {
+                    write(batch);
+                }
+                if (seal) {
+                    sealCurrent();
+                }
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+            }
+            
+            List<File> files;
+            synchronized (this) {
+                writing = false;
+                notifyAll();
+                
+                if (closed) {
+                    continue;
+                }
+                files = exports;
+                exports = new ArrayList<File>();
+            }
+            
+            for (File file : files) {
+                export(file);
+            }
+        }
+    }
+    
+    /**
+     * Writes a batch of operations as records and forces them to the disk.
+     * The batch is divided into runs of the operations of the same project, each of which is written into its segment.
+     * @param batch the operations to be written
+     * @throws IOException if a segment cannot be written
+     */
+    private void write(List<IOperation> batch) throws IOException {
+        Map<String, String> branches = new HashMap<String, String>();
+        int start = 0;
+        while (start < batch.size()) {
+            String projectName = getProjectName(batch.get(start));
+            int end = start + 1;
+            while (end < batch.size()) {
+                String name = getProjectName(batch.get(end));
+                if (name != null) {
+                    if (projectName == null) {
+                        projectName = name;
+                    } else if (!name.equals(projectName)) {
+                        break;
+                    }
+                }
+                end++;
+            }
+            
+            String branchName = null;
+            if (projectName != null) {
+                if (!branches.containsKey(projectName)) {
+                    branches.put(projectName, getBranchName(projectName));
+                }
+                branchName = branches.get(projectName);
+            }
+            
+            write(batch.subList(start, end), projectName, branchName);
+            start = end;
+        }
+        
+        if (current != null) {
+            current.sync();
+        }
+    }
+    
+    /**
+     * Writes operations of the same project as a record, and seals the current segment if it cannot store them.
+     * @param ops the operations to be written
+     * @param projectName the name of the project, or <code>null</code> if the operations are not related to any project
+     * @param branchName the name of the branch, or <code>null</code> if the project is not managed by any repository
+     * @throws IOException if a segment cannot be written
+     */
+    private void write(List<IOperation> ops, String projectName, String branchName) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(BinaryConstants.JournalOperationRecord);
+        out.writeLong(nextId);
+        converter.write(new OperationHistory(new ArrayList<IOperation>(ops)), out);
+        byte[] contents = bytes.toByteArray();
+        nextId = nextId + ops.size();
+        
+        if (current != null && projectName != null && current.projectName != null &&
+            (!projectName.equals(current.projectName) || !isSame(branchName, current.branchName))) {
+            sealCurrent();
+        }
+        if (current != null && current.size > SEGMENT_HEADER_SIZE &&
+            current.size + RECORD_HEADER_SIZE + contents.length > MAX_SEGMENT_SIZE) {
+            sealCurrent();
+        }
+        
+        if (current == null) {
+            current = new Segment(createSegmentFile(), sessionId);
+        }
+        if (projectName != null && current.projectName == null) {
+            bytes = new ByteArrayOutputStream();
+            out = new DataOutputStream(bytes);
+            out.writeByte(BinaryConstants.JournalBranchRecord);
+            out.writeUTF(projectName);
+            out.writeUTF(branchName != null ? branchName : "");
+            out.flush();
+            current.write(bytes.toByteArray());
+            current.projectName = projectName;
+            current.branchName = branchName;
+        }
+        current.write(contents);
+    }
+    
+    /**
+     * Forces the current segment to the disk, closes it, and queues it to be exported.
+     * @throws IOException if the segment cannot be written
+     */
+    private void sealCurrent() throws IOException {
+        if (current == null) {
+            return;
+        }
+        
+        Segment segment = current;
+        current = null;
+        try {
+            segment.sync();
+        } finally {
+            segment.close();
+            synchronized (this) {
+                exports.add(segment.file);
+            }
+        }
+    }
+    
+    /**
+     * Exports the operations of a sealed segment into its history file, and deletes the segment.
+     * The segment is kept if the history file cannot be written, and is exported again when the next session starts.
+     * @param segment the segment file
+     */
+    private void export(File segment) {
+        File file = Journal2Operation.getHistoryFile(segment);
+        if (!file.exists()) {
+            final OperationHistory history = new OperationHistory();
+            String branchName;
+            Journal2Operation reader = new Journal2Operation();
+            try {
+                reader.read(Arrays.asList(segment), new OperationHandler() {
+                    
+                    /**
+                     * Stores an operation read from the segment.
+                     * @param op the operation
+                     */
+                    @Override
+                    public void handle(IOperation op) {
+                        history.add(op);
+                    }
+                });
+                branchName = reader.getBranchName();
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+                return;
+            } finally {
+                reader.close();
+            }
+            
+            if (toBeWritten(history) && !write(history, branchName, file)) {
+                return;
+            }
+        }
+        
+        if (!segment.delete()) {
+            System.err.println("Fails to delete the journal file " + segment.getPath());
+        }
+    }
+    
+    /**
+     * Writes an operation history into a history file, which is created by renaming a temporary file forced to the disk.
+     * @param history the operation history to be written
+     * @param branchName the name of the branch on which the operations were recorded, or <code>null</code> if unknown
+     * @param file the history file
+     * @return <code>true</code> if the history file was written, otherwise <code>false</code>
+     */
+    private boolean write(OperationHistory history, String branchName, File file) {
+        history.sort();
+        Document doc = Operation2Xml.convert(history);
+        if (doc == null) {
+            return false;
+        }
+        if (branchName != null) {
+            doc.getDocumentElement().setAttribute(XmlConstantStrings.BranchAttr, branchName);
+        }
+        
+        File tmp = new File(file.getPath() + TEMPORARY_EXTENSION);
+        XmlFileStream.write(doc, tmp.getPath(), encoding);
+        if (tmp.length() == 0) {
+            System.err.println("Fails to write the history file " + tmp.getPath());
+            return false;
+        }
+        
+        try {
+            RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+            try {
+                raf.getFD().sync();
+            } finally {
+                raf.close();
+            }
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            return false;
+        }
+        
+        if (!tmp.renameTo(file)) {
+            System.err.println("Fails to rename the history file " + tmp.getPath());
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Tests if a given history will be written.
+     * A history that only opens and closes the same file without editing it is not written.
+     * @param history the history to be checked
+     * @return <code>true</code> the history should be written, otherwise <code>false</code>
+     */
+    private static boolean toBeWritten(OperationHistory history) {
+        if (history.size() == 0) {
+            return false;
+        }
+        
+        if (history.size() == 1) {
+            return true;
+        }
+        
+        IOperation op1 = history.getOperation(0);
+        if (op1.getOperationType() != IOperation.Type.FILE) {
+            return true;
+        }
+        
+        FileOperation fop1 = (FileOperation)op1;
+        if (fop1.getActionType() != FileOperation.Type.OPEN) {
+            return true;
+        }
+        
+        IOperation op2 = history.getOperation(history.size() - 1);
+        if (op2.getOperationType() != IOperation.Type.FILE) {
+            return true;
+        }
+        
+        FileOperation fop2 = (FileOperation)op2;
+        if (fop2.getActionType() != FileOperation.Type.CLOSE) {
+            return true;
+        }
+        
+        for (int idx = 1; idx < history.size() - 1; idx++) {
+            IOperation op = history.getOperation(idx);
+            if (op.isTextEditOperation()) {
+                return true;
+            }
+        }
+        
+        if (fop1.getFilePath().compareTo(fop2.getFilePath()) != 0) {
+            return true;
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Returns the name of the project related to an operation.
+     * @param op the operation
+     * @return the name of the project, or <code>null</code> if the operation is not related to any project
+     */
+    private static String getProjectName(IOperation op) {
+        if (op instanceof CompoundOperation) {
+            for (IOperation o : ((CompoundOperation)op).getOperations()) {
+                String name = getProjectName(o);
+                if (name != null) {
+                    return name;
+                }
+            }
+            return null;
+        }
+        
+        String path = op.getFilePath();
+        if (path == null || path.length() < 2 || path.charAt(0) != '/') {
+            return null;
+        }
+        
+        int index = path.indexOf('/', 1);
+        if (index == -1) {
+            return path.substring(1);
+        }
+        return path.substring(1, index);
+    }
+    
+    /**
+     * Returns the name of the branch on which a project is recorded.
+     * @param projectName the name of the project
+     * @return the name of the branch, or <code>null</code> if it is unknown
+     */
+    private static String getBranchName(String projectName) {
+        BranchResolver resolver = branchResolver;
+        if (resolver == null) {
+            return null;
+        }
+        
+        try {
+            return resolver.getBranchName(projectName);
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Tests if two names are the same.
+     * @param name1 the first name, which may be <code>null</code>
+     * @param name2 the second name, which may be <code>null</code>
+     * @return <code>true</code> if both the names are the same, otherwise <code>false</code>
+     */
+    private static boolean isSame(String name1, String name2) {
+        if (name1 == null) {
+            return name2 == null;
+        }
+        return name1.equals(name2);
+    }
+    
+    /**
+     * Creates a new segment file, whose name is the time of its creation.
+     * A time whose segment file or history file exists is not used.
+     * @return the segment file
+     * @throws IOException if the directory storing the segments cannot be created
+     */
+    private File createSegmentFile() throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Fails to create the journal directory " + dir.getPath());
+        }
+        
+        long time = Math.max(Time.getCurrentTime(), lastSegmentTime + 1);
+        File file = new File(dir, String.valueOf(time) + BinaryConstants.JournalExtension);
+        while (file.exists() || Journal2Operation.getHistoryFile(file).exists()) {
+            time++;
+            file = new File(dir, String.valueOf(time) + BinaryConstants.JournalExtension);
+        }
+        lastSegmentTime = time;
+        return file;
+    }
+    
+    /**
+     * A segment file of the journal.
+     */
+    private static class Segment {
+        
+        /**
+         * The segment file.
+         */
+        File file;
+        
+        /**
+         * The stream of the segment file, or <code>null</code> if the file was closed.
+         */
+        FileOutputStream stream;
+        
+        /**
+         * The stream into which records are written.
+         */
+        DataOutputStream out;
+        
+        /**
+         * The size in bytes of the segment file.
+         */
+        long size = 0;
+        
+        /**
+         * The name of the project whose operations are stored in this segment, or <code>null</code> if not yet known.
+         */
+        String projectName = null;
+        
+        /**
+         * The name of the branch on which the operations were recorded, or <code>null</code> if unknown.
+         */
+        String branchName = null;
+        
+        /**
+         * Creates a segment and writes its header.
+         * @param file the segment file
+         * @param sessionId the identifier of the session writing the segment
+         * @throws IOException if the segment file cannot be written
+         */
+        Segment(File file, long sessionId) throws IOException {
+            this.file = file;
+            stream = new FileOutputStream(file);
+            out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(BinaryConstants.JournalMagic);
+            out.writeInt(BinaryConstants.JournalVersion);
+            out.writeLong(sessionId);
+            size = SEGMENT_HEADER_SIZE;
+        }
+        
+        /**
+         * Appends a record to this segment.
+         * @param contents the contents of the record
+         * @throws IOException if the segment file cannot be written
+         */
+        void write(byte[] contents) throws IOException {
+            CRC32 crc = new CRC32();
+            crc.update(contents);
+            
+            out.writeInt(contents.length);
+            out.writeInt((int)crc.getValue());
+            out.write(contents);
+            size = size + RECORD_HEADER_SIZE + contents.length;
+        }
+        
+        /**
+         * Forces the records appended before to the disk.
+         * @throws IOException if the segment file cannot be written
+         */
+        void sync() throws IOException {
+            out.flush();
+            stream.getFD().sync();
+        }
+        
+        /**
+         * Closes the segment file.
+         */
+        void close() {
+            if (stream != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    System.err.println(e.getMessage());
+                }
+                stream = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package org.jtool.changerecorder.history;
+
+import org.jtool.changerecorder.operation.IOperation;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the journal written by {@link HistoryJournal} and converts it into the operations that have not been exported.
+ * Segments still being written can be read, since reading a segment stops at a record that has not been completely written.
+ * A segment whose history file exists is skipped, since its operations are read from the history file.
+ */
+public class Journal2Operation {
+    
+    /**
+     * The converter that reads the binary representation of operations stored in records.
+     */
+    private Binary2Operation converter;
+    
+    /**
+     * The operations that have been read and not released, which are keyed by their sessions and identifiers.
+     * The release of an operation, which is recorded only in segments of the first version, always follows the operation.
+     */
+    private Map<String, IOperation> operations = new LinkedHashMap<String, IOperation>();
+    
+    /**
+     * The name of the branch recorded in the segments read last, or <code>null</code> if none was recorded.
+     */
+    private String branchName = null;
+    
+    /**
+     * Creates an object that reads the journal.
+     */
+    public Journal2Operation() {
+        this(new Binary2Operation());
+    }
+    
+    /**
+     * Creates an object that reads the journal with a given converter.
+     * @param converter the converter that reads the binary representation of operations
+     */
+    public Journal2Operation(Binary2Operation converter) {
+        this.converter = converter;
+    }
+    
+    /**
+     * Releases the converter. This object cannot be used after it was closed.
+     */
+    public void close() {
+        converter.close();
+    }
+    
+    /**
+     * Tests if a file is a directory storing the segments of the journal.
+     * @param path the full path indicating the file
+     * @return <code>true</code> if the file is the directory of the journal, otherwise <code>false</code>
+     */
+    public static boolean isJournalDir(String path) {
+        File dir = new File(path);
+        return dir.isDirectory() && dir.getName().equals(HistoryJournal.JournalDirName);
+    }
+    
+    /**
+     * Tests if a file is a segment of the journal.
+     * @param path the full path indicating the file
+     * @return <code>true</code> if the file name has the extension of the segments, otherwise <code>false</code>
+     */
+    public static boolean isJournalFile(String path) {
+        return path.endsWith(BinaryConstants.JournalExtension);
+    }
+    
+    /**
+     * Returns the history file into which the operations of a segment are exported.
+     * The history file is placed in the directory of the history files, which contains the directory of the journal.
+     * @param segment the segment file
+     * @return the history file
+     */
+    public static File getHistoryFile(File segment) {
+        String name = segment.getName();
+        if (isJournalFile(name)) {
+            name = name.substring(0, name.length() - BinaryConstants.JournalExtension.length());
+        }
+        return new File(segment.getAbsoluteFile().getParentFile().getParentFile(), name + ".xml");
+    }
+    
+    /**
+     * Returns the name of the branch recorded in the segments read last.
+     * A segment records at most one branch, since {@link HistoryJournal} creates a new segment when the branch changes.
+     * @return the name of the branch, or <code>null</code> if none was recorded
+     */
+    public String getBranchName() {
+        return branchName;
+    }
+    
+    /**
+     * Reads the operations not released from all the segments in the directory of the journal,
+     * and passes them to a given handler in the order of the segments.
+     * @param path the full path indicating the directory of the journal
+     * @param handler the handler receiving the operations
+     * @return <code>true</code> if the journal was read, or <code>false</code> if the path is not the directory of the journal
+     * @throws IOException if a segment cannot be read or a completely written record is broken
+     */
+    public boolean read(String path, OperationHandler handler) throws IOException {
+        if (!isJournalDir(path)) {
+            return false;
+        }
+        
+        File[] files = new File(path).listFiles();
+        if (files == null) {
+            return false;
+        }
+        
+        read(Arrays.asList(files), handler);
+        return true;
+    }
+    
+    /**
+     * Reads the operations not released from given segments, and passes them to a given handler in the order of the segments.
+     * Files that are not segments of the journal and segments that have been exported are skipped.
+     * @param files the segment files
+     * @param handler the handler receiving the operations
+     * @throws IOException if a segment cannot be read or a completely written record is broken
+     */
+    public void read(List<File> files, OperationHandler handler) throws IOException {
+        List<File> segments = new ArrayList<File>(files);
+        Collections.sort(segments, new Comparator<File>() {
+            
+            public int compare(File f1, File f2) {
+                String name1 = f1.getName();
+                String name2 = f2.getName();
+                if (name1.length() != name2.length()) {
+                    return name1.length() - name2.length();
+                }
+                return name1.compareTo(name2);
+            }
+        });
+        
+        operations.clear();
+        branchName = null;
+        for (File file : segments) {
+            if (file.isFile() && isJournalFile(file.getPath()) && !getHistoryFile(file).exists()) {
+                readSegment(file);
+            }
+        }
+        
+        for (IOperation op : operations.values()) {
+            handler.handle(op);
+        }
+        operations.clear();
+    }
+    
+    /**
+     * Reads the records of a segment.
+     * A segment deleted after the directory was listed is skipped, since its operations have been exported.
+     * @param file the segment file
+     * @throws IOException if the segment cannot be read or a completely written record is broken
+     */
+    private void readSegment(File file) throws IOException {
+        InputStream is;
+        try {
+            is = new BufferedInputStream(new FileInputStream(file));
+        } catch (FileNotFoundException e) {
+            return;
+        }
+        
+        try {
+            DataInputStream in = new DataInputStream(is);
+            long sessionId;
+            try {
+                if (in.readInt() != BinaryConstants.JournalMagic) {
+                    throw new IOException("not a journal file: " + file.getPath());
+                }
+                int version = in.readInt();
+                if (version > BinaryConstants.JournalVersion) {
+                    throw new IOException("unsupported journal version: " + version);
+                }
+                sessionId = in.readLong();
+            } catch (EOFException e) {
+                return;
+            }
+            
+            long remaining = file.length() - 16;
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] contents;
+                int checksum;
+                try {
+                    int len = in.readInt();
+                    checksum = in.readInt();
+                    remaining = remaining - 8;
+                    if (len <= 0 || len > remaining) {
+                        return;
+                    }
+                    
+                    contents = new byte[len];
+                    in.readFully(contents);
+                    remaining = remaining - len;
+                } catch (EOFException e) {
+                    return;
+                }
+                
+                crc.reset();
+                crc.update(contents);
+                if ((int)crc.getValue() != checksum) {
+                    return;
+                }
+                
+                readRecord(sessionId, contents);
+            }
+        
+        } finally {
+            is.close();
+        }
+    }
+    
+    /**
+     * Reads the contents of a record.
+     * @param sessionId the identifier of the session that wrote the record
+     * @param contents the contents of the record
+     * @throws IOException if the record is broken
+     */
+    private void readRecord(final long sessionId, byte[] contents) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(contents));
+        int kind = in.readByte();
+        
+        if (kind == BinaryConstants.JournalOperationRecord) {
+            final long[] id = new long[] { in.readLong() };
+            OperationHandler handler = new OperationHandler() {
+                
+                /**
+                 * Stores an operation read from the record with its key.
+                 * @param op the operation
+                 */
+                @Override
+                public void handle(IOperation op) {
+                    operations.put(getKey(sessionId, id[0]), op);
+                    id[0]++;
+                }
+            };
+            
+            if (!converter.read(in, handler)) {
+                throw new IOException("broken journal record");
+            }
+        
+        } else if (kind == BinaryConstants.JournalReleaseRecord) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                operations.remove(getKey(sessionId, in.readLong()));
+            }
+        
+        } else if (kind == BinaryConstants.JournalBranchRecord) {
+            in.readUTF();
+            String name = in.readUTF();
+            branchName = name.length() > 0 ? name : null;
+        }
+    }
+    
+    /**
+     * Returns the key of an operation.
+     * @param sessionId the identifier of the session that wrote the operation
+     * @param id the identifier of the operation
+     * @return the key
+     */
+    private static String getKey(long sessionId, long id) {
+        return String.valueOf(sessionId) + ':' + String.valueOf(id);
+    }
+}
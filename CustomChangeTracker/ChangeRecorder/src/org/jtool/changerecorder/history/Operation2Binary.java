@@ -0,0 +1,298 @@
+package org.jtool.changerecorder.history;
+
+import org.jtool.changerecorder.operation.CompoundOperation;
+import org.jtool.changerecorder.operation.CopyOperation;
+import org.jtool.changerecorder.operation.FileOperation;
+import org.jtool.changerecorder.operation.IOperation;
+import org.jtool.changerecorder.operation.MenuOperation;
+import org.jtool.changerecorder.operation.NormalOperation;
+import org.jtool.changerecorder.operation.ResourceOperation;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Converts the operation history into the binary representation.
+ * Times are stored as differences from the preceding operation, integers as variable-length values,
+ * paths and authors through a string table, and long texts are compressed.
+ * An instance is not thread-safe, but can be reused for writing several histories one after another.
+ */
+public class Operation2Binary {
+    
+    /**
+     * The character set of strings stored in the binary representation.
+     */
+    protected static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    /**
+     * The stream into which the binary representation is written.
+     */
+    private DataOutputStream out;
+    
+    /**
+     * The indices of the strings that have already been written.
+     */
+    private Map<String, Integer> strings = new HashMap<String, Integer>();
+    
+    /**
+     * The time of the operation written last.
+     */
+    private long lastTime;
+    
+    /**
+     * The compressor of long texts.
+     */
+    private Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    
+    /**
+     * Writes the binary representation of the operation history into a file.
+     * @param history the operation history to be written
+     * @param path the full path indicating the file into which the history is written
+     * @throws IOException if the file cannot be written
+     */
+    public void write(OperationHistory history, String path) throws IOException {
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(path));
+        try {
+            write(history, os);
+        } finally {
+            os.close();
+        }
+    }
+    
+    /**
+     * Writes the binary representation of the operation history into a stream.
+     * @param history the operation history to be written
+     * @param os the output stream into which the history is written
+     * @throws IOException if the stream cannot be written
+     */
+    public void write(OperationHistory history, OutputStream os) throws IOException {
+        out = new DataOutputStream(os);
+        strings.clear();
+        lastTime = 0;
+        
+        out.writeInt(BinaryConstants.Magic);
+        writeInt(BinaryConstants.Version);
+        
+        for (IOperation op : history.getOperations()) {
+            if (op != null) {
+                writeOperation(op);
+            }
+        }
+        writeTag(BinaryConstants.EndTag);
+        out.flush();
+    }
+    
+    /**
+     * Releases the native memory of the compressor. This writer cannot be used after it was closed.
+     */
+    public void close() {
+        deflater.end();
+    }
+    
+    /**
+     * Writes the binary representation of the specified operation.
+     * Subclasses can override this method to write additional kinds of operations,
+     * using a tag that is not less than {@link BinaryConstants#ExtendedOperationTag}.
+     * @param op the operation to be written
+     * @throws IOException if the stream cannot be written
+     */
+    protected void writeOperation(IOperation op) throws IOException {
+        if (op.getOperationType() == IOperation.Type.NORMAL) {
+            NormalOperation nop = (NormalOperation)op;
+            writeTag(BinaryConstants.NormalOperationTag);
+            writeTime(nop.getTime());
+            writeInt(nop.getSequenceNumber());
+            writeString(nop.getFilePath());
+            writeString(nop.getAuthor());
+            writeInt(nop.getStart());
+            writeText(nop.getInsertedText());
+            writeText(nop.getDeletedText());
+            writeString(nop.getActionType().toString());
+            
+        } else if (op.getOperationType() == IOperation.Type.COMPOUND) {
+            CompoundOperation cop = (CompoundOperation)op;
+            writeTag(BinaryConstants.CompoundOperationTag);
+            writeTime(cop.getTime());
+            writeString(cop.getAuthor());
+            writeString(cop.getLabel());
+            for (IOperation o : cop.getLeaves()) {
+                if (o != null) {
+                    writeOperation(o);
+                }
+            }
+            writeTag(BinaryConstants.EndTag);
+            
+        } else if (op.getOperationType() == IOperation.Type.COPY) {
+            CopyOperation cop = (CopyOperation)op;
+            writeTag(BinaryConstants.CopyOperationTag);
+            writeTime(cop.getTime());
+            writeString(cop.getFilePath());
+            writeString(cop.getAuthor());
+            writeInt(cop.getStart());
+            writeText(cop.getCopiedText());
+            
+        } else if (op.getOperationType() == IOperation.Type.FILE) {
+            FileOperation fop = (FileOperation)op;
+            writeTag(BinaryConstants.FileOperationTag);
+            writeTime(fop.getTime());
+            writeString(fop.getFilePath());
+            writeString(fop.getAuthor());
+            writeString(fop.getActionType().toString());
+            writeText(fop.getCode());
+            
+        } else if (op.getOperationType() == IOperation.Type.MENU) {
+            MenuOperation mop = (MenuOperation)op;
+            writeTag(BinaryConstants.MenuOperationTag);
+            writeTime(mop.getTime());
+            writeString(mop.getFilePath());
+            writeString(mop.getAuthor());
+            writeString(mop.getLabel());
+            
+        } else if (op.getOperationType() == IOperation.Type.RESOURCE) {
+            ResourceOperation rop = (ResourceOperation)op;
+            writeTag(BinaryConstants.ResourceOperationTag);
+            writeTime(rop.getTime());
+            writeString(rop.getFilePath());
+            writeString(rop.getAuthor());
+            writeString(rop.getActionType().toString());
+            writeString(rop.getTarget().toString());
+            writeString(rop.getIdenticalPath());
+            
+        } else {
+            System.err.println(Operation2Binary.class.getName() + ": unknown operation");
+        }
+    }
+    
+    /**
+     * Writes the tag indicating the kind of an operation.
+     * @param tag the tag to be written
+     * @throws IOException if the stream cannot be written
+     */
+    protected void writeTag(int tag) throws IOException {
+        writeUnsigned(tag);
+    }
+    
+    /**
+     * Writes the time of an operation as the difference from the time of the operation written last.
+     * @param time the time to be written
+     * @throws IOException if the stream cannot be written
+     */
+    protected void writeTime(long time) throws IOException {
+        long delta = time - lastTime;
+        writeUnsigned((delta << 1) ^ (delta >> 63));
+        lastTime = time;
+    }
+    
+    /**
+     * Writes an integer as a variable-length value.
+     * @param value the integer to be written
+     * @throws IOException if the stream cannot be written
+     */
+    protected void writeInt(int value) throws IOException {
+        writeUnsigned(((long)value << 1) ^ ((long)value >> 63));
+    }
+    
+    /**
+     * Writes a string that is likely to repeat, such as a path or an author.
+     * A string appearing for the first time is stored in the string table and is afterwards referred to by its index.
+     * @param str the string to be written, which can be <code>null</code>
+     * @throws IOException if the stream cannot be written
+     */
+    protected void writeString(String str) throws IOException {
+        if (str == null) {
+            writeUnsigned(0);
+            return;
+        }
+        
+        Integer idx = strings.get(str);
+        if (idx != null) {
+            writeUnsigned(idx.intValue() + 1);
+            return;
+        }
+        
+        int size = strings.size();
+        strings.put(str, size);
+        writeUnsigned(size + 1);
+        writeBytes(str.getBytes(UTF8));
+    }
+    
+    /**
+     * Writes a text of an operation, which is compressed if it is long.
+     * @param text the text to be written, which can be <code>null</code>
+     * @throws IOException if the stream cannot be written
+     */
+    protected void writeText(String text) throws IOException {
+        if (text == null) {
+            writeUnsigned(BinaryConstants.NullText);
+            return;
+        }
+        
+        byte[] bytes = text.getBytes(UTF8);
+        if (bytes.length >= BinaryConstants.CompressionThreshold) {
+            byte[] compressed = deflate(bytes);
+            if (compressed.length < bytes.length) {
+                writeUnsigned(BinaryConstants.DeflatedText);
+                writeUnsigned(bytes.length);
+                writeBytes(compressed);
+                return;
+            }
+        }
+        
+        writeUnsigned(BinaryConstants.PlainText);
+        writeBytes(bytes);
+    }
+    
+    /**
+     * Writes a byte array preceded by its length.
+     * @param bytes the byte array to be written
+     * @throws IOException if the stream cannot be written
+     */
+    private void writeBytes(byte[] bytes) throws IOException {
+        writeUnsigned(bytes.length);
+        out.write(bytes);
+    }
+    
+    /**
+     * Writes a non-negative value as a variable-length value, seven bits per byte.
+     * @param value the value to be written
+     * @throws IOException if the stream cannot be written
+     */
+    private void writeUnsigned(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int)((value & 0x7F) | 0x80));
+            value = value >>> 7;
+        }
+        out.write((int)value);
+    }
+    
+    /**
+     * Compresses a byte array.
+     * @param bytes the byte array to be compressed
+     * @return the compressed bytes
+     */
+    private byte[] deflate(byte[] bytes) {
+        deflater.reset();
+        deflater.setInput(bytes);
+        deflater.finish();
+        
+        byte[] buf = new byte[bytes.length];
+        int len = 0;
+        while (!deflater.finished() && len < buf.length) {
+            len = len + deflater.deflate(buf, len, buf.length - len);
+        }
+        if (!deflater.finished()) {
+            return bytes;
+        }
+        
+        byte[] compressed = new byte[len];
+        System.arraycopy(buf, 0, compressed, 0, len);
+        return compressed;
+    }
+}
@@ -0,0 +1,15 @@
+package org.jtool.changerecorder.history;
+
+import org.jtool.changerecorder.operation.IOperation;
+
+/**
+ * Defines the interface used for receiving operations one at a time while an operation history is read.
+ */
+public interface OperationHandler {
+    
+    /**
+     * Receives an operation read from the operation history.
+     * @param op the operation
+     */
+    public void handle(IOperation op);
+}
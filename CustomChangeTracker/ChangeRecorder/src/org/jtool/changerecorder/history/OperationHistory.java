@@ -12,6 +12,7 @@ import org.jtool.changerecorder.operation.IOperation;
 import org.jtool.changerecorder.util.StringComparator;
 import org.jtool.changerecorder.util.XmlFileStream;
 import org.w3c.dom.Document;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.ArrayList;
 import java.util.List;
@@ -205,6 +206,7 @@ public class OperationHistory {
     
     /**
      * Writes this operation history into its history file.
+     * The binary representation is written if the path has its extension, otherwise the XML representation is written.
      * @param the encoding of a text to be written
      * @return <code>true</code> if the operation history might be successfully written, otherwise <code>false</code>
      */
@@ -213,6 +215,19 @@ public class OperationHistory {
             return false;
         }
         
+        if (Binary2Operation.isBinaryFile(path)) {
+            Operation2Binary writer = new Operation2Binary();
+            try {
+                writer.write(this, path);
+                return true;
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+                return false;
+            } finally {
+                writer.close();
+            }
+        }
+        
         Document doc = Operation2Xml.convert(this);
         XmlFileStream.write(doc, path, encoding);
         
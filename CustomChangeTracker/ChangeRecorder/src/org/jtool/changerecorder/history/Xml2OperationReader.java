@@ -0,0 +1,263 @@
+package org.jtool.changerecorder.history;
+
+import org.jtool.changerecorder.operation.CompoundOperation;
+import org.jtool.changerecorder.operation.CopyOperation;
+import org.jtool.changerecorder.operation.FileOperation;
+import org.jtool.changerecorder.operation.IOperation;
+import org.jtool.changerecorder.operation.MenuOperation;
+import org.jtool.changerecorder.operation.NormalOperation;
+import org.jtool.changerecorder.operation.ResourceOperation;
+import org.jtool.changerecorder.util.StringComparator;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the XML representation of the operation history as a stream and converts it into operations one at a time.
+ * Unlike {@link Xml2Operation}, each operation is passed to a handler while the file is read, without building a DOM instance.
+ */
+public class Xml2OperationReader {
+    
+    /**
+     * Reads operations from an XML file and passes them to a given handler in the order of the file.
+     * Only the current format of the operation history is read; <code>false</code> is returned for the other formats
+     * so that they can be converted by {@link Xml2Operation#convert(org.w3c.dom.Document)}.
+     * @param path the full path indicating the XML file to be read
+     * @param handler the handler receiving the operations
+     * @return <code>true</code> if the file was read, or <code>false</code> if its format is not supported
+     * @throws IOException if the file cannot be read
+     * @throws XMLStreamException if the contents of the file are broken
+     */
+    public boolean read(String path, OperationHandler handler) throws IOException, XMLStreamException {
+        InputStream in = new BufferedInputStream(new FileInputStream(path));
+        try {
+            return read(in, handler);
+        } finally {
+            in.close();
+        }
+    }
+    
+    /**
+     * Reads operations from an XML stream and passes them to a given handler in the order of the stream.
+     * @param in the input stream of the XML representation
+     * @param handler the handler receiving the operations
+     * @return <code>true</code> if the stream was read, or <code>false</code> if its format is not supported
+     * @throws XMLStreamException if the contents of the stream are broken
+     */
+    public boolean read(InputStream in, OperationHandler handler) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    
+        XMLStreamReader reader = factory.createXMLStreamReader(in);
+        try {
+            if (!nextStartElement(reader) ||
+                !StringComparator.isSame(reader.getLocalName(), XmlConstantStrings.OperationHistoryElem)) {
+                return false;
+            }
+    
+            String version = reader.getAttributeValue(null, XmlConstantStrings.VersionAttr);
+            if (version == null || !version.endsWith("a")) {
+                return false;
+            }
+    
+            while (nextStartElement(reader)) {
+                if (StringComparator.isSame(reader.getLocalName(), XmlConstantStrings.OperationsElem)) {
+                    readOperations(reader, handler);
+                    return true;
+                }
+            }
+            return false;
+    
+        } finally {
+            reader.close();
+        }
+    }
+    
+    /**
+     * Moves the stream to the next start element.
+     * @param reader the XML stream
+     * @return <code>true</code> if a start element was found, or <code>false</code> if the stream ends
+     * @throws XMLStreamException if the contents of the stream are broken
+     */
+    private boolean nextStartElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Reads all the operations within the operations element.
+     * @param reader the XML stream positioned at the start of the operations element
+     * @param handler the handler receiving the operations
+     * @throws XMLStreamException if the contents of the stream are broken
+     */
+    private void readOperations(XMLStreamReader reader, OperationHandler handler) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                IOperation op = readOperation(reader);
+                if (op != null) {
+                    handler.handle(op);
+                }
+    
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Reads an operation from its element.
+     * @param reader the XML stream positioned at the start of the operation element, which is moved to its end
+     * @return the operation, or <code>null</code> if the element does not represent any operation
+     * @throws XMLStreamException if the contents of the stream are broken
+     */
+    private IOperation readOperation(XMLStreamReader reader) throws XMLStreamException {
+        String name = reader.getLocalName();
+        Map<String, String> attrs = new HashMap<String, String>();
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            attrs.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+        }
+    
+        if (StringComparator.isSame(name, XmlConstantStrings.CompoundOperationElem)) {
+            List<IOperation> ops = new ArrayList<IOperation>();
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    ops.add(readOperation(reader));
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    break;
+                }
+            }
+    
+            return new CompoundOperation(Long.parseLong(getAttribute(attrs, XmlConstantStrings.TimeAttr)),
+                ops, getAttribute(attrs, XmlConstantStrings.LabelAttr));
+        }
+    
+        Map<String, String> texts = readTexts(reader);
+        return createOperation(name, attrs, texts);
+    }
+    
+    /**
+     * Reads the texts stored in the child elements of an operation element.
+     * @param reader the XML stream positioned at the start of the operation element, which is moved to its end
+     * @return the map whose keys are the names of the child elements and values are the texts stored in them
+     * @throws XMLStreamException if the contents of the stream are broken
+     */
+    private Map<String, String> readTexts(XMLStreamReader reader) throws XMLStreamException {
+        Map<String, String> texts = new HashMap<String, String>();
+        String child = null;
+        StringBuilder buf = null;
+        int depth = 0;
+    
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                if (depth == 1) {
+                    child = reader.getLocalName();
+                    buf = null;
+                }
+    
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == 0) {
+                    break;
+                }
+    
+                if (depth == 1 && !texts.containsKey(child)) {
+                    texts.put(child, buf != null ? buf.toString() : null);
+                }
+                depth--;
+    
+            } else if (depth == 1 && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA ||
+                                      event == XMLStreamConstants.SPACE)) {
+                if (buf == null) {
+                    buf = new StringBuilder();
+                }
+                buf.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            }
+        }
+        return texts;
+    }
+    
+    /**
+     * Creates an operation from the attributes and texts of its element.
+     * Subclasses can override this method to create operations represented by additional elements.
+     * @param name the name of the element
+     * @param attrs the attributes of the element
+     * @param texts the texts stored in the child elements
+     * @return the created operation, or <code>null</code> if the element does not represent any operation
+     */
+    protected IOperation createOperation(String name, Map<String, String> attrs, Map<String, String> texts) {
+        if (StringComparator.isSame(name, XmlConstantStrings.NormalOperationElem)) {
+            return new NormalOperation(Long.parseLong(getAttribute(attrs, XmlConstantStrings.TimeAttr)),
+                Integer.parseInt(getAttribute(attrs, XmlConstantStrings.SeqAttr)),
+                getAttribute(attrs, XmlConstantStrings.FileAttr),
+                getAttribute(attrs, XmlConstantStrings.AuthorAttr),
+                Integer.parseInt(getAttribute(attrs, XmlConstantStrings.OffsetAttr)),
+                texts.get(XmlConstantStrings.InsertedElem), texts.get(XmlConstantStrings.DeletedElem),
+                NormalOperation.Type.parseType(getAttribute(attrs, XmlConstantStrings.ActionAttr)));
+    
+        } else if (StringComparator.isSame(name, XmlConstantStrings.FileOperationElem)) {
+            String code = texts.get(XmlConstantStrings.CodeElem);
+            if (code == null) {
+                code = "";
+            }
+    
+            return new FileOperation(Long.parseLong(getAttribute(attrs, XmlConstantStrings.TimeAttr)),
+                getAttribute(attrs, XmlConstantStrings.FileAttr),
+                getAttribute(attrs, XmlConstantStrings.AuthorAttr),
+                FileOperation.Type.parseType(getAttribute(attrs, XmlConstantStrings.ActionAttr)), code);
+    
+        } else if (StringComparator.isSame(name, XmlConstantStrings.MenuOperationElem)) {
+            return new MenuOperation(Long.parseLong(getAttribute(attrs, XmlConstantStrings.TimeAttr)),
+                getAttribute(attrs, XmlConstantStrings.FileAttr),
+                getAttribute(attrs, XmlConstantStrings.AuthorAttr),
+                getAttribute(attrs, XmlConstantStrings.LabelAttr));
+    
+        } else if (StringComparator.isSame(name, XmlConstantStrings.CopyOperationElem)) {
+            return new CopyOperation(Long.parseLong(getAttribute(attrs, XmlConstantStrings.TimeAttr)),
+                getAttribute(attrs, XmlConstantStrings.FileAttr),
+                getAttribute(attrs, XmlConstantStrings.AuthorAttr),
+                Integer.parseInt(getAttribute(attrs, XmlConstantStrings.OffsetAttr)),
+                texts.get(XmlConstantStrings.CopiedElem));
+    
+        } else if (StringComparator.isSame(name, XmlConstantStrings.ResourceOperationElem)) {
+            return new ResourceOperation(Long.parseLong(getAttribute(attrs, XmlConstantStrings.TimeAttr)),
+                getAttribute(attrs, XmlConstantStrings.FileAttr),
+                getAttribute(attrs, XmlConstantStrings.AuthorAttr),
+                ResourceOperation.Type.parseType(getAttribute(attrs, XmlConstantStrings.ActionAttr)),
+                ResourceOperation.Target.parseType(getAttribute(attrs, XmlConstantStrings.TargetAttr)),
+                getAttribute(attrs, XmlConstantStrings.APathAttr));
+        }
+        return null;
+    }
+    
+    /**
+     * Obtains the value of an attribute.
+     * @param attrs the attributes of an element
+     * @param name the name of the attribute
+     * @return the value of the attribute, or the empty string if the attribute does not exist
+     */
+    protected static String getAttribute(Map<String, String> attrs, String name) {
+        String value = attrs.get(name);
+        if (value == null) {
+            return "";
+        }
+        return value;
+    }
+}
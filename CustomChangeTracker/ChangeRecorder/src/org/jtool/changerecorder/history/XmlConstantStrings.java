@@ -38,6 +38,7 @@ public interface XmlConstantStrings {
     static final String ActionAttr = "action";
     static final String LabelAttr = "label";
     static final String AuthorAttr = "author";
+    static final String BranchAttr = "branch";
     
     static final String TargetAttr = "target";
     static final String APathAttr = "apath";
@@ -126,6 +126,14 @@ public abstract class AbstractOperation implements IOperation {
         return path;
     }
     
+    /**
+     * Changes the path name of the file on which this operation was performed.
+     * @param path the new path name of the file
+     */
+    public void setFilePath(String path) {
+        this.path = path;
+    }
+    
     /**
      * Returns the author's name.
      * @return the author's name
@@ -92,4 +92,22 @@ public class Activator extends AbstractUIPlugin implements IStartup {
         IPreferenceStore store = Activator.getDefault().getPreferenceStore();
         return store.getBoolean(PreferencePage.MERGE_OPERATIONS);
     }
+    
+    /**
+     * Returns the number of text changed operations between two synthesized restoration points.
+     * @return the number of the operations, or <code>0</code> if no restoration point is synthesized
+     */
+    public static int getSnapshotInterval() {
+        IPreferenceStore store = Activator.getDefault().getPreferenceStore();
+        return store.getInt(PreferencePage.SNAPSHOT_INTERVAL);
+    }
+    
+    /**
+     * Returns the number of changed characters between two synthesized restoration points.
+     * @return the number of the characters, or <code>0</code> if no restoration point is synthesized by the size
+     */
+    public static int getSnapshotDeltaSize() {
+        IPreferenceStore store = Activator.getDefault().getPreferenceStore();
+        return store.getInt(PreferencePage.SNAPSHOT_DELTA_SIZE);
+    }
 }
@@ -21,5 +21,7 @@ public class PreferenceInitializer extends AbstractPreferenceInitializer {
     public void initializeDefaultPreferences() {
         IPreferenceStore store = Activator.getDefault().getPreferenceStore();
         store.setDefault(PreferencePage.MERGE_OPERATIONS, PreferencePage.MERGE_OPERATIONS_DEFAULT);
+        store.setDefault(PreferencePage.SNAPSHOT_INTERVAL, PreferencePage.SNAPSHOT_INTERVAL_DEFAULT);
+        store.setDefault(PreferencePage.SNAPSHOT_DELTA_SIZE, PreferencePage.SNAPSHOT_DELTA_SIZE_DEFAULT);
     }
 }
@@ -8,6 +8,7 @@ package org.jtool.changerepository;
 
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
 import org.eclipse.jface.preference.BooleanFieldEditor;
+import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.ui.IWorkbenchPreferencePage;
 import org.eclipse.ui.IWorkbench;
 
@@ -28,6 +29,28 @@ public class PreferencePage extends FieldEditorPreferencePage implements IWorkbe
      */
     static final boolean MERGE_OPERATIONS_DEFAULT = true;
     
+    /**
+     * Synthesizes a restoration point every time this number of text changed operations are replayed.
+     * No restoration point is synthesized if this value is zero.
+     */
+    static final String SNAPSHOT_INTERVAL = "snapshot.interval";
+    
+    /**
+     * The default number of text changed operations between two synthesized restoration points.
+     */
+    static final int SNAPSHOT_INTERVAL_DEFAULT = 100;
+    
+    /**
+     * Synthesizes a restoration point every time the inserted and deleted text of replayed operations reaches
+     * this number of characters. No restoration point is synthesized by the text size if this value is zero.
+     */
+    static final String SNAPSHOT_DELTA_SIZE = "snapshot.delta.size";
+    
+    /**
+     * The default number of changed characters between two synthesized restoration points.
+     */
+    static final int SNAPSHOT_DELTA_SIZE_DEFAULT = 65536;
+    
     /**
      * Creates an object for a preference page.
      */
@@ -46,6 +69,12 @@ public class PreferencePage extends FieldEditorPreferencePage implements IWorkbe
         
         addField(new BooleanFieldEditor(MERGE_OPERATIONS,
           "Merges two successive operations with respect to the Kana-Kanji conversion", getFieldEditorParent()));
+        
+        addField(new IntegerFieldEditor(SNAPSHOT_INTERVAL,
+          "Number of operations between restoration points (0: disabled)", getFieldEditorParent()));
+        
+        addField(new IntegerFieldEditor(SNAPSHOT_DELTA_SIZE,
+          "Number of changed characters between restoration points (0: disabled)", getFieldEditorParent()));
     }
     
     /**
@@ -6,7 +6,9 @@
 
 package org.jtool.changerepository.data;
 
+import org.jtool.changerepository.operation.CodeDocument;
 import org.jtool.changerepository.operation.OperationManager;
+import org.jtool.changerepository.operation.OperationRestorer;
 import org.jtool.changerepository.operation.UnifiedOperation;
 import org.jtool.changerecorder.diff.DiffOperationGenerator;
 import org.jtool.changerecorder.operation.NormalOperation;
@@ -70,6 +72,9 @@ public class FileInfo extends RepositoryElementInfo {
 
     public void setOperations(List<UnifiedOperation> ops) {
         operations = ops;
+        if (operationManager != null) {
+            operationManager.updateRestorationPoints();
+        }
     }
 
     public boolean containsOperation(int id) {
@@ -202,6 +207,14 @@ public class FileInfo extends RepositoryElementInfo {
         return operationManager.getRestorationPointNumber();
     }
 
+    /**
+     * Returns the number of the restoration points synthesized between the operations.
+     * @return the number of the synthesized restoration points
+     */
+    public int getSynthesizedRestorationPointNumber() {
+        return operationManager.getSynthesizedRestorationPointNumber();
+    }
+
     /**
      * Sets the time when the file information was last generated or modified
      * @param time the last generated or modified time of this file information
@@ -223,67 +236,96 @@ public class FileInfo extends RepositoryElementInfo {
      * @return <code>true</code> if mismatches were found, otherwise <code>false</code>
      */
     public boolean checkMismatches() {
+        return validate(true, false);
+    }
+
+    /**
+     * Fixes mismatches between a close operation and a open one.
+     */
+    public void fixCloseOpenMismatches() {
+        validate(false, true);
+    }
+
+    /**
+     * Checks mismatches between two operations and fixes mismatches between a close operation and a open one.
+     * @return <code>true</code> if mismatches were found, otherwise <code>false</code>
+     */
+    public boolean fixMismatches() {
+        return validate(true, true);
+    }
+
+    /**
+     * Checks and fixes mismatches by replaying all the operations for this file only once.
+     * @param check <code>true</code> if mismatches between two operations are checked
+     * @param fix <code>true</code> if mismatches between a close operation and a open one are fixed
+     * @return <code>true</code> if mismatches between two operations were found, otherwise <code>false</code>
+     */
+    private boolean validate(boolean check, boolean fix) {
         boolean errflag = false;
+        boolean fixed = false;
         List<UnifiedOperation> ops = getOperations();
+        List<UnifiedOperation> fixedOps = new ArrayList<UnifiedOperation>(fix ? ops.size() : 0);
+
+        OperationRestorer enforcer = new OperationRestorer();
+        CodeDocument doc = null;
+        boolean skip = false;
 
         for (int i = 0; i < ops.size(); i++) {
             UnifiedOperation op = ops.get(i);
 
-            if (op.isNormalOperation()) {
-                String code = getCode(i);
+            if (fix) {
+                fixedOps.add(op);
 
-                if (code == null) {
-                    System.out.println(" -- ERROR IN " + getFilePath() + " " + i);
-                    errflag = true;
+                if (op.isFileCloseOperation() && i + 1 < ops.size() && ops.get(i + 1).isFileOpenOperation()) {
+                    String closedCode = op.getCode();
+                    String openedCode = ops.get(i + 1).getCode();
 
-                    int f = i + 1;
-                    for (; f < ops.size(); f++) {
-                        UnifiedOperation o = ops.get(f);
-                        if (o.isFileOperation()) {
-                            i = f;
-                            break;
-                        }
-                    }
+                    if (closedCode != null && closedCode.compareTo(openedCode) != 0) {
+                        System.out.println("-- CLOSE/OPEN MISMATCH IN " + getFilePath() + " " + (i + 1) + "FIX IT ...");
 
-                    if (f >= ops.size()) {
-                        break;
+                        fixedOps.addAll(generateDiffOperation(ops.get(i + 1).getTime(), closedCode, openedCode));
+                        fixed = true;
                     }
                 }
             }
-        }
-        return errflag;
-    }
-
-    /**
-     * Fixes mismatches between a close operation and a open one.
-     */
-    public void fixCloseOpenMismatches() {
-        int gap = 1;
-        List<UnifiedOperation> original = getOperations();
-        List<UnifiedOperation> ops = new ArrayList<UnifiedOperation>(original);
 
-        for (int i = 0; i < ops.size(); i++) {
-            UnifiedOperation op = ops.get(i);
+            if (!check) {
+                continue;
+            }
 
-            if (op.isFileCloseOperation()) {
-                String closedCode = getCode(i);
+            if (OperationManager.isRestorationOperation(op)) {
+                if (skip && !op.isFileOperation()) {
+                    continue;
+                }
 
-                if (i + 1 < ops.size()) {
-                    UnifiedOperation o = ops.get(i + 1);
-                    if (o.isFileOpenOperation()) {
-                        String openedCode = getCode(i + 1);
+                skip = false;
+                if (op.getCode() != null) {
+                    doc = new CodeDocument(op.getCode());
+                } else {
+                    doc = null;
+                }
 
-                        if (closedCode != null && closedCode.compareTo(openedCode) != 0) {
-                            System.out.println("-- CLOSE/OPEN MISMATCH IN " + getFilePath() + " " + (i + 1) + "FIX IT ...");
+            } else if (!skip && op.isTextChangedOperation()) {
+                boolean success = doc != null && enforcer.applyOperation(doc, op);
 
-                            List<UnifiedOperation> dops = generateDiffOperation(o.getTime(), closedCode, openedCode);
-                            original.addAll(i + gap, dops);
-                            gap = gap + dops.size();
-                        }
+                if (!success && op.isNormalOperation()) {
+                    if (doc != null) {
+                        System.err.println(enforcer.getErrorStatus());
                     }
+                    System.out.println(" -- ERROR IN " + getFilePath() + " " + i);
+                    errflag = true;
+                    skip = true;
+                    doc = null;
                 }
             }
         }
+
+        if (fixed) {
+            ops.clear();
+            ops.addAll(fixedOps);
+            operationManager.updateRestorationPoints();
+        }
+        return errflag;
     }
 
     /**
@@ -12,20 +12,38 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.jface.operation.IRunnableWithProgress;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.IWorkbenchWindow;
+import org.jtool.changerecorder.history.Binary2Operation;
+import org.jtool.changerecorder.history.HistoryConverter;
+import org.jtool.changerecorder.history.Journal2Operation;
+import org.jtool.changerecorder.history.OperationHandler;
 import org.jtool.changerecorder.history.OperationHistory;
 import org.jtool.changerecorder.operation.IOperation;
 import org.jtool.changerecorder.util.XmlFileStream;
 import org.jtool.changerepository.Activator;
 import org.jtool.changerepository.event.RepositoryChangedEvent;
 import org.jtool.changerepository.event.RepositoryEventSource;
+import org.jtool.changerepository.operation.OperationManager;
 import org.jtool.changerepository.operation.UnifiedOperation;
 import org.w3c.dom.Document;
 
+import fse.eclipse.branchrecorder.commit.history.MH_Binary2Operation;
 import fse.eclipse.branchrecorder.commit.history.MH_Xml2Operation;
+import fse.eclipse.branchrecorder.commit.history.MH_Xml2OperationReader;
 
 /**
  * Collects information on a workspace and elements (projects, packages, and files) under it.
@@ -124,6 +142,31 @@ public class RepositoryManager {
         externalWorkspaceInfo = registOperations(path);
     }
 
+    /**
+     * Collects all operations stored in operation histories that have already been read into memory.
+     * The histories are neither written into nor read from the specified directory.
+     * @param path the top path for the directory which the histories are regarded as being stored in
+     * @param histories the collection of the operation histories
+     */
+    public void collectOperationsInRepository(String path, List<OperationHistory> histories) {
+        collectOperationsInRepository(path, histories, null);
+    }
+
+    /**
+     * Collects all operations stored in operation histories that have already been read into memory.
+     * The operations are collected in the calling thread, which reports the progress to a given monitor.
+     * @param path the top path for the directory which the histories are regarded as being stored in
+     * @param histories the collection of the operation histories
+     * @param monitor the progress monitor to use to display progress and receive requests for cancellation,
+     * or <code>null</code> if the progress is shown in the workbench window
+     */
+    public void collectOperationsInRepository(String path, List<OperationHistory> histories, IProgressMonitor monitor) {
+        if (externalWorkspaceInfo != null) {
+            externalWorkspaceInfo.clear();
+        }
+        externalWorkspaceInfo = registOperations(path, histories, monitor);
+    }
+
     /**
      * Collects all operations stored in the history files existing in a specified directory.
      * @param path the top path for the directory storing the history files
@@ -139,11 +182,49 @@ public class RepositoryManager {
             return null;
         }
 
-        workspaceInfo = collectOperations(path, files);
+        workspaceInfo = collectOperations(path, files, null, null);
+        return fireRepositoryChanged(workspaceInfo);
+    }
 
+    /**
+     * Collects all operations stored in operation histories.
+     * @param path the top path for the directory which the histories are regarded as being stored in
+     * @param histories the collection of the operation histories
+     * @param monitor the progress monitor to use, or <code>null</code> if the progress is shown in the workbench window
+     * @return the information on the workspace
+     */
+    private WorkspaceInfo registOperations(String path, List<OperationHistory> histories, IProgressMonitor monitor) {
+        if (path == null || histories.size() == 0) {
+            return null;
+        }
+
+        workspaceInfo = collectOperations(path, null, histories, monitor);
+        return fireRepositoryChanged(workspaceInfo);
+    }
+
+    /**
+     * Notifies listeners that the repository has changed.
+     * The listeners are notified in the UI thread even if the operations are collected in another thread.
+     * @param workspaceInfo the information on the workspace, which can be <code>null</code>
+     * @return the information on the workspace
+     */
+    private WorkspaceInfo fireRepositoryChanged(WorkspaceInfo workspaceInfo) {
         if (workspaceInfo != null) {
-            RepositoryChangedEvent evt = new RepositoryChangedEvent(this);
-            RepositoryEventSource.getInstance().fire(evt);
+            final RepositoryChangedEvent evt = new RepositoryChangedEvent(this);
+            if (Display.getCurrent() != null) {
+                RepositoryEventSource.getInstance().fire(evt);
+            } else {
+                Display.getDefault().syncExec(new Runnable() {
+
+                    /**
+                     * Notifies the listeners in the UI thread.
+                     */
+                    @Override
+                    public void run() {
+                        RepositoryEventSource.getInstance().fire(evt);
+                    }
+                });
+            }
         }
 
         return workspaceInfo;
@@ -159,16 +240,21 @@ public class RepositoryManager {
     }
 
     /**
-     * Collects all operations stored in history files existing in a specified directory.
+     * Collects all operations stored in history files existing in a specified directory, or in operation histories.
+     * The progress is reported to a given monitor if any. Otherwise, the progress is shown in the workbench window
+     * when called in the UI thread, and the operations are collected in the calling thread without showing it when not.
      * @param path the top path for the directory storing the history files
-     * @param files the collection of history files storing the operations
+     * @param files the collection of history files storing the operations, or <code>null</code> if the histories are given
+     * @param histories the collection of operation histories, or <code>null</code> if the history files are given
+     * @param pmonitor the progress monitor to use, or <code>null</code> if none is given
      * @return the information on the workspace
      */
-    private WorkspaceInfo collectOperations(String path, final List<File> files) {
+    private WorkspaceInfo collectOperations(String path, final List<File> files, final List<OperationHistory> histories,
+                                            IProgressMonitor pmonitor) {
         final WorkspaceInfo workspaceInfo = new WorkspaceInfo(path);
+        final int size = files != null ? files.size() : histories.size();
         try {
-            IWorkbenchWindow window = Activator.getWorkbenchWindow();
-            window.run(false, true, new IRunnableWithProgress() {
+            IRunnableWithProgress runnable = new IRunnableWithProgress() {
 
                 /**
                  * Reads history files existing in the specified directory.
@@ -177,19 +263,42 @@ public class RepositoryManager {
                  */
                 @Override
                 public void run(IProgressMonitor monitor) throws InterruptedException {
-                    monitor.beginTask("Extracting operations", files.size() * 2);
-
-                    List<UnifiedOperation> ops = readHistoryFiles(files, monitor);
+                    monitor.beginTask("Extracting operations", 3);
+
+                    IProgressMonitor sub = new SubProgressMonitor(monitor, 1);
+                    sub.beginTask("Reading operations", size);
+                    List<UnifiedOperation> ops;
+                    if (files != null) {
+                        ops = readHistoryFiles(files, sub);
+                    } else {
+                        ops = convertHistories(histories, sub);
+                    }
+                    sub.done();
                     workspaceInfo.setOperations(ops);
 
-                    registOperations(workspaceInfo, ops, monitor);
+                    sub = new SubProgressMonitor(monitor, 1);
+                    sub.beginTask("Registering operations", ops.size());
+                    registOperations(workspaceInfo, ops, sub);
+                    sub.done();
 
                     workspaceInfo.setTimeRange();
-                    workspaceInfo.fixMismatches();
+
+                    sub = new SubProgressMonitor(monitor, 1);
+                    fixMismatches(workspaceInfo, sub);
+                    sub.done();
 
                     monitor.done();
                 }
-            });
+            };
+
+            if (pmonitor != null) {
+                runnable.run(pmonitor);
+            } else if (Display.getCurrent() != null) {
+                IWorkbenchWindow window = Activator.getWorkbenchWindow();
+                window.run(true, true, runnable);
+            } else {
+                runnable.run(new NullProgressMonitor());
+            }
 
         } catch (InvocationTargetException e) {
             e.printStackTrace();
@@ -210,6 +319,7 @@ public class RepositoryManager {
 
     /**
      * Returns all descendant history files of a specified directory.
+     * The directory of the journal is returned as a single history file, since its segments are read together.
      * @param path the path of the specified directory
      * @return the descendant files
      */
@@ -218,9 +328,13 @@ public class RepositoryManager {
 
         File dir = new File(path);
         if (dir.isFile()) {
-            if (path.endsWith(".xml")) {
+            if (Binary2Operation.isBinaryFile(path)) {
+                files.add(dir);
+            } else if (path.endsWith(".xml") && !new File(HistoryConverter.getBinaryPath(path)).exists()) {
                 files.add(dir);
             }
+        } else if (Journal2Operation.isJournalDir(path)) {
+            files.add(dir);
         } else if (dir.isDirectory()) {
             File[] children = dir.listFiles();
             for (File f : children) {
@@ -233,42 +347,167 @@ public class RepositoryManager {
 
     /**
      * Reads the history files.
+     * The files are parsed in parallel, and the operations stored in them are merged in time order.
      * @param files the collection of the history files
      * @param monitor the progress monitor to use to display progress and receive requests for cancellation
      * @return the collection of all the operations stored in the history files
      * @throws InterruptedException if the operation detects a request to cancel or any failure
      */
     private List<UnifiedOperation> readHistoryFiles(List<File> files, IProgressMonitor monitor) throws InterruptedException {
-        List<UnifiedOperation> operations = new ArrayList<UnifiedOperation>(65536);
-        for (File file : files) {
-            String fpath = file.getAbsolutePath();
-            Document doc = null;
-            try {
-                doc = XmlFileStream.read(fpath);
-            } catch (Exception e) {
-                throw new InterruptedException("Fails to read the history files " + fpath);
+        int threads = Math.max(1, Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            CompletionService<List<UnifiedOperation>> service = new ExecutorCompletionService<List<UnifiedOperation>>(executor);
+            List<Future<List<UnifiedOperation>>> futures = new ArrayList<Future<List<UnifiedOperation>>>(files.size());
+            for (final File file : files) {
+                futures.add(service.submit(new Callable<List<UnifiedOperation>>() {
+
+                    /**
+                     * Reads a history file.
+                     * @return the collection of the operations stored in the history file
+                     * @throws InterruptedException if the history file cannot be read or converted
+                     */
+                    @Override
+                    public List<UnifiedOperation> call() throws InterruptedException {
+                        return readHistoryFile(file);
+                    }
+                }));
             }
 
-            OperationHistory history = MH_Xml2Operation.convert(doc);
+            for (int done = 0; done < files.size(); ) {
+                if (monitor.isCanceled()) {
+                    monitor.done();
+                    throw new InterruptedException("User interrupted");
+                }
+
+                Future<List<UnifiedOperation>> future = service.poll(100, TimeUnit.MILLISECONDS);
+                if (future != null) {
+                    done++;
+                    monitor.worked(1);
+                }
+            }
 
-            if (history == null) {
-                throw new InterruptedException("Fails to convert the history files " + fpath);
+            List<List<UnifiedOperation>> runs = new ArrayList<List<UnifiedOperation>>(files.size());
+            for (Future<List<UnifiedOperation>> future : futures) {
+                try {
+                    runs.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new InterruptedException(e.getCause().getMessage());
+                }
             }
+            return OperationManager.merge(runs);
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
+    /**
+     * Converts operation histories into unified operations.
+     * @param histories the collection of the operation histories
+     * @param monitor the progress monitor to use to display progress and receive requests for cancellation
+     * @return the collection of all the operations stored in the histories
+     * @throws InterruptedException if the operation detects a request to cancel
+     */
+    private List<UnifiedOperation> convertHistories(List<OperationHistory> histories, IProgressMonitor monitor) throws InterruptedException {
+        List<List<UnifiedOperation>> runs = new ArrayList<List<UnifiedOperation>>(histories.size());
+        for (OperationHistory history : histories) {
+            List<UnifiedOperation> operations = new ArrayList<UnifiedOperation>();
             for (int i = 0; i < history.size(); i++) {
-                IOperation op = history.getOperation(i);
-                List<UnifiedOperation> ops = UnifiedOperation.create(op);
-                operations.addAll(ops);
+                operations.addAll(UnifiedOperation.create(history.getOperation(i)));
             }
+            runs.add(operations);
 
             if (monitor.isCanceled()) {
                 monitor.done();
                 throw new InterruptedException("User interrupted");
             }
-
             monitor.worked(1);
         }
+        return OperationManager.merge(runs);
+    }
+
+    /**
+     * Reads a history file.
+     * @param file the history file
+     * @return the collection of the operations stored in the history file
+     * @throws InterruptedException if the history file cannot be read or converted
+     */
+    private List<UnifiedOperation> readHistoryFile(File file) throws InterruptedException {
+        String fpath = file.getAbsolutePath();
+        final List<UnifiedOperation> operations = new ArrayList<UnifiedOperation>();
+        OperationHandler handler = new OperationHandler() {
+
+            /**
+             * Converts an operation read from the history file into unified operations.
+             * @param op the operation
+             */
+            @Override
+            public void handle(IOperation op) {
+                operations.addAll(UnifiedOperation.create(op));
+            }
+        };
+
+        if (Binary2Operation.isBinaryFile(fpath)) {
+            Binary2Operation reader = new MH_Binary2Operation();
+            try {
+                if (reader.read(fpath, handler)) {
+                    return operations;
+                }
+            } catch (Exception e) {
+                throw new InterruptedException("Fails to read the history files " + fpath);
+            } finally {
+                reader.close();
+            }
+            throw new InterruptedException("Fails to convert the history files " + fpath);
+        }
+
+        if (Journal2Operation.isJournalDir(fpath)) {
+            Journal2Operation reader = new Journal2Operation(new MH_Binary2Operation());
+            try {
+                if (reader.read(fpath, handler)) {
+                    return operations;
+                }
+            } catch (Exception e) {
+                throw new InterruptedException("Fails to read the history files " + fpath);
+            } finally {
+                reader.close();
+            }
+            throw new InterruptedException("Fails to convert the history files " + fpath);
+        }
+
+        try {
+            if (new MH_Xml2OperationReader().read(fpath, handler)) {
+                return operations;
+            }
+        } catch (Exception e) {
+            throw new InterruptedException("Fails to read the history files " + fpath);
+        }
 
+        Document doc = null;
+        try {
+            doc = XmlFileStream.read(fpath);
+        } catch (Exception e) {
+            throw new InterruptedException("Fails to read the history files " + fpath);
+        }
+
+        if (doc == null) {
+            throw new InterruptedException("Fails to read the history files " + fpath);
+        }
+
+        OperationHistory history = MH_Xml2Operation.convert(doc);
+
+        if (history == null) {
+            throw new InterruptedException("Fails to convert the history files " + fpath);
+        }
+
+        operations.clear();
+        for (int i = 0; i < history.size(); i++) {
+            IOperation op = history.getOperation(i);
+            List<UnifiedOperation> ops = UnifiedOperation.create(op);
+            operations.addAll(ops);
+        }
         return operations;
     }
 
@@ -304,6 +543,27 @@ public class RepositoryManager {
         }
     }
 
+    /**
+     * Fixes mismatches between close operations and open ones of the respective files.
+     * @param winfo the information on the workspace
+     * @param monitor the progress monitor to use to display progress and receive requests for cancellation
+     * @throws InterruptedException if the operation detects a request to cancel
+     */
+    private void fixMismatches(WorkspaceInfo winfo, IProgressMonitor monitor) throws InterruptedException {
+        List<FileInfo> finfos = winfo.getAllFileInfo();
+        monitor.beginTask("Fixing mismatches", finfos.size());
+        for (FileInfo finfo : finfos) {
+            finfo.fixMismatches();
+
+            if (monitor.isCanceled()) {
+                monitor.done();
+                throw new InterruptedException();
+            }
+
+            monitor.worked(1);
+        }
+    }
+
     /**
      * Registers resource change operations on information of their respective files.
      * @param winfo the information on the workspace
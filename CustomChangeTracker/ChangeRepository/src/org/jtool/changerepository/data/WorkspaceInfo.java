@@ -6,7 +6,6 @@
 
 package org.jtool.changerepository.data;
 
-import org.jtool.changerepository.operation.OperationManager;
 import org.jtool.changerepository.operation.UnifiedOperation;
 import java.util.List;
 import java.util.ArrayList;
@@ -50,12 +49,11 @@ public class WorkspaceInfo extends RepositoryElementInfo {
     }
     
     /**
-     * Creates an instance that stores information on this workspace.
-     * @param ops all the operations related to this workspace
+     * Sets the operations related to this workspace.
+     * @param ops all the operations related to this workspace, which must be sorted in time order
      */
     public void setOperations(List<UnifiedOperation> ops) {
         operations = ops;
-        OperationManager.sort(operations);
     }
     
     /**
@@ -82,8 +80,7 @@ public class WorkspaceInfo extends RepositoryElementInfo {
      */
     public void fixMismatches() {
         for (FileInfo finfo : files) {
-            finfo.checkMismatches();
-            finfo.fixCloseOpenMismatches();
+            finfo.fixMismatches();
         }
     }
     
@@ -11,6 +11,8 @@ import org.jtool.changerepository.operation.UnifiedOperation;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
 import java.util.Set;
 import java.util.HashSet;
 
@@ -35,6 +37,16 @@ public class FileOpDepGraph {
      */
     private Set<OpDepGraphEdge> edges = new HashSet<OpDepGraphEdge>();
     
+    /**
+     * The nodes of this graph indexed by their identification numbers.
+     */
+    private List<OpDepGraphNode> nodesByGId = new ArrayList<OpDepGraphNode>();
+    
+    /**
+     * The first nodes created from the respective operations, indexed by the identification numbers of the operations.
+     */
+    private Map<Integer, OpDepGraphNode> nodesById = new HashMap<Integer, OpDepGraphNode>();
+    
     /**
      * The time when the file information was last generated or modified.
      */
@@ -62,6 +74,17 @@ public class FileOpDepGraph {
      */
     void add(OpDepGraphNode node) {
         nodes.add(node);
+        
+        int gid = node.getGId();
+        while (nodesByGId.size() <= gid) {
+            nodesByGId.add(null);
+        }
+        nodesByGId.set(gid, node);
+        
+        Integer id = Integer.valueOf(node.getId());
+        if (!nodesById.containsKey(id)) {
+            nodesById.put(id, node);
+        }
     }
     
     /**
@@ -96,10 +119,25 @@ public class FileOpDepGraph {
      * @return the found operation node, or <code>null</code> if none
      */
     public OpDepGraphNode getNode(int gid) {
-        for (OpDepGraphNode n : nodes) {
-            if (n.getGId() == gid) {
-                return n;
-            }
+        if (gid < 0 || gid >= nodesByGId.size()) {
+            return null;
+        }
+        return nodesByGId.get(gid);
+    }
+    
+    /**
+     * Obtains the node of this graph that is equal to a given node.
+     * @param node the node to be retrieved
+     * @return the node in this graph, or <code>null</code> if none
+     */
+    private OpDepGraphNode getEqualNode(OpDepGraphNode node) {
+        if (node == null) {
+            return null;
+        }
+        
+        OpDepGraphNode n = getNode(node.getGId());
+        if (n != null && n.equals(node)) {
+            return n;
         }
         return null;
     }
@@ -111,8 +149,13 @@ public class FileOpDepGraph {
      * @return <code>true</code> an edge was found, otherwise <code>false</code>
      */
     public boolean connect(OpDepGraphNode src, OpDepGraphNode dst) {
-        for (OpDepGraphEdge edge : edges) {
-            if (edge.getSrcNode().equals(src) && edge.getDstNode().equals(dst)) {
+        OpDepGraphNode n = getEqualNode(src);
+        if (n == null) {
+            return false;
+        }
+        
+        for (OpDepGraphEdge edge : n.getOutgoingEdges()) {
+            if (edges.contains(edge) && edge.getDstNode().equals(dst)) {
                 return true;
             }
         }
@@ -126,9 +169,12 @@ public class FileOpDepGraph {
      */
     public List<OpDepGraphNode> getSrcNodes(OpDepGraphNode dst) {
         List<OpDepGraphNode> ns = new ArrayList<OpDepGraphNode>();
-        for (OpDepGraphEdge edge : edges) {
-            if (edge.getDstNode().equals(dst)) {
-                ns.add(edge.getSrcNode());
+        OpDepGraphNode n = getEqualNode(dst);
+        if (n != null) {
+            for (OpDepGraphEdge edge : n.getIncomingEdges()) {
+                if (edges.contains(edge)) {
+                    ns.add(edge.getSrcNode());
+                }
             }
         }
         return ns;
@@ -141,9 +187,12 @@ public class FileOpDepGraph {
      */
     public List<OpDepGraphNode> getDstNodes(OpDepGraphNode src) {
         List<OpDepGraphNode> ns = new ArrayList<OpDepGraphNode>();
-        for (OpDepGraphEdge edge : edges) {
-            if (edge.getSrcNode().equals(src)) {
-                ns.add(edge.getDstNode());
+        OpDepGraphNode n = getEqualNode(src);
+        if (n != null) {
+            for (OpDepGraphEdge edge : n.getOutgoingEdges()) {
+                if (edges.contains(edge)) {
+                    ns.add(edge.getDstNode());
+                }
             }
         }
         return ns;
@@ -155,12 +204,7 @@ public class FileOpDepGraph {
      * @return <code>true</code> if this graph contains the node, otherwise <code>false</code>
      */
     public boolean contains(OpDepGraphNode node) {
-        for (OpDepGraphNode n : nodes) {
-            if (n.equals(node)) {
-                return true;
-            }
-        }
-        return false;
+        return getEqualNode(node) != null;
     }
     
     /**
@@ -169,8 +213,17 @@ public class FileOpDepGraph {
      * @return <code>true</code> if this graph contains the edge, otherwise <code>false</code>
      */
     public boolean contains(OpDepGraphEdge edge) {
-        for (OpDepGraphEdge e : edges) {
-            if (e.equals(edge)) {
+        if (edge == null) {
+            return false;
+        }
+        
+        OpDepGraphNode n = getEqualNode(edge.getSrcNode());
+        if (n == null) {
+            return false;
+        }
+        
+        for (OpDepGraphEdge e : n.getOutgoingEdges()) {
+            if (edges.contains(e) && e.equals(edge)) {
                 return true;
             }
         }
@@ -253,12 +306,16 @@ public class FileOpDepGraph {
      * @return the found operation node, or <code>null</code> if node
      */
     public OpDepGraphNode getOperationNode(UnifiedOperation op) {
-        for (OpDepGraphNode node : getAllNodes()) {
-            if (node.getId() == op.getId()) {
-                return node;
-            }
-        }
-        return null;
+        return getOperationNode(op.getId());
+    }
+    
+    /**
+     * Obtains the operation node corresponding to the operation with the specified identification number.
+     * @param id the identification number of the operation
+     * @return the found operation node, or <code>null</code> if node
+     */
+    public OpDepGraphNode getOperationNode(int id) {
+        return nodesById.get(Integer.valueOf(id));
     }
     
     /**
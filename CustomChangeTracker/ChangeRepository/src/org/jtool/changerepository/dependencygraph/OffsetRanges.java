@@ -0,0 +1,190 @@
+package org.jtool.changerepository.dependencygraph;
+
+import java.util.List;
+import java.util.ArrayList;
+
+/**
+ * Stores offsets of characters as ranges of consecutive offsets.
+ * The ranges are kept in the order of the characters they originally came from, and each range is <code>[start,end)</code>.
+ */
+class OffsetRanges {
+    
+    /**
+     * The beginning offsets of the respective ranges, inclusive.
+     */
+    private int[] starts = new int[4];
+    
+    /**
+     * The ending offsets of the respective ranges, exclusive.
+     */
+    private int[] ends = new int[4];
+    
+    /**
+     * The number of the ranges.
+     */
+    private int count = 0;
+    
+    /**
+     * Removes all the offsets.
+     */
+    void clear() {
+        count = 0;
+    }
+    
+    /**
+     * Tests if there is no offset.
+     * @return <code>true</code> if no offset is stored, otherwise <code>false</code>
+     */
+    boolean isEmpty() {
+        return count == 0;
+    }
+    
+    /**
+     * Returns the number of the offsets.
+     * @return the number of the offsets
+     */
+    int size() {
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            size = size + ends[i] - starts[i];
+        }
+        return size;
+    }
+    
+    /**
+     * Returns the first offset.
+     * @return the offset of the character that came first
+     * @throws IndexOutOfBoundsException if no offset is stored
+     */
+    int first() {
+        if (count == 0) {
+            throw new IndexOutOfBoundsException("no offset");
+        }
+        return starts[0];
+    }
+    
+    /**
+     * Appends a range of offsets.
+     * @param start the beginning offset of the range, inclusive
+     * @param end the ending offset of the range, exclusive
+     */
+    void add(int start, int end) {
+        if (start >= end) {
+            return;
+        }
+        
+        if (count > 0 && ends[count - 1] == start) {
+            ends[count - 1] = end;
+            return;
+        }
+        
+        if (count == starts.length) {
+            int[] nstarts = new int[count * 2];
+            int[] nends = new int[count * 2];
+            System.arraycopy(starts, 0, nstarts, 0, count);
+            System.arraycopy(ends, 0, nends, 0, count);
+            starts = nstarts;
+            ends = nends;
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+    
+    /**
+     * Shifts all the offsets that are not less than a given threshold.
+     * @param threshold the smallest offset to be shifted
+     * @param delta the amount of the shift
+     */
+    void shift(int threshold, int delta) {
+        if (delta == 0 || count == 0) {
+            return;
+        }
+        
+        int[] ostarts = starts;
+        int[] oends = ends;
+        int ocount = count;
+        starts = new int[ocount * 2];
+        ends = new int[ocount * 2];
+        count = 0;
+        
+        for (int i = 0; i < ocount; i++) {
+            int s = ostarts[i];
+            int e = oends[i];
+            if (e <= threshold) {
+                add(s, e);
+            } else if (s >= threshold) {
+                add(s + delta, e + delta);
+            } else {
+                add(s, threshold);
+                add(threshold + delta, e + delta);
+            }
+        }
+    }
+    
+    /**
+     * Removes all the offsets within a given range.
+     * @param start the beginning offset of the range, inclusive
+     * @param end the ending offset of the range, exclusive
+     * @return <code>true</code> if any offset was removed, otherwise <code>false</code>
+     */
+    boolean remove(int start, int end) {
+        if (start >= end || count == 0) {
+            return false;
+        }
+        
+        int[] ostarts = starts;
+        int[] oends = ends;
+        int ocount = count;
+        starts = new int[ocount * 2];
+        ends = new int[ocount * 2];
+        count = 0;
+        
+        boolean removed = false;
+        for (int i = 0; i < ocount; i++) {
+            int s = ostarts[i];
+            int e = oends[i];
+            if (e <= start || end <= s) {
+                add(s, e);
+            } else {
+                add(s, start);
+                add(end, e);
+                removed = true;
+            }
+        }
+        return removed;
+    }
+    
+    /**
+     * Tests if any offset is within a given range.
+     * @param start the beginning offset of the range, inclusive
+     * @param end the ending offset of the range, exclusive
+     * @return <code>true</code> if an offset is within the range, otherwise <code>false</code>
+     */
+    boolean intersects(int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        
+        for (int i = 0; i < count; i++) {
+            if (starts[i] < end && start < ends[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Obtains all the offsets one by one.
+     * @return the collection of the offsets
+     */
+    List<Integer> toList() {
+        List<Integer> offsets = new ArrayList<Integer>(size());
+        for (int i = 0; i < count; i++) {
+            for (int o = starts[i]; o < ends[i]; o++) {
+                offsets.add(Integer.valueOf(o));
+            }
+        }
+        return offsets;
+    }
+}
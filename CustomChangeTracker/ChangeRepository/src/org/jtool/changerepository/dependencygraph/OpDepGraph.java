@@ -15,6 +15,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.HashSet;
 
@@ -39,6 +40,12 @@ public class OpDepGraph {
      */
     private Set<OpDepGraphEdge> interEdges = new HashSet<OpDepGraphEdge>();
     
+    /**
+     * The nodes of all the file graphs indexed by the identification numbers of their operations,
+     * or <code>null</code> if the index must be rebuilt.
+     */
+    private Map<Integer, OpDepGraphNode> nodesById;
+    
     /**
      * Creates a new object storing information on the operation dependency graph.
      * @param pinfo the information of the project corresponding to this operation dependency graph
@@ -61,6 +68,7 @@ public class OpDepGraph {
      */
     void regist(FileOpDepGraph fgraph) {
         fileGraphs.put(fgraph.getFileInfo().getKey(), fgraph);
+        nodesById = null;
     }
     
     /**
@@ -90,6 +98,7 @@ public class OpDepGraph {
      */
     void remove(FileInfo finfo) {
         fileGraphs.remove(finfo.getKey());
+        nodesById = null;
     }
     
     /**
@@ -118,8 +127,8 @@ public class OpDepGraph {
      * @return <code>true</code> if this graph contains the node, otherwise <code>false</code>
      */
     public boolean contains(OpDepGraphNode node) {
-        for (OpDepGraphNode n : getAllNodes()) {
-            if (n.equals(node)) {
+        for (FileOpDepGraph fgraph : fileGraphs.values()) {
+            if (fgraph.contains(node)) {
                 return true;
             }
         }
@@ -132,9 +141,18 @@ public class OpDepGraph {
      * @return <code>true</code> if this graph contains the edge, otherwise <code>false</code>
      */
     public boolean contains(OpDepGraphEdge edge) {
-        for (OpDepGraphEdge e : getAllEdges()) {
-            if (e.equals(edge)) {
-                return true;
+        for (FileOpDepGraph fgraph : fileGraphs.values()) {
+            if (fgraph.contains(edge.getSrcNode())) {
+                if (fgraph.contains(edge)) {
+                    return true;
+                }
+                
+                OpDepGraphNode src = fgraph.getNode(edge.getSrcNode().getGId());
+                for (OpDepGraphEdge e : src.getOutgoingEdges()) {
+                    if (interEdges.contains(e) && e.equals(edge)) {
+                        return true;
+                    }
+                }
             }
         }
         return false;
@@ -190,10 +208,9 @@ public class OpDepGraph {
      * @return the found operation node, or <code>null</code> if node
      */
     public UnifiedOperation getOperationNode(int id) {
-        for (OpDepGraphNode n : getAllNodes()) {
-            if (n.getId() == id) {
-                return n.getOperation();
-            }
+        OpDepGraphNode n = getNodesById().get(Integer.valueOf(id));
+        if (n != null) {
+            return n.getOperation();
         }
         return null;
     }
@@ -204,12 +221,28 @@ public class OpDepGraph {
      * @return the found operation node, or <code>null</code> if node
      */
     public OpDepGraphNode getOperationNode(UnifiedOperation op) {
-        for (OpDepGraphNode node : getAllNodes()) {
-            if (node.getId() == op.getId()) {
-                return node;
+        return getNodesById().get(Integer.valueOf(op.getId()));
+    }
+    
+    /**
+     * Returns the index of the nodes of all the file graphs, which is rebuilt if the file graphs were changed.
+     * @return the map whose keys are the identification numbers of operations and values are their nodes
+     */
+    private Map<Integer, OpDepGraphNode> getNodesById() {
+        if (nodesById == null) {
+            Map<Integer, OpDepGraphNode> index = new HashMap<Integer, OpDepGraphNode>();
+            for (FileOpDepGraph fgraph : fileGraphs.values()) {
+                for (OpDepGraphNode node : fgraph.getAllNodes()) {
+                    Integer id = Integer.valueOf(node.getId());
+                    OpDepGraphNode n = index.get(id);
+                    if (n == null || n.getGId() > node.getGId()) {
+                        index.put(id, node);
+                    }
+                }
             }
+            nodesById = index;
         }
-        return null;
+        return nodesById;
     }
     
     /**
@@ -15,6 +15,10 @@ import org.eclipse.jface.operation.IRunnableWithProgress;
 import org.eclipse.ui.IWorkbenchWindow;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.lang.reflect.InvocationTargetException;
 
 /**
@@ -24,40 +28,33 @@ import java.lang.reflect.InvocationTargetException;
 public class OpDepGraphConstructor {
     
     /**
-     * The operation dependency graph under creation, which corresponds to the project.
+     * Creates operation dependency graphs corresponding to the specified files.
+     * The graphs are constructed in parallel, each of which is confined to a single thread.
+     * @param files the collection of the file information
+     * @return the created operation graphs in the order of the files, or <code>null</code> if the construction was canceled
      */
-    private static OpDepGraph pgraph;
-    
-    /**
-     * The operation dependency graph under creation, which corresponds to the file.
-     */
-    private static FileOpDepGraph fgraph;
-    
-    /**
-     * Creates an operation dependency graph corresponding to the specified file.
-     * @param finfo the file information
-     * @return the created operation graph for the file
-     */
-    static FileOpDepGraph createGraph(final FileInfo finfo) {
+    static List<FileOpDepGraph> createGraphs(final List<FileInfo> files) {
+        final List<FileOpDepGraph> fgraphs = new ArrayList<FileOpDepGraph>(files.size());
         try {
             IWorkbenchWindow window = Activator.getWorkbenchWindow();
             window.run(true, true, new IRunnableWithProgress() {
                 
                 /**
-                 * Constructs the operation dependency graph with the given progress monitor.
+                 * Constructs the operation dependency graphs with the given progress monitor.
                  * @param monitor the progress monitor to use to display progress and receive requests for cancellation
                  * @exception InvocationTargetException if the run method must propagate a checked exception
                  * @exception InterruptedException if the operation detects a request to cancel
                  */
                 @Override
                 public void run(IProgressMonitor monitor) throws InvocationTargetException, InterruptedException {
-                    fgraph = new FileOpDepGraph(finfo);
-                    List<UnifiedOperation> ops = finfo.getOperations();
+                    int size = 0;
+                    for (FileInfo finfo : files) {
+                        size = size + finfo.getOperations().size() * 2;
+                    }
                     
-                    monitor.beginTask("Constructing operation graph: " + finfo.getName(), ops.size() * 2);
+                    monitor.beginTask("Constructing operation graphs: " + files.size() + " files", size);
                     
-                    collectOperationNodes(ops, monitor);
-                    collectDependenceEdges(monitor);
+                    fgraphs.addAll(createGraphs(files, monitor));
                     
                     monitor.done();
                 }
@@ -69,26 +66,89 @@ public class OpDepGraphConstructor {
             return null;
         }
         
+        if (fgraphs.size() != files.size()) {
+            return null;
+        }
+        return fgraphs;
+    }
+    
+    /**
+     * Creates operation dependency graphs corresponding to the specified files on a fork-join pool.
+     * @param files the collection of the file information
+     * @param monitor the progress monitor shared by all the constructions
+     * @return the created operation graphs in the order of the files
+     * @exception InvocationTargetException if the construction of a graph fails
+     * @exception InterruptedException if the operation detects a request to cancel
+     */
+    private static List<FileOpDepGraph> createGraphs(List<FileInfo> files, final IProgressMonitor monitor) throws InvocationTargetException, InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(files.size(), Runtime.getRuntime().availableProcessors())));
+        try {
+            List<ForkJoinTask<FileOpDepGraph>> tasks = new ArrayList<ForkJoinTask<FileOpDepGraph>>(files.size());
+            for (final FileInfo finfo : files) {
+                tasks.add(pool.submit(new Callable<FileOpDepGraph>() {
+                    
+                    /**
+                     * Constructs the operation dependency graph for a file.
+                     * @return the created operation graph
+                     * @exception InterruptedException if the operation detects a request to cancel
+                     */
+                    @Override
+                    public FileOpDepGraph call() throws InterruptedException {
+                        return createGraph(finfo, monitor);
+                    }
+                }));
+            }
+            
+            List<FileOpDepGraph> fgraphs = new ArrayList<FileOpDepGraph>(files.size());
+            for (ForkJoinTask<FileOpDepGraph> task : tasks) {
+                try {
+                    fgraphs.add(task.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof InterruptedException) {
+                        throw (InterruptedException)e.getCause();
+                    }
+                    throw new InvocationTargetException(e.getCause());
+                }
+            }
+            return fgraphs;
+            
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    /**
+     * Creates an operation dependency graph corresponding to the specified file.
+     * @param finfo the file information
+     * @param monitor the progress monitor to use to display progress and receive requests for cancellation
+     * @return the created operation graph for the file
+     * @exception InterruptedException if the operation detects a request to cancel
+     */
+    private static FileOpDepGraph createGraph(FileInfo finfo, IProgressMonitor monitor) throws InterruptedException {
+        FileOpDepGraph fgraph = new FileOpDepGraph(finfo);
+        List<UnifiedOperation> ops = finfo.getOperations();
+        
+        collectOperationNodes(fgraph, ops, monitor);
+        collectDependenceEdges(fgraph, monitor);
+        
         return fgraph;
     }
     
     /**
      * Collects operation nodes of the operation dependency graph.
+     * @param fgraph the operation graph under creation
      * @param ops the collection of the operations
      * @param monitor the progress monitor to use to display progress and receive requests for cancellation
      * @exception InterruptedException if the operation detects a request to cancel
      */
-    private static void collectOperationNodes(List<UnifiedOperation> ops, IProgressMonitor monitor) throws InterruptedException {
+    private static void collectOperationNodes(FileOpDepGraph fgraph, List<UnifiedOperation> ops, IProgressMonitor monitor) throws InterruptedException {
         int gid = 0;
         for (int idx = 0; idx < ops.size(); idx++) {
             
             if (monitor.isCanceled()) {
-                monitor.done();
                 throw new InterruptedException();
             }
             
-            monitor.subTask("Collecting opearation nodes " + String.valueOf(idx + 1) + "/" + ops.size());
-            
             UnifiedOperation op = ops.get(idx);
             if (op.isFileOpenOperation()) {
                 OpDepGraphNode node = new OpDepGraphOpenNode(gid, op);
@@ -120,42 +180,43 @@ public class OpDepGraphConstructor {
     
     /**
      * Collects dependence edges of the operation graph.
-     * @param graph the operation graph under creation
+     * @param fgraph the operation graph under creation
      * @param monitor the progress monitor to use to display progress and receive requests for cancellation
      * @throws InterruptedException if the operation detects a request to cancel
      */
-    private static void collectDependenceEdges(IProgressMonitor monitor) throws InterruptedException {
-        int idx = 0;
-        List<OpDepGraphNode> nodes = new ArrayList<OpDepGraphNode>(fgraph.getAllNodes());
-        OpDepGraph.sortNodes(nodes);
-        for (OpDepGraphNode node : nodes) {
+    private static void collectDependenceEdges(FileOpDepGraph fgraph, IProgressMonitor monitor) throws InterruptedException {
+        int size = fgraph.getAllNodes().size();
+        int ops = fgraph.getFileInfo().getOperations().size();
+        int worked = 0;
+        for (int gid = 0; gid < size; gid++) {
             
             if (monitor.isCanceled()) {
-                monitor.done();
                 throw new InterruptedException();
             }
             
-            monitor.subTask("Collecting dependence edges " + String.valueOf(idx + 1) + "/" + nodes.size());
-            
-            if (node.getGId() != 0) {
-                collectDependenceEdge(node);
+            OpDepGraphNode node = fgraph.getNode(gid);
+            if (node != null && gid != 0) {
+                collectDependenceEdge(fgraph, node);
             }
             
-            idx++;
-            monitor.worked(1);
+            int work = (int)((long)(gid + 1) * ops / size);
+            if (work > worked) {
+                monitor.worked(work - worked);
+                worked = work;
+            }
         }
     }
     
     /**
      * Finds a node on which a given node depends and creates a dependence edge between those nodes.
-     * @param graph the operation graph under creation
+     * @param fgraph the operation graph under creation
      * @param node the node that depends on the found node
      */
-    private static void collectDependenceEdge(OpDepGraphNode node) {
+    private static void collectDependenceEdge(FileOpDepGraph fgraph, OpDepGraphNode node) {
         for (int idx = node.getGId() - 1; idx >= 0; idx--) {
             OpDepGraphNode n = fgraph.getNode(idx);
             
-            if (node.getAdjustedOffsets().size() == 0) {
+            if (!node.hasAdjustedOffsets()) {
                 break;
             }
             
@@ -174,9 +235,8 @@ public class OpDepGraphConstructor {
      * @param graph the operation dependency graph for the project
      * @return the collection of the inter-edges
      */
-    public static void collectInterEdges(OpDepGraph graph) {
-        pgraph = graph;
-        final ProjectInfo pinfo = pgraph.getProjectInfo();
+    public static void collectInterEdges(final OpDepGraph graph) {
+        final ProjectInfo pinfo = graph.getProjectInfo();
         
         try {
             IWorkbenchWindow window = Activator.getWorkbenchWindow();
@@ -194,7 +254,7 @@ public class OpDepGraphConstructor {
                     
                     monitor.beginTask("Collecting inter-edges in the operation dependency graph: " + pinfo.getName(), ops.size());
                     
-                    collectCCPEdges(ops, monitor);
+                    collectCCPEdges(graph, ops, monitor);
                     
                     monitor.done();
                 }
@@ -209,48 +269,52 @@ public class OpDepGraphConstructor {
     
     /**
      * Collects ccp-edges between the node for the copy/copy operation and the node for the paste operation.
+     * A paste operation is matched only with the latest cut or copy operation preceding it, which is kept
+     * while the operations are scanned once.
+     * @param pgraph the operation dependency graph for the project
      * @param ops the collection of the operations
      * @param monitor the progress monitor to use to display progress and receive requests for cancellation
      * @exception InterruptedException if the operation detects a request to cancel
      */
-    private static void collectCCPEdges(List<UnifiedOperation> ops, IProgressMonitor monitor) throws InterruptedException {
-        for (int srcIdx = 0; srcIdx < ops.size(); srcIdx++) {
+    private static void collectCCPEdges(OpDepGraph pgraph, List<UnifiedOperation> ops, IProgressMonitor monitor) throws InterruptedException {
+        UnifiedOperation srcop = null;
+        String srcText = null;
+        OpDepGraphNode src = null;
+        
+        for (int idx = 0; idx < ops.size(); idx++) {
             
             if (monitor.isCanceled()) {
                 monitor.done();
                 throw new InterruptedException();
             }
             
-            monitor.subTask("Collecting ccp edges " + String.valueOf(srcIdx + 1) + "/" + ops.size());
+            monitor.subTask("Collecting ccp edges " + String.valueOf(idx + 1) + "/" + ops.size());
             
-            UnifiedOperation srcop = ops.get(srcIdx);
-            if (isCutCopyOperation(srcop)) {
-                String srcText = srcop.getCutCopiedText();
+            UnifiedOperation op = ops.get(idx);
+            if (srcop != null && isPasteOperation(op)) {
+                String dstText = op.getInsertedText();
                 
-                for (int dstIdx = srcIdx + 1; dstIdx < ops.size(); dstIdx++) {
-                    UnifiedOperation dstop = ops.get(dstIdx);
-                    if (isCutCopyOperation(dstop)) {
-                        dstIdx = ops.size();  // escape the loop
+                if (dstText.endsWith(srcText)) {
+                    if (src == null) {
+                        src = pgraph.getOperationNode(srcop);
                     }
-                    
-                    if (isPasteOperation(dstop)) {
-                        String dstText = dstop.getInsertedText();
+                    OpDepGraphNode dst = pgraph.getOperationNode(op);
+                    if (src != null && dst != null) {
                         
-                        if (dstText.endsWith(srcText)) {
-                            OpDepGraphNode src = pgraph.getOperationNode(srcop);
-                            OpDepGraphNode dst = pgraph.getOperationNode(dstop);
-                            if (src != null && dst != null) {
-                                
-                                OpDepGraphEdge edge = new OpDepGraphEdge(src, dst, OpDepGraphEdge.Sort.CPP);
-                                if (!pgraph.contains(edge)) {
-                                    pgraph.add(edge);
-                                }
-                            }
+                        OpDepGraphEdge edge = new OpDepGraphEdge(src, dst, OpDepGraphEdge.Sort.CPP);
+                        if (!pgraph.contains(edge)) {
+                            pgraph.add(edge);
                         }
                     }
                 }
             }
             
+            if (isCutCopyOperation(op)) {
+                srcop = op;
+                srcText = op.getCutCopiedText();
+                src = null;
+            }
+            
             monitor.worked(1);
         }
     }
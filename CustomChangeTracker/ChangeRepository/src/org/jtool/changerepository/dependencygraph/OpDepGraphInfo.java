@@ -64,11 +64,15 @@ public class OpDepGraphInfo {
             }
             
             if (files.size() != 0) {
-                for (FileInfo finfo : files) {
-                    FileOpDepGraph fgraph = OpDepGraphConstructor.createGraph(finfo);
+                List<FileOpDepGraph> fgraphs = OpDepGraphConstructor.createGraphs(files);
+                if (fgraphs == null) {
+                    return null;
+                }
+                
+                for (FileOpDepGraph fgraph : fgraphs) {
                     fgraph.setLastModifiedTime(Time.getCurrentTime());
                     
-                    graph.remove(finfo);
+                    graph.remove(fgraph.getFileInfo());
                     graph.regist(fgraph);
                 }
                 graph.removeAllEdges();
@@ -77,16 +81,16 @@ public class OpDepGraphInfo {
             }
             
         } else {
+            files.addAll(pinfo.getAllFileInfo());
+            List<FileOpDepGraph> fgraphs = OpDepGraphConstructor.createGraphs(files);
+            if (fgraphs == null) {
+                return null;
+            }
+            
             graph = new OpDepGraph(pinfo);
             allGraphs.put(pinfo.getKey(), graph);
             
-            for (FileInfo finfo : pinfo.getAllFileInfo()) {
-                FileOpDepGraph fgraph = OpDepGraphConstructor.createGraph(finfo);
-                if (fgraph == null) {
-                    reset();
-                    break;
-                }
-                
+            for (FileOpDepGraph fgraph : fgraphs) {
                 fgraph.setLastModifiedTime(Time.getCurrentTime());
                 graph.regist(fgraph);
             }
@@ -11,7 +11,6 @@ import org.jtool.changerecorder.util.Time;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.List;
-import java.util.ArrayList;
 
 /**
  * Stores the information on the node of the operation dependency graph.
@@ -40,9 +39,9 @@ public abstract class OpDepGraphNode {
     private HashSet<OpDepGraphEdge> outgoingEdges = new HashSet<OpDepGraphEdge>();
     
     /**
-     * The collection of the offsets after adjustment.
+     * The offsets after adjustment, which are stored as ranges.
      */
-    protected List<Integer> adjustedOffsets = new ArrayList<Integer>();
+    protected OffsetRanges adjustedOffsets = new OffsetRanges();
     
     /**
      * Creates a operation node for the operation dependency graph.
@@ -61,9 +60,7 @@ public abstract class OpDepGraphNode {
         adjustedOffsets.clear();
         
         if (getLength() > 0) {
-            for (int o = getOffset(); o < getOffset() + getLength(); o++) {
-                adjustedOffsets.add(new Integer(o));
-            }
+            adjustedOffsets.add(getOffset(), getOffset() + getLength());
         }
     }
     
@@ -226,7 +223,25 @@ public abstract class OpDepGraphNode {
      * @return the collection of the adjusted offsets
      */
     public List<Integer> getAdjustedOffsets() {
-        return adjustedOffsets;
+        return adjustedOffsets.toList();
+    }
+    
+    /**
+     * Tests if this node has any offset after adjustment.
+     * @return <code>true</code> if an adjusted offset remains, otherwise <code>false</code>
+     */
+    public boolean hasAdjustedOffsets() {
+        return !adjustedOffsets.isEmpty();
+    }
+    
+    /**
+     * Tests if any offset after adjustment is within a given range.
+     * @param start the beginning offset of the range, inclusive
+     * @param end the ending offset of the range, exclusive
+     * @return <code>true</code> if an adjusted offset is within the range, otherwise <code>false</code>
+     */
+    public boolean hasAdjustedOffsetsIn(int start, int end) {
+        return adjustedOffsets.intersects(start, end);
     }
     
     /**
@@ -281,30 +296,16 @@ public abstract class OpDepGraphNode {
      * @param node the node corresponding to the next operation
      */
     public void adjustOffsetsForward(OpDepGraphNode node) {
-        if (adjustedOffsets.size() == 0) {
+        if (adjustedOffsets.isEmpty()) {
             return;
         }
         
         int offset_j = node.getOffset();
-        List<Integer> adjustedOffsets2 = new ArrayList<Integer>(adjustedOffsets);
-        for (Integer offset : adjustedOffsets2) {
-            int offset_i = offset.intValue();
-            if (isAddNode()) {
-                if (offset_i > offset_j) {
-                    int adj = adjustedOffsets2.indexOf(offset);
-                    adjustedOffsets.remove(adj);
-                    int aoffset_i = offset_i - node.getAdjustedLength();
-                    adjustedOffsets.add(adj, new Integer(aoffset_i));
-                }
-                
-            } else if (isRemoveNode() || isCopyNode()) {
-                if (offset_i >= offset_j) {
-                    int adj = adjustedOffsets2.indexOf(offset);
-                    adjustedOffsets.remove(adj);
-                    int aoffset_i = offset_i - node.getAdjustedLength();
-                    adjustedOffsets.add(adj, new Integer(aoffset_i));
-                }
-            }
+        if (isAddNode()) {
+            adjustedOffsets.shift(offset_j + 1, -node.getAdjustedLength());
+            
+        } else if (isRemoveNode() || isCopyNode()) {
+            adjustedOffsets.shift(offset_j, -node.getAdjustedLength());
         }
     }
     
@@ -313,31 +314,16 @@ public abstract class OpDepGraphNode {
      * @param node the node corresponding to the previous operation
      */
     public void adjustOffsetsBackward(OpDepGraphNode node) {
-        if (adjustedOffsets.size() == 0) {
+        if (adjustedOffsets.isEmpty()) {
             return;
         }
         
         int offset_i = node.getOffset();
-        List<Integer> adjustedOffsets2 = new ArrayList<Integer>(adjustedOffsets);
-        for (Integer offset : adjustedOffsets2) {
-            int offset_j = offset.intValue();
+        if (isAddNode()) {
+            adjustedOffsets.shift(offset_i + 1, node.getAdjustedLength());
             
-            if (isAddNode()) {
-                if (offset_i < offset_j) {
-                    int adj = adjustedOffsets2.indexOf(offset);
-                    adjustedOffsets.remove(adj);
-                    int aoffset_j = offset_j + node.getAdjustedLength();
-                    adjustedOffsets.add(adj, new Integer(aoffset_j));
-                }
-                
-            } else if (isRemoveNode() || isCopyNode()) {
-                if (offset_i <= offset_j) {
-                    int adj = adjustedOffsets2.indexOf(offset);
-                    adjustedOffsets.remove(adj);
-                    int aoffset_j = offset_j + node.getAdjustedLength();
-                    adjustedOffsets.add(adj, new Integer(aoffset_j));
-                }
-            }
+        } else if (isRemoveNode() || isCopyNode()) {
+            adjustedOffsets.shift(offset_i, node.getAdjustedLength());
         }
     }
     
@@ -430,7 +416,7 @@ public abstract class OpDepGraphNode {
     public String getOffsets() {
         StringBuilder buf = new StringBuilder();
         buf.append("{");
-        for (Integer offset : adjustedOffsets) {
+        for (Integer offset : adjustedOffsets.toList()) {
             buf.append(" ");
             buf.append(offset.intValue());
         }
@@ -0,0 +1,294 @@
+package org.jtool.changerepository.operation;
+
+/**
+ * Stores the content of source code as a piece table so that operations can be applied to it in place.
+ */
+public class CodeDocument {
+
+    /**
+     * The maximum number of pieces before the pieces are compacted into a single one.
+     */
+    private static final int COMPACTION_THRESHOLD = 512;
+
+    /**
+     * The buffer storing the original content of the code.
+     */
+    private String original;
+
+    /**
+     * The buffer storing all the text inserted after the last compaction.
+     */
+    private StringBuilder added = new StringBuilder();
+
+    /**
+     * The start offsets of the respective pieces within their buffers.
+     */
+    private int[] starts = new int[16];
+
+    /**
+     * The lengths of the respective pieces.
+     */
+    private int[] lengths = new int[16];
+
+    /**
+     * The flags indicating if the respective pieces refer to the added buffer.
+     */
+    private boolean[] inAdded = new boolean[16];
+
+    /**
+     * The number of the pieces.
+     */
+    private int size = 0;
+
+    /**
+     * The length of the whole content of the code.
+     */
+    private int length = 0;
+
+    /**
+     * Creates an instance storing given code.
+     * @param code the content of the code
+     */
+    public CodeDocument(String code) {
+        reset(code);
+    }
+
+    /**
+     * Replaces the whole content of this document with given code.
+     * @param code the content of the code
+     */
+    public void reset(String code) {
+        original = code;
+        added.setLength(0);
+        size = 0;
+        length = code.length();
+        if (length > 0) {
+            starts[0] = 0;
+            lengths[0] = length;
+            inAdded[0] = false;
+            size = 1;
+        }
+    }
+
+    /**
+     * Returns the length of the content of the code.
+     * @return the number of characters
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Tests if the text at the specified offset is equal to a given text.
+     * @param start the offset of the text to be compared
+     * @param text the text to be compared
+     * @return <code>true</code> if both the texts are the same, otherwise <code>false</code>
+     * @throws StringIndexOutOfBoundsException if the text exceeds the range of the code
+     */
+    public boolean matches(int start, String text) {
+        checkRange(start, start + text.length());
+
+        int pos = 0;
+        int offset = 0;
+        for (int i = 0; i < size && pos < text.length(); i++) {
+            int end = offset + lengths[i];
+            if (start + pos < end) {
+                int from = starts[i] + start + pos - offset;
+                int len = Math.min(end - (start + pos), text.length() - pos);
+                if (!regionMatches(i, from, text, pos, len)) {
+                    return false;
+                }
+                pos = pos + len;
+            }
+            offset = end;
+        }
+        return true;
+    }
+
+    /**
+     * Tests if a region of a piece is equal to a region of a given text.
+     * @param i the index of the piece
+     * @param from the offset of the region within the buffer of the piece
+     * @param text the text to be compared
+     * @param pos the offset of the region within the text
+     * @param len the length of the regions
+     * @return <code>true</code> if both the regions are the same, otherwise <code>false</code>
+     */
+    private boolean regionMatches(int i, int from, String text, int pos, int len) {
+        if (inAdded[i]) {
+            for (int k = 0; k < len; k++) {
+                if (added.charAt(from + k) != text.charAt(pos + k)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return original.regionMatches(from, text, pos, len);
+    }
+
+    /**
+     * Obtains the text within the specified range.
+     * @param start the beginning offset of the text, inclusive
+     * @param end the ending offset of the text, exclusive
+     * @return the text within the range
+     * @throws StringIndexOutOfBoundsException if the range exceeds the range of the code
+     */
+    public String substring(int start, int end) {
+        checkRange(start, end);
+
+        StringBuilder buf = new StringBuilder(end - start);
+        int offset = 0;
+        for (int i = 0; i < size && offset < end; i++) {
+            int next = offset + lengths[i];
+            if (start < next) {
+                int from = Math.max(start, offset) - offset;
+                int to = Math.min(end, next) - offset;
+                append(buf, i, from, to);
+            }
+            offset = next;
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Replaces the text within the specified range with a given text.
+     * @param start the beginning offset of the replaced text, inclusive
+     * @param end the ending offset of the replaced text, exclusive
+     * @param text the text to be inserted
+     * @throws StringIndexOutOfBoundsException if the range exceeds the range of the code
+     */
+    public void replace(int start, int end, String text) {
+        checkRange(start, end);
+
+        int s = split(start);
+        int e = split(end);
+        remove(s, e);
+
+        if (text.length() > 0) {
+            if (s > 0 && inAdded[s - 1] && starts[s - 1] + lengths[s - 1] == added.length()) {
+                lengths[s - 1] = lengths[s - 1] + text.length();
+            } else {
+                insert(s, added.length(), text.length(), true);
+            }
+            added.append(text);
+        }
+        length = length - (end - start) + text.length();
+
+        if (size > COMPACTION_THRESHOLD) {
+            reset(toString());
+        }
+    }
+
+    /**
+     * Obtains the whole content of the code.
+     * @return the content of the code
+     */
+    public String toString() {
+        if (size == 1 && !inAdded[0] && starts[0] == 0 && lengths[0] == original.length()) {
+            return original;
+        }
+
+        StringBuilder buf = new StringBuilder(length);
+        for (int i = 0; i < size; i++) {
+            append(buf, i, 0, lengths[i]);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Appends the text of a piece to a given buffer.
+     * @param buf the buffer that the text is appended to
+     * @param i the index of the piece
+     * @param from the beginning offset within the piece, inclusive
+     * @param to the ending offset within the piece, exclusive
+     */
+    private void append(StringBuilder buf, int i, int from, int to) {
+        if (inAdded[i]) {
+            buf.append(added, starts[i] + from, starts[i] + to);
+        } else {
+            buf.append(original, starts[i] + from, starts[i] + to);
+        }
+    }
+
+    /**
+     * Splits the piece containing the specified offset so that a piece begins at the offset.
+     * @param pos the offset at which a piece begins
+     * @return the index of the piece beginning at the offset, or the number of the pieces if the offset is the end
+     */
+    private int split(int pos) {
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            if (offset == pos) {
+                return i;
+            }
+
+            int next = offset + lengths[i];
+            if (pos < next) {
+                int head = pos - offset;
+                insert(i + 1, starts[i] + head, lengths[i] - head, inAdded[i]);
+                lengths[i] = head;
+                return i + 1;
+            }
+            offset = next;
+        }
+        return size;
+    }
+
+    /**
+     * Inserts a piece at the specified index.
+     * @param i the index of the inserted piece
+     * @param start the start offset of the piece within its buffer
+     * @param len the length of the piece
+     * @param add <code>true</code> if the piece refers to the added buffer, otherwise <code>false</code>
+     */
+    private void insert(int i, int start, int len, boolean add) {
+        if (size == starts.length) {
+            int capacity = size * 2;
+            int[] nstarts = new int[capacity];
+            int[] nlengths = new int[capacity];
+            boolean[] ninAdded = new boolean[capacity];
+            System.arraycopy(starts, 0, nstarts, 0, size);
+            System.arraycopy(lengths, 0, nlengths, 0, size);
+            System.arraycopy(inAdded, 0, ninAdded, 0, size);
+            starts = nstarts;
+            lengths = nlengths;
+            inAdded = ninAdded;
+        }
+
+        System.arraycopy(starts, i, starts, i + 1, size - i);
+        System.arraycopy(lengths, i, lengths, i + 1, size - i);
+        System.arraycopy(inAdded, i, inAdded, i + 1, size - i);
+        starts[i] = start;
+        lengths[i] = len;
+        inAdded[i] = add;
+        size++;
+    }
+
+    /**
+     * Removes pieces within the specified range.
+     * @param from the index of the first removed piece, inclusive
+     * @param to the index of the last removed piece, exclusive
+     */
+    private void remove(int from, int to) {
+        if (from == to) {
+            return;
+        }
+
+        System.arraycopy(starts, to, starts, from, size - to);
+        System.arraycopy(lengths, to, lengths, from, size - to);
+        System.arraycopy(inAdded, to, inAdded, from, size - to);
+        size = size - (to - from);
+    }
+
+    /**
+     * Checks if the specified range is within the range of the code.
+     * @param start the beginning offset of the range, inclusive
+     * @param end the ending offset of the range, exclusive
+     * @throws StringIndexOutOfBoundsException if the range exceeds the range of the code
+     */
+    private void checkRange(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new StringIndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+        }
+    }
+}
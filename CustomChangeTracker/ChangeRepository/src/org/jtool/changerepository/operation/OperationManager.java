@@ -7,9 +7,11 @@
 package org.jtool.changerepository.operation;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 
 import org.jtool.changerepository.Activator;
 import org.jtool.changerepository.data.FileInfo;
@@ -26,10 +28,26 @@ public class OperationManager {
     private FileInfo fileInfo;
 
     /**
-     * The collection of all restoration points for the file.
+     * The collection of all restoration points recorded by the operations for the file.
      */
     private List<RestorationPoint> restorations;
 
+    /**
+     * The sequence numbers of the operations at the respective recorded restoration points, in ascending order.
+     */
+    private int[] restorationIndices;
+
+    /**
+     * The collection of restoration points synthesized between the operations for the file,
+     * or <code>null</code> if they have not been synthesized yet.
+     */
+    private List<RestorationPoint> synthesizedRestorations;
+
+    /**
+     * The sequence numbers of the operations at the respective synthesized restoration points, in ascending order.
+     */
+    private int[] synthesizedRestorationIndices;
+
     /**
      * Creates an instance managing all the operations for the file.
      * @param finfo the information on the file
@@ -46,10 +64,18 @@ public class OperationManager {
     public List<UnifiedOperation> createOperationInfo(List<UnifiedOperation> ops) {
         List<UnifiedOperation> operations = getFabricatedOperations(ops);
 
-        restorations = getRestorationPoints(operations);
+        setRestorationPoints(operations);
         return operations;
     }
 
+    /**
+     * Recreates the restoration points after the operations for the file were replaced.
+     * The synthesized restoration points are discarded and synthesized again when they are needed.
+     */
+    public void updateRestorationPoints() {
+        setRestorationPoints(fileInfo.getOperations());
+    }
+
     /**
      * Fabricates operations stored in the history information.
      * @param ops the operations to be fabricated
@@ -64,52 +90,177 @@ public class OperationManager {
         return ops;
     }
 
+    /**
+     * Sets restoration points for respective operations.
+     * @param ops the operations for the file
+     */
+    private void setRestorationPoints(List<UnifiedOperation> ops) {
+        restorations = getRestorationPoints(ops);
+        restorationIndices = getIndices(restorations);
+
+        synthesizedRestorations = null;
+        synthesizedRestorationIndices = null;
+    }
+
     /**
      * Obtains restoration points for respective operations.
+     * @param ops the operations for the file
      * @return the array list of the restoration points
      */
     private List<RestorationPoint> getRestorationPoints(List<UnifiedOperation> ops) {
         List<RestorationPoint> rests = new ArrayList<RestorationPoint>();
         for (int idx = 0; idx < ops.size(); idx++) {
             UnifiedOperation op = ops.get(idx);
-            if (op.isFileNewOperation() || op.isFileOpenOperation() || op.isFileCloseOperation() || op.isFileDeleteOperation()
-                    || op.isCommitOpeartion()) {
-                rests.add(new RestorationPoint(idx, op.getTime(), op.getCode()));
+            if (isRestorationOperation(op)) {
+                rests.add(new RestorationPoint(idx, op));
+            }
+        }
+        return rests;
+    }
+
+    /**
+     * Synthesizes restoration points between operations unless they have already been synthesized.
+     */
+    private void setSynthesizedRestorationPoints() {
+        if (synthesizedRestorations != null) {
+            return;
+        }
+
+        synthesizedRestorations = getSynthesizedRestorationPoints(fileInfo.getOperations(),
+                Activator.getSnapshotInterval(), Activator.getSnapshotDeltaSize());
+        synthesizedRestorationIndices = getIndices(synthesizedRestorations);
+    }
+
+    /**
+     * Obtains restoration points synthesized between operations.
+     * A restoration point is synthesized every time the specified number of text changed operations are replayed
+     * from a recorded restoration point or the text changed by them reaches the specified size.
+     * @param ops the operations for the file
+     * @param interval the number of operations between synthesized restoration points, or <code>0</code> if none
+     * @param deltaSize the number of changed characters between synthesized restoration points, or <code>0</code> if none
+     * @return the array list of the synthesized restoration points
+     */
+    private List<RestorationPoint> getSynthesizedRestorationPoints(List<UnifiedOperation> ops, int interval, int deltaSize) {
+        List<RestorationPoint> rests = new ArrayList<RestorationPoint>();
+        if (interval <= 0 && deltaSize <= 0) {
+            return rests;
+        }
+
+        OperationRestorer enforcer = new OperationRestorer();
+        CodeDocument doc = null;
+        int count = 0;
+        int delta = 0;
+
+        for (int idx = 0; idx < ops.size(); idx++) {
+            UnifiedOperation op = ops.get(idx);
+            if (isRestorationOperation(op)) {
+                doc = null;
+                String code = op.getCode();
+                if (code != null) {
+                    doc = new CodeDocument(code);
+                }
+                count = 0;
+                delta = 0;
+
+            } else if (doc != null && op.isTextChangedOperation()) {
+                if (!enforcer.applyOperation(doc, op)) {
+                    doc = null;
+                    continue;
+                }
+
+                count++;
+                delta = delta + op.getInsertedText().length() + op.getDeletedText().length();
+                if ((interval > 0 && count >= interval) || (deltaSize > 0 && delta >= deltaSize)) {
+                    String code = doc.toString();
+                    rests.add(new RestorationPoint(idx, op, code));
+
+                    doc.reset(code);
+                    count = 0;
+                    delta = 0;
+                }
             }
         }
         return rests;
     }
 
     /**
-     * Returns the number of the restoration points.
+     * Collects the sequence numbers of the operations at the respective restoration points.
+     * @param rests the restoration points
+     * @return the array of the sequence numbers
+     */
+    private static int[] getIndices(List<RestorationPoint> rests) {
+        int[] indices = new int[rests.size()];
+        for (int i = 0; i < rests.size(); i++) {
+            indices[i] = rests.get(i).getIndex();
+        }
+        return indices;
+    }
+
+    /**
+     * Tests if a given operation stores the code at its restoration point.
+     * @param op the operation to be checked
+     * @return <code>true</code> if the operation stores the code, otherwise <code>false</code>
+     */
+    public static boolean isRestorationOperation(UnifiedOperation op) {
+        return op.isFileNewOperation() || op.isFileOpenOperation() || op.isFileCloseOperation() || op.isFileDeleteOperation()
+                || op.isCommitOpeartion();
+    }
+
+    /**
+     * Returns the number of the restoration points recorded by the operations.
      * @return the number of the restoration points
      */
     public int getRestorationPointNumber() {
         return restorations.size();
     }
 
+    /**
+     * Returns the number of the restoration points synthesized between the operations.
+     * @return the number of the synthesized restoration points
+     */
+    public int getSynthesizedRestorationPointNumber() {
+        setSynthesizedRestorationPoints();
+        return synthesizedRestorations.size();
+    }
+
     /**
      * Obtains the restoration point immediately before the operation with the specified index.
      * @param idx the index of the operation
      * @return the restoration point, or <code>null</code> if the restoration point was not found
      */
     private RestorationPoint getFormerRestorationPoint(int idx) {
-        if (restorations.size() == 0) {
-            return null;
+        RestorationPoint recorded = getFormerRestorationPoint(restorations, restorationIndices, idx);
+
+        setSynthesizedRestorationPoints();
+        RestorationPoint synthesized = getFormerRestorationPoint(synthesizedRestorations, synthesizedRestorationIndices, idx);
+
+        if (recorded == null || (synthesized != null && synthesized.getIndex() > recorded.getIndex())) {
+            return synthesized;
         }
+        return recorded;
+    }
 
-        for (int i = 0; i < restorations.size(); i++) {
-            RestorationPoint pt = restorations.get(i);
-            if (pt.getIndex() > idx) {
+    /**
+     * Obtains the valid restoration point immediately before the operation with the specified index.
+     * @param rests the restoration points to be searched
+     * @param indices the sequence numbers of the operations at the respective restoration points
+     * @param idx the index of the operation
+     * @return the restoration point, or <code>null</code> if the restoration point was not found
+     */
+    private RestorationPoint getFormerRestorationPoint(List<RestorationPoint> rests, int[] indices, int idx) {
+        int pos = Arrays.binarySearch(indices, idx);
+        if (pos < 0) {
+            pos = -pos - 2;
+        }
 
-                if (i == 0) {
-                    return null;
-                } else {
-                    return restorations.get(i - 1);
-                }
+        List<UnifiedOperation> ops = fileInfo.getOperations();
+        for (; pos >= 0; pos--) {
+            RestorationPoint pt = rests.get(pos);
+            if (pt.isValid(ops)) {
+                return pt;
             }
         }
-        return restorations.get(restorations.size() - 1);
+        return null;
     }
 
     /**
@@ -118,13 +269,11 @@ public class OperationManager {
      * @return the restoration point, or <code>null</code> if the restoration point was not found
      */
     private RestorationPoint getRestorationPoint(int idx) {
-        for (int i = 0; i < restorations.size(); i++) {
-            RestorationPoint pt = restorations.get(i);
-            if (pt.getIndex() == idx) {
-                return pt;
-            }
+        int pos = Arrays.binarySearch(restorationIndices, idx);
+        if (pos < 0) {
+            return null;
         }
-        return null;
+        return restorations.get(pos);
     }
 
     /**
@@ -334,7 +483,7 @@ public class OperationManager {
         }
 
         try {
-            String code = applyOperations(pt.getCode(), pt.getIndex() - 1, idx);
+            String code = applyOperations(pt.getCode(), pt.getIndex(), idx);
             return code;
         } catch (Exception e) {
             System.err.println(e.getMessage());
@@ -392,39 +541,54 @@ public class OperationManager {
      * @return the content of the restored code, or the original code if the time range is invalid
      */
     private String applyOperations(String code, int from, int to) {
-        if (from == to) {
+        if (from == to || code == null) {
             return code;
         }
 
+        CodeDocument doc = new CodeDocument(code);
+        if (applyOperations(doc, from, to)) {
+            return doc.toString();
+        }
+        return null;
+    }
+
+    /**
+     * Applies operations within the time range defined by the specified two operations to code in place.
+     * @param doc the original source code, which is changed into the restored code
+     * @param from the sequence number of the specified operation indicating the start point of the time range
+     * @param to the sequence number of the specified operation indicating the end point of the time range
+     * @return <code>true</code> if the restoration succeeded, otherwise <code>false</code>
+     */
+    private boolean applyOperations(CodeDocument doc, int from, int to) {
         List<UnifiedOperation> ops = fileInfo.getOperations();
         OperationRestorer enforcer = new OperationRestorer();
         if (from < to) {
-            for (int idx = from + 1; idx <= to && code != null; idx++) {
+            for (int idx = from + 1; idx <= to; idx++) {
                 UnifiedOperation op = ops.get(idx);
 
                 if (op.isTextChangedOperation()) {
-                    code = enforcer.applyOperation(code, op);
-                    if (code == null) {
+                    if (!enforcer.applyOperation(doc, op)) {
                         System.err.println(enforcer.getErrorStatus());
+                        return false;
                     }
                 }
             }
 
         } else {
-            for (int idx = from; idx > to && code != null; idx--) {
+            for (int idx = from; idx > to; idx--) {
                 UnifiedOperation op = ops.get(idx);
 
                 if (op.isTextChangedOperation()) {
-                    code = enforcer.applyOperationReversely(code, op);
-                    if (code == null) {
+                    if (!enforcer.applyOperationReversely(doc, op)) {
                         System.err.println(enforcer.getErrorStatus());
+                        return false;
                     }
                 }
             }
 
         }
 
-        return code;
+        return true;
     }
 
     /**
@@ -602,36 +766,90 @@ public class OperationManager {
         return -1;
     }
 
+    /**
+     * The comparator that orders operations by their times and sequence numbers.
+     */
+    private static final Comparator<UnifiedOperation> timeComparator = new Comparator<UnifiedOperation>() {
+
+        public int compare(UnifiedOperation o1, UnifiedOperation o2) {
+            long time1 = o1.getTime();
+            long time2 = o2.getTime();
+
+            if (time1 > time2) {
+                return 1;
+
+            } else if (time1 < time2) {
+                return -1;
+
+            } else {
+                int seq1 = o1.getSequenceNumber();
+                int seq2 = o2.getSequenceNumber();
+
+                if (seq1 > seq2) {
+                    return 1;
+                } else if (seq1 < seq2) {
+                    return -1;
+                } else {
+                    return 0;
+                }
+            }
+        }
+    };
+
     /**
      * Sorts the operations in time order.
      * @param ops the operations to be sorted
      */
     public static void sort(List<UnifiedOperation> ops) {
-        Collections.sort(ops, new Comparator<UnifiedOperation>() {
+        Collections.sort(ops, timeComparator);
+    }
 
-            public int compare(UnifiedOperation o1, UnifiedOperation o2) {
-                long time1 = o1.getTime();
-                long time2 = o2.getTime();
+    /**
+     * Merges collections of operations into a single collection in time order.
+     * Each collection is sorted in time order first, and operations with the same time and sequence number keep the
+     * order of the collections, which results in the same order as sorting the concatenation of the collections.
+     * @param runs the collections of the operations to be merged
+     * @return the merged collection of the operations
+     */
+    public static List<UnifiedOperation> merge(final List<List<UnifiedOperation>> runs) {
+        int size = 0;
+        for (List<UnifiedOperation> run : runs) {
+            sort(run);
+            size = size + run.size();
+        }
 
-                if (time1 > time2) {
-                    return 1;
+        final int[] positions = new int[runs.size()];
+        PriorityQueue<Integer> heads = new PriorityQueue<Integer>(Math.max(1, runs.size()), new Comparator<Integer>() {
 
-                } else if (time1 < time2) {
-                    return -1;
+            public int compare(Integer r1, Integer r2) {
+                UnifiedOperation o1 = runs.get(r1).get(positions[r1]);
+                UnifiedOperation o2 = runs.get(r2).get(positions[r2]);
 
-                } else {
-                    int seq1 = o1.getSequenceNumber();
-                    int seq2 = o2.getSequenceNumber();
-
-                    if (seq1 > seq2) {
-                        return 1;
-                    } else if (seq1 < seq2) {
-                        return -1;
-                    } else {
-                        return 0;
-                    }
+                int result = timeComparator.compare(o1, o2);
+                if (result != 0) {
+                    return result;
                 }
+                return r1.compareTo(r2);
             }
         });
+
+        for (int r = 0; r < runs.size(); r++) {
+            if (runs.get(r).size() > 0) {
+                heads.add(r);
+            }
+        }
+
+        List<UnifiedOperation> ops = new ArrayList<UnifiedOperation>(size);
+        while (!heads.isEmpty()) {
+            int r = heads.poll();
+            List<UnifiedOperation> run = runs.get(r);
+            ops.add(run.get(positions[r]));
+
+            positions[r]++;
+            if (positions[r] < run.size()) {
+                heads.add(r);
+            }
+        }
+        return ops;
     }
 }
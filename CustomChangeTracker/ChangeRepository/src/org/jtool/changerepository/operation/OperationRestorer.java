@@ -32,53 +32,53 @@ public class OperationRestorer {
      * @return the resulting code after the application
      */
     public String applyOperation(String code, UnifiedOperation op) {
+        CodeDocument doc = new CodeDocument(code);
+        if (applyOperation(doc, op)) {
+            return doc.toString();
+        }
+        return null;
+    }
+    
+    /**
+     * Applies the specified operation into the code in place.
+     * @param doc the code that will be applied the operation into
+     * @param op the operation to be applied
+     * @return <code>true</code> if the application succeeded, otherwise <code>false</code>
+     */
+    public boolean applyOperation(CodeDocument doc, UnifiedOperation op) {
         if (op.isNormalOperation()) {
-            return applyNormalOperation(code, op);
+            return applyNormalOperation(doc, op);
         }
-        return code;
+        return true;
     }
     
     /**
      * Applies a specified normal operation into a given code.
-     * @param code the code that will be applied the operation into
+     * @param doc the code that will be applied the operation into
      * @param op the operation to be applied
-     * @return the resulting code after the application
+     * @return <code>true</code> if the application succeeded, otherwise <code>false</code>
      */
-    private String applyNormalOperation(String code, UnifiedOperation op) {
-        StringBuffer buf = new StringBuffer(code);
+    private boolean applyNormalOperation(CodeDocument doc, UnifiedOperation op) {
         try {
             int start = op.getStart();
             int end = start + op.getDeletedText().length();
             
             if (op.getDeletedText().length() > 0) {
-                String replacedText = buf.substring(start, end);
-                
-                if (replacedText != null && replacedText.compareTo(op.getDeletedText()) != 0) {
-                    
-                    /*
-                    System.out.println(replacedText.length() + " " + op.getDeletedText().length());
-                    for (int i = 0; i < replacedText.length(); i++) {
-                        if (replacedText.charAt(i) == op.getDeletedText().charAt(i)) {
-                            System.out.println(((int)replacedText.charAt(i)) + " == " + ((int)op.getDeletedText().charAt(i)));
-                        } else {
-                            System.out.println(((int)replacedText.charAt(i)) + " != " + ((int)op.getDeletedText().charAt(i)));
-                        }
-                    }
-                    */
-                    
+                if (!doc.matches(start, op.getDeletedText())) {
+                    String replacedText = doc.substring(start, end);
                     errorStatus = "Mismatch found:" +  op.getId() +
                                   "[" + op.getDeletedText() + "] to be replaced with [" + replacedText + "]";
-                    return null;
+                    return false;
                 }
             }
             
-            buf.replace(start, end, op.getInsertedText());
+            doc.replace(start, end, op.getInsertedText());
             
         } catch (StringIndexOutOfBoundsException e) {
             errorStatus = "Out of the text range with: " + op.toString();
-            return null;
+            return false;
         }
-        return buf.toString();
+        return true;
     }
     
     /**
@@ -88,52 +88,52 @@ public class OperationRestorer {
      * @return the resulting code after the reverse application
      */
     public String applyOperationReversely(String code, UnifiedOperation op) {
+        CodeDocument doc = new CodeDocument(code);
+        if (applyOperationReversely(doc, op)) {
+            return doc.toString();
+        }
+        return null;
+    }
+    
+    /**
+     * Applies the specified operation into the code reversely in place.
+     * @param doc the code that will be applied the operation into
+     * @param op the operation to be applied
+     * @return <code>true</code> if the reverse application succeeded, otherwise <code>false</code>
+     */
+    public boolean applyOperationReversely(CodeDocument doc, UnifiedOperation op) {
         if (op.isNormalOperation()) {
-            return applyNormalOperationReversely(code, op);
+            return applyNormalOperationReversely(doc, op);
         }
-        return code;
+        return true;
     }
     
     /**
      * Applies a specified normal operation into a given code reversely.
-     * @param code the code that will be applied the operation into
+     * @param doc the code that will be applied the operation into
      * @param op the operation to be applied
-     * @return the resulting code after the reverse application
+     * @return <code>true</code> if the reverse application succeeded, otherwise <code>false</code>
      */
-    private String applyNormalOperationReversely(String code, UnifiedOperation op) {
-        StringBuffer buf = new StringBuffer(code);
+    private boolean applyNormalOperationReversely(CodeDocument doc, UnifiedOperation op) {
         try {
             int start = op.getStart();
             int end = start + op.getInsertedText().length();
             
             if (op.getInsertedText().length() > 0) {
-                String replacedText = buf.substring(start, end);
-                
-                if (replacedText != null && replacedText.compareTo(op.getInsertedText()) != 0) {
-                    
-                    /*
-                    System.out.println(replacedText.length() + " " + op.getInsertedText().length());
-                    for (int i = 0; i < replacedText.length(); i++) {
-                        if (replacedText.charAt(i) == op.getInsertedText().charAt(i)) {
-                            System.out.println(((int)replacedText.charAt(i)) + " == " + ((int)op.getInsertedText().charAt(i)));
-                        } else {
-                            System.out.println(((int)replacedText.charAt(i)) + " != " + ((int)op.getInsertedText().charAt(i)));
-                        }
-                    }
-                    */
-                    
+                if (!doc.matches(start, op.getInsertedText())) {
+                    String replacedText = doc.substring(start, end);
                     errorStatus = "Mismatch found Reverse:" +  op.getId() +
                             "[" + op.getInsertedText() + "] to be replaced with [" + replacedText + "]";
-                    return null;
+                    return false;
                 }
             }
             
-            buf.replace(start, end, op.getDeletedText());
+            doc.replace(start, end, op.getDeletedText());
         
         } catch (StringIndexOutOfBoundsException e) {
             errorStatus = "Out of the text range with: " + op.toString();
-            return null;
+            return false;
         }
-        return buf.toString();
+        return true;
     }
 }
@@ -6,6 +6,13 @@
 
 package org.jtool.changerepository.operation;
 
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
 import org.jtool.changerecorder.util.Time;
 
 /**
@@ -29,6 +36,22 @@ class RestorationPoint {
      */
     private String code;
     
+    /**
+     * The compressed source code restored at this restoration point, which is stored instead of the plain code
+     * for restoration points synthesized between operations.
+     */
+    private byte[] compressedCode;
+    
+    /**
+     * The operation at this restoration point, or <code>null</code> if this restoration point was recorded.
+     */
+    private UnifiedOperation operation;
+    
+    /**
+     * The recorded operation storing the source code at this restoration point, which is asked for the code on demand.
+     */
+    private UnifiedOperation source;
+    
     /**
      * Creates an instance for storing information on restoration point.
      * @param idx the sequence number indicating the operation at this restoration point
@@ -41,6 +64,31 @@ class RestorationPoint {
         this.code = code;
     }
     
+    /**
+     * Creates an instance for storing information on restoration point recorded by an operation.
+     * The source code is not held by this instance but obtained from the operation when it is needed.
+     * @param idx the sequence number indicating the operation at this restoration point
+     * @param op the operation storing the source code at this restoration point
+     */
+    RestorationPoint(int idx, UnifiedOperation op) {
+        this.idx = idx;
+        this.time = op.getTime();
+        this.source = op;
+    }
+    
+    /**
+     * Creates an instance for storing information on restoration point synthesized between operations.
+     * @param idx the sequence number indicating the operation at this restoration point
+     * @param op the operation at this restoration point
+     * @param code the source code restored at this restoration point
+     */
+    RestorationPoint(int idx, UnifiedOperation op, String code) {
+        this.idx = idx;
+        this.time = op.getTime();
+        this.operation = op;
+        this.compressedCode = compress(code);
+    }
+    
     /**
      * Returns the sequence number indicating the operation at this restoration point.
      * @return the sequence number
@@ -62,9 +110,91 @@ class RestorationPoint {
      * @return the restored source code
      */
     String getCode() {
+        if (compressedCode != null) {
+            return decompress(compressedCode);
+        }
+        if (source != null) {
+            return source.getCode();
+        }
         return code;
     }
     
+    /**
+     * Tests if this restoration point was synthesized between operations.
+     * @return <code>true</code> if this restoration point was synthesized, otherwise <code>false</code>
+     */
+    boolean isSynthesized() {
+        return operation != null;
+    }
+    
+    /**
+     * Tests if this restoration point is still consistent with a given collection of operations.
+     * A synthesized restoration point becomes stale when operations are inserted, removed, or reordered.
+     * @param ops the operations for the file
+     * @return <code>true</code> if this restoration point can be used, otherwise <code>false</code>
+     */
+    boolean isValid(List<UnifiedOperation> ops) {
+        if (operation == null) {
+            return true;
+        }
+        return idx < ops.size() && ops.get(idx) == operation;
+    }
+    
+    /**
+     * Compresses the source code.
+     * @param code the source code to be compressed
+     * @return the compressed bytes
+     */
+    private static byte[] compress(String code) {
+        try {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            deflater.setInput(code.getBytes("UTF-8"));
+            deflater.finish();
+            
+            ByteArrayOutputStream out = new ByteArrayOutputStream(code.length() / 4 + 16);
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                int len = deflater.deflate(buf);
+                out.write(buf, 0, len);
+            }
+            deflater.end();
+            return out.toByteArray();
+            
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Decompresses the source code.
+     * @param bytes the compressed bytes
+     * @return the source code, or <code>null</code> if the bytes are broken
+     */
+    private static String decompress(byte[] bytes) {
+        try {
+            Inflater inflater = new Inflater();
+            inflater.setInput(bytes);
+            
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+            byte[] buf = new byte[8192];
+            while (!inflater.finished()) {
+                int len = inflater.inflate(buf);
+                if (len == 0 && inflater.needsInput()) {
+                    break;
+                }
+                out.write(buf, 0, len);
+            }
+            inflater.end();
+            return out.toString("UTF-8");
+            
+        } catch (DataFormatException e) {
+            System.err.println(e.getMessage());
+        } catch (UnsupportedEncodingException e) {
+            System.err.println(e.getMessage());
+        }
+        return null;
+    }
+    
     /**
      * Returns information for debugging.
      * @return the string for debug information. 
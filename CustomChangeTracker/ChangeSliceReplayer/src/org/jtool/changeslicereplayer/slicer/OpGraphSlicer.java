@@ -39,11 +39,8 @@ public class OpGraphSlicer {
             node.reset();
             adjustOffsetsForward(fgraph, anodes, node);
             
-            for (Integer offset : node.getAdjustedOffsets()) {
-                if (snippet.inRange(offset.intValue())) {
-                    ns.add(node);
-                    break;
-                }
+            if (node.hasAdjustedOffsetsIn(snippet.getStart(), snippet.getEnd() + 1)) {
+                ns.add(node);
             }
         }
         return ns;
@@ -74,7 +71,7 @@ public class OpGraphSlicer {
     private static void adjustOffsetsForward(FileOpDepGraph fgraph, List<OpDepGraphNode> nodes, OpDepGraphNode node) {
         for (int idx = 0; idx < nodes.size(); idx++) {
             OpDepGraphNode n  = nodes.get(idx);
-            if (node.getAdjustedOffsets().size() == 0) {
+            if (!node.hasAdjustedOffsets()) {
                 break;
             }
             
@@ -104,11 +101,8 @@ public class OpGraphSlicer {
             node.reset();
             adjustOffsetsBackward(fgraph, anodes, node);
             
-            for (Integer offset : node.getAdjustedOffsets()) {
-                if (snippet.inRange(offset.intValue())) {
-                    ns.add(node);
-                    break;
-                }
+            if (node.hasAdjustedOffsetsIn(snippet.getStart(), snippet.getEnd() + 1)) {
+                ns.add(node);
             }
         }
         return ns;
@@ -139,7 +133,7 @@ public class OpGraphSlicer {
     private static void adjustOffsetsBackward(FileOpDepGraph fgraph, List<OpDepGraphNode> nodes, OpDepGraphNode node) {
         for (int idx = 0; idx < nodes.size(); idx++) {
             OpDepGraphNode n  = nodes.get(idx);
-            if (node.getAdjustedOffsets().size() == 0) {
+            if (!node.hasAdjustedOffsets()) {
                 break;
             }
             
@@ -75,9 +75,19 @@ public class DocMacroRecorder {
     protected DocumentMacro lastDocumentMacro;
     
     /**
-     * The contents of the previous code.
+     * The shadow copy of the previous code.
      */
-    protected String preCode;
+    protected ShadowCode preCode;
+    
+    /**
+     * A flag indicating whether the shadow copy might differ from the document because a macro could not be applied.
+     */
+    private boolean diverged = false;
+    
+    /**
+     * A flag indicating whether the document might have been changed after the last check of differences.
+     */
+    private volatile boolean modified = false;
     
     /**
      * Creates an object that records document macros related to a file.
@@ -296,6 +306,8 @@ public class DocMacroRecorder {
                 applyMacro(lastDocumentMacro);
                 
                 lastDocumentMacro = null;
+            } else {
+                diverged = true;
             }
         }
     }
@@ -304,10 +316,29 @@ public class DocMacroRecorder {
      * Break the current macro.
      */
     public void breakMacro() {
-        for (DocMacroRecorder docRecorder : Recorder.getDocRecorders()) {
-            docRecorder.dumpLastDocumentMacro();
-            docRecorder.needDiff();
-        }
+        MenuMacroRecorder.getInstance().breakMacro();
+    }
+    
+    /**
+     * Marks the document as changed after the last check of differences.
+     */
+    void markModified() {
+        modified = true;
+    }
+    
+    /**
+     * Marks the shadow copy as possibly differing from the document because a change of the document was not applied.
+     */
+    void markDiverged() {
+        diverged = true;
+    }
+    
+    /**
+     * Tests if the document might have been changed after the last check of differences.
+     * @return <code>true</code> if the differences need to be checked, otherwise <code>false</code>
+     */
+    protected boolean isModified() {
+        return modified || lastDocumentMacro != null;
     }
     
     /**
@@ -321,6 +352,8 @@ public class DocMacroRecorder {
             // System.out.println("MACRO = " + macro.toString());
             recordMacro(macro);
             applyMacro(macro);
+        } else {
+            diverged = true;
         }
     }
     
@@ -374,25 +407,60 @@ public class DocMacroRecorder {
         return null;
     }
     
+    /**
+     * Tests if all the changes of the document are delivered to this recorder as document events.
+     * @return <code>true</code> if the document is observed without omission, otherwise <code>false</code>
+     */
+    protected boolean isObserved() {
+        return false;
+    }
+    
+    /**
+     * Sets the shadow copy of the previous code.
+     * @param code the contents of the code, or <code>null</code> if source code does not exist
+     */
+    protected void setPreCode(String code) {
+        if (code != null) {
+            preCode = new ShadowCode(code);
+        } else {
+            preCode = null;
+        }
+        diverged = false;
+    }
+    
     /**
      * Confirms the necessity of generation of difference macros.
+     * The contents of the document are not compared if every change of the document was applied to the shadow copy.
      * @return <code>true</code> the difference macros are generated, otherwise <code>false</code>
      */
     protected boolean needDiff() {
+        modified = false;
+        
+        if (preCode != null && !diverged && lastDocumentMacro == null && isObserved()) {
+            return false;
+        }
+        
         String code = getCurrentCode();
-        if (code != null && code.compareTo(preCode) != 0) {
-            long time = Time.getCurrentTime();
-            List<DiffMacro> macros = DiffMacroGenerator.generate(time, path, preCode, code);
+        if (code == null || preCode == null) {
+            setPreCode(code);
+            return false;
+        }
+        
+        if (preCode.contentEquals(code)) {
+            diverged = false;
+            return false;
+        }
+        
+        long time = Time.getCurrentTime();
+        List<DiffMacro> macros = DiffMacroGenerator.generate(time, path, preCode.toString(), code);
+        if (macros.size() > 0) {
+            recordDiffMacros(time, macros);
             
-            if (macros.size() > 0) {
-                recordDiffMacros(time, macros);
-                
-                preCode = code;
-                return true;
-            }
+            setPreCode(code);
+            return true;
         }
         
-        preCode = code;
+        setPreCode(code);
         return false;
     }
     
@@ -426,13 +494,11 @@ public class DocMacroRecorder {
     protected boolean applyMacro(Macro macro) {
         if (macro instanceof DocumentMacro) {
             DocumentMacro dmacro = (DocumentMacro)macro;
-            StringBuilder postCode = new StringBuilder(preCode);
             
             int start = dmacro.getStart();
             int end = start + dmacro.getDeletedText().length();
             String itext = dmacro.getInsertedText();
-            postCode.replace(start, end, itext);
-            preCode = postCode.toString();
+            preCode.replace(start, end, itext);
         }
         return true;
     }
@@ -443,7 +509,7 @@ public class DocMacroRecorder {
      * @param macro the macro to be applied
      * @return <code>true</code> if a mismatch exists, otherwise <code>false</code>
      */
-    private boolean hasMismatch(String code, Macro macro) {
+    private boolean hasMismatch(ShadowCode code, Macro macro) {
         if (!(macro instanceof DocumentMacro)) {
             return false;
         }
@@ -456,9 +522,13 @@ public class DocMacroRecorder {
         
         String dtext = dmacro.getDeletedText();
         int end = start + dtext.length();
+        if (end > code.length()) {
+            return true;
+        }
+        
         if (dtext.length() > 0) {
-            String rtext = code.substring(start, end);
-            if (rtext != null && rtext.compareTo(dtext) != 0) {
+            if (!code.matches(start, dtext)) {
+                String rtext = code.substring(start, end);
                 
                 for (int i = 0; i < rtext.length(); i++) {
                     if (rtext.charAt(i) == dtext.charAt(i)) {
@@ -13,7 +13,14 @@ import org.jtool.editrecorder.macro.TriggerMacro;
 import org.jtool.editrecorder.recorder.Recorder;
 import org.jtool.editrecorder.util.EditorUtilities;
 import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Records document macros related to a file.
@@ -21,6 +28,16 @@ import org.eclipse.jface.text.IDocument;
  */
 public class DocMacroRecorderOffEdit extends DocMacroRecorder {
     
+    /**
+     * The maximum total number of characters of the shadow copies held by all the recorders.
+     */
+    private static final long MAX_SHADOW_SIZE = 16 * 1024 * 1024;
+    
+    /**
+     * The cache that bounds the shadow copies held by all the recorders.
+     */
+    private static ShadowCodeCache shadowCache = new ShadowCodeCache(MAX_SHADOW_SIZE);
+    
     /**
      * A file related to recorded macros.
      */
@@ -31,16 +48,47 @@ public class DocMacroRecorderOffEdit extends DocMacroRecorder {
      */
     private IDocument doc;
     
+    /**
+     * The modification stamp of the file at the last check of differences.
+     */
+    private long modificationStamp = IResource.NULL_STAMP;
+    
+    /**
+     * The hash value of the previous code whose shadow copy was evicted, or <code>0</code> if not evicted.
+     */
+    private long preCodeHash = 0;
+    
+    /**
+     * The file into which the evicted shadow copy was spilled, or <code>null</code> if not evicted.
+     */
+    private File spilledPreCode = null;
+    
+    /**
+     * The lock held while the shadow copy is accessed. The cache only tries to acquire it, since the recorder holding it
+     * may be waiting for the cache.
+     */
+    private ReentrantLock lock = new ReentrantLock();
+    
     /**
      * Creates an object that records document macros related to a file.
      * @param file the file
      * @param recorder a recorder that sends macro events
      */
     public DocMacroRecorderOffEdit(IFile file, Recorder recorder) {
+        this(file, EditorUtilities.getDocument(file), recorder);
+    }
+    
+    /**
+     * Creates an object that records document macros related to a file.
+     * @param file the file
+     * @param doc the document of the file
+     * @param recorder a recorder that sends macro events
+     */
+    public DocMacroRecorderOffEdit(IFile file, IDocument doc, Recorder recorder) {
         super(EditorUtilities.getInputFilePath(file), recorder);
         
         this.file = file;
-        this.doc = EditorUtilities.getDocument(file);
+        this.doc = doc;
     }
     
     /**
@@ -51,11 +99,40 @@ public class DocMacroRecorderOffEdit extends DocMacroRecorder {
             return;
         }
         
-        register(doc, null, documentManager);
-        
-        preCode = doc.get();
+        lock.lock();
+        try {
+            register(doc, null, documentManager);
+            
+            modificationStamp = file.getModificationStamp();
+            setPreCode(doc.get());
+            discardSpilledPreCode();
+            touchPreCode();
+            
+            super.start();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Starts the recording of document macros at the first change of the document.
+     * @param event the document event describing the first change
+     */
+    public void start(DocumentEvent event) {
+        start();
         
-        super.start();
+        if (file != null) {
+            documentManager.documentAboutToBeChanged(event);
+        }
+    }
+    
+    /**
+     * Tests if this recorder records macros performed on a given document.
+     * @param doc the document
+     * @return <code>true</code> if the document is under recording, otherwise <code>false</code>
+     */
+    public boolean isRecording(IDocument doc) {
+        return this.doc == doc;
     }
     
     /**
@@ -66,9 +143,17 @@ public class DocMacroRecorderOffEdit extends DocMacroRecorder {
             return;
         }
         
-        unregister(doc, null, documentManager);
+        lock.lock();
+        try {
+            unregister(doc, null, documentManager);
+            
+            super.stop();
+            discardSpilledPreCode();
+        } finally {
+            lock.unlock();
+        }
         
-        super.stop();
+        shadowCache.remove(this);
     }
     
     /**
@@ -76,7 +161,13 @@ public class DocMacroRecorderOffEdit extends DocMacroRecorder {
      * @param macro the document macro
      */
     protected void recordDocumentMacro(DocumentMacro macro) {
-        super.recordDocumentMacro(macro);
+        lock.lock();
+        try {
+            loadPreCode();
+            super.recordDocumentMacro(macro);
+        } finally {
+            lock.unlock();
+        }
     }
     
     /**
@@ -84,8 +175,14 @@ public class DocMacroRecorderOffEdit extends DocMacroRecorder {
      * @param macro the command execution macro
      */
     protected void recordExecutionMacro(ExecutionMacro macro) {
-        super.recordExecutionMacro(macro);
-        recordRawMacro(macro);
+        lock.lock();
+        try {
+            loadPreCode();
+            super.recordExecutionMacro(macro);
+            recordRawMacro(macro);
+        } finally {
+            lock.unlock();
+        }
     }
     
     /**
@@ -93,7 +190,13 @@ public class DocMacroRecorderOffEdit extends DocMacroRecorder {
      * @param macro the trigger macro
      */
     protected void recordTriggerMacro(TriggerMacro macro) {
-        super.recordTriggerMacro(macro);
+        lock.lock();
+        try {
+            loadPreCode();
+            super.recordTriggerMacro(macro);
+        } finally {
+            lock.unlock();
+        }
     }
     
     /**
@@ -101,7 +204,17 @@ public class DocMacroRecorderOffEdit extends DocMacroRecorder {
      * @param macro the resource change macro
      */
     protected void recordResourceMacro(ResourceMacro macro) {
-        super.recordResourceMacro(macro);
+        lock.lock();
+        try {
+            loadPreCode();
+            super.recordResourceMacro(macro);
+        } finally {
+            lock.unlock();
+        }
+        
+        if (macro.isRemoved()) {
+            shadowCache.remove(this);
+        }
     }
     
     /**
@@ -109,7 +222,125 @@ public class DocMacroRecorderOffEdit extends DocMacroRecorder {
      * @param macro a document macro
      */
     protected void recordUndoRedoMacro(DocumentMacro macro) {
-        super.recordUndoRedoMacro(macro);
+        lock.lock();
+        try {
+            loadPreCode();
+            super.recordUndoRedoMacro(macro);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Tests if the document might have been changed after the last check of differences.
+     * A file not opened on an editor is also changed on the disk, which is detected by its modification stamp.
+     * @return <code>true</code> if the differences need to be checked, otherwise <code>false</code>
+     */
+    protected boolean isModified() {
+        if (file == null) {
+            return false;
+        }
+        return super.isModified() || file.getModificationStamp() != modificationStamp;
+    }
+    
+    /**
+     * Confirms the necessity of generation of difference macros.
+     * @return <code>true</code> the difference macros are generated, otherwise <code>false</code>
+     */
+    protected boolean needDiff() {
+        lock.lock();
+        try {
+            if (file != null) {
+                modificationStamp = file.getModificationStamp();
+            }
+            
+            if (preCode == null) {
+                loadPreCode();
+            }
+            
+            boolean diff = super.needDiff();
+            touchPreCode();
+            return diff;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Restores the shadow copy of the previous code if it was evicted.
+     * The current code is used if it is the same as the evicted one, which is detected by the hash value.
+     * Otherwise, the evicted code is read from the file into which it was spilled, so that the differences
+     * made while the shadow copy was evicted are recorded.
+     */
+    private void loadPreCode() {
+        if (preCode == null) {
+            String code = getCurrentCode();
+            if (spilledPreCode != null && (code == null || preCodeHash != ShadowCode.contentHash(code))) {
+                try {
+                    code = new String(Files.readAllBytes(spilledPreCode.toPath()), StandardCharsets.UTF_8);
+                } catch (IOException e) {
+                    System.err.println("Differences are not recorded since the shadow copy cannot be read: " + path);
+                }
+            }
+            setPreCode(code);
+            discardSpilledPreCode();
+        }
+        touchPreCode();
+    }
+    
+    /**
+     * Deletes the file into which the evicted shadow copy was spilled.
+     */
+    private void discardSpilledPreCode() {
+        if (spilledPreCode != null) {
+            if (!spilledPreCode.delete()) {
+                spilledPreCode.deleteOnExit();
+            }
+            spilledPreCode = null;
+        }
+        preCodeHash = 0;
+    }
+    
+    /**
+     * Notifies the cache that the shadow copy of the previous code was used.
+     */
+    private void touchPreCode() {
+        if (preCode != null) {
+            shadowCache.touch(this, preCode.length());
+        }
+    }
+    
+    /**
+     * Evicts the shadow copy of the previous code, which is spilled into a temporary file together with its hash value.
+     * The shadow copy is not evicted while this recorder is accessing it on another thread.
+     * @return <code>true</code> if the shadow copy was evicted, otherwise <code>false</code>
+     */
+    boolean evictPreCode() {
+        if (!lock.tryLock()) {
+            return false;
+        }
+        
+        try {
+            if (lastDocumentMacro != null || compoundMacro != null) {
+                return false;
+            }
+            
+            if (preCode != null) {
+                File spill = File.createTempFile("shadow", ".txt");
+                Files.write(spill.toPath(), preCode.toString().getBytes(StandardCharsets.UTF_8));
+                
+                spilledPreCode = spill;
+                preCodeHash = preCode.contentHash();
+                preCode = null;
+            }
+            return true;
+        
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            return false;
+        } finally {
+            lock.unlock();
+        }
     }
     
     /**
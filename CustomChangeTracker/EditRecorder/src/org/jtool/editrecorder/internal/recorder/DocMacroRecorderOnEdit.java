@@ -70,7 +70,7 @@ public class DocMacroRecorderOnEdit extends DocMacroRecorder {
         register(doc, styledText, documentManager);
         register(editor, completionManager);
         
-        preCode = doc.get();
+        setPreCode(doc.get());
         
         super.start();
     }
@@ -190,6 +190,14 @@ public class DocMacroRecorderOnEdit extends DocMacroRecorder {
         super.recordUndoRedoMacro(macro);
     }
     
+    /**
+     * Tests if all the changes of the document are delivered to this recorder as document events.
+     * @return <code>true</code> if the document of the editor is under recording, otherwise <code>false</code>
+     */
+    protected boolean isObserved() {
+        return doc != null && EditorUtilities.getDocument(editor) == doc;
+    }
+    
     /**
      * Obtains the current contents of a file under recording.
      * @return the contents of source code, or <code>null</code> if source code does not exist
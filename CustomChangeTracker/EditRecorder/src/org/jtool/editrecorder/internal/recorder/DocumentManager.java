@@ -74,6 +74,8 @@ public class DocumentManager implements IDocumentListener, IDocumentUndoListener
                 deletedText = doc.get(event.getOffset(), event.getLength());
             } catch (Exception e) {
                 e.printStackTrace();
+                recorder.markModified();
+                recorder.markDiverged();
                 return;
             }
         }
@@ -82,6 +84,8 @@ public class DocumentManager implements IDocumentListener, IDocumentUndoListener
             return;
         }
         
+        recorder.markModified();
+        
         long time = Time.getCurrentTime();
         String path = recorder.getPath();
         
@@ -0,0 +1,225 @@
+package org.jtool.editrecorder.internal.recorder;
+
+import org.jtool.editrecorder.recorder.Recorder;
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.IFileBuffer;
+import org.eclipse.core.filebuffers.IFileBufferListener;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Manages file buffer events, which starts the recording of a file not opened on an editor
+ * at the first change of its document.
+ */
+public class FileBufferManager implements IFileBufferListener {
+    
+    /**
+     * A recorder that starts the recording of files.
+     */
+    private Recorder recorder;
+    
+    /**
+     * The collection of listeners waiting for the first change of the documents, which are kept for their file buffers.
+     */
+    private Map<IFileBuffer, FirstChangeListener> listeners = Collections.synchronizedMap(new HashMap<IFileBuffer, FirstChangeListener>());
+    
+    /**
+     * Creates an object that records file buffer events.
+     * @param recorder a recorder that starts the recording of files
+     */
+    public FileBufferManager(Recorder recorder) {
+        this.recorder = recorder;
+    }
+    
+    /**
+     * Receives an event when a file buffer has been created.
+     * @param buffer the created file buffer
+     */
+    @Override
+    public void bufferCreated(IFileBuffer buffer) {
+        if (!(buffer instanceof ITextFileBuffer)) {
+            return;
+        }
+        
+        final IFile file = FileBuffers.getWorkspaceFileAtLocation(buffer.getLocation());
+        if (file == null || !file.getName().endsWith(".java")) {
+            return;
+        }
+        
+        IDocument doc = ((ITextFileBuffer)buffer).getDocument();
+        if (doc == null) {
+            return;
+        }
+        
+        synchronized (listeners) {
+            if (listeners.containsKey(buffer)) {
+                return;
+            }
+            
+            FirstChangeListener listener = new FirstChangeListener(buffer, file, doc);
+            listeners.put(buffer, listener);
+            doc.addDocumentListener(listener);
+        }
+    }
+    
+    /**
+     * Receives an event when a file buffer has been disposed.
+     * @param buffer the disposed file buffer
+     */
+    @Override
+    public void bufferDisposed(IFileBuffer buffer) {
+        removeListener(buffer);
+    }
+    
+    /**
+     * Removes the listener waiting for the first change of the document of a file buffer.
+     * @param buffer the file buffer
+     */
+    private void removeListener(IFileBuffer buffer) {
+        FirstChangeListener listener = listeners.remove(buffer);
+        if (listener != null) {
+            listener.doc.removeDocumentListener(listener);
+        }
+    }
+    
+    /**
+     * Removes all the listeners waiting for the first change of the documents.
+     */
+    public void removeListeners() {
+        List<IFileBuffer> buffers;
+        synchronized (listeners) {
+            buffers = new ArrayList<IFileBuffer>(listeners.keySet());
+        }
+        
+        for (IFileBuffer buffer : buffers) {
+            removeListener(buffer);
+        }
+    }
+    
+    /**
+     * Receives an event when the content of a file buffer will be replaced.
+     * @param buffer the affected file buffer
+     */
+    @Override
+    public void bufferContentAboutToBeReplaced(IFileBuffer buffer) {
+    }
+    
+    /**
+     * Receives an event when the content of a file buffer has been replaced.
+     * @param buffer the affected file buffer
+     */
+    @Override
+    public void bufferContentReplaced(IFileBuffer buffer) {
+    }
+    
+    /**
+     * Receives an event when the state of a file buffer will be changed.
+     * @param buffer the affected file buffer
+     */
+    @Override
+    public void stateChanging(IFileBuffer buffer) {
+    }
+    
+    /**
+     * Receives an event when the dirty state of a file buffer has been changed.
+     * @param buffer the affected file buffer
+     * @param isDirty <code>true</code> if the buffer is dirty, otherwise <code>false</code>
+     */
+    @Override
+    public void dirtyStateChanged(IFileBuffer buffer, boolean isDirty) {
+    }
+    
+    /**
+     * Receives an event when the state validation of a file buffer has been changed.
+     * @param buffer the affected file buffer
+     * @param isStateValidated <code>true</code> if the state is validated, otherwise <code>false</code>
+     */
+    @Override
+    public void stateValidationChanged(IFileBuffer buffer, boolean isStateValidated) {
+    }
+    
+    /**
+     * Receives an event when the file underlying a file buffer has been moved.
+     * @param buffer the affected file buffer
+     * @param path the new location of the file
+     */
+    @Override
+    public void underlyingFileMoved(IFileBuffer buffer, IPath path) {
+    }
+    
+    /**
+     * Receives an event when the file underlying a file buffer has been deleted.
+     * @param buffer the affected file buffer
+     */
+    @Override
+    public void underlyingFileDeleted(IFileBuffer buffer) {
+    }
+    
+    /**
+     * Receives an event when a state change of a file buffer has been failed.
+     * @param buffer the affected file buffer
+     */
+    @Override
+    public void stateChangeFailed(IFileBuffer buffer) {
+    }
+    
+    /**
+     * Waits for the first change of a document, which starts the recording of its file.
+     */
+    private class FirstChangeListener implements IDocumentListener {
+        
+        /**
+         * The file buffer of the document.
+         */
+        private IFileBuffer buffer;
+        
+        /**
+         * The file to be recorded.
+         */
+        private IFile file;
+        
+        /**
+         * The document to be listened.
+         */
+        private IDocument doc;
+        
+        /**
+         * Creates a listener waiting for the first change of a document.
+         * @param buffer the file buffer of the document
+         * @param file the file to be recorded
+         * @param doc the document to be listened
+         */
+        FirstChangeListener(IFileBuffer buffer, IFile file, IDocument doc) {
+            this.buffer = buffer;
+            this.file = file;
+            this.doc = doc;
+        }
+        
+        /**
+         * Starts the recording of the file when its document will be changed for the first time.
+         * @param event the document event describing the document change
+         */
+        @Override
+        public void documentAboutToBeChanged(DocumentEvent event) {
+            removeListener(buffer);
+            recorder.start(file, doc, event);
+        }
+        
+        /**
+         * Receives a document event has been performed.
+         * @param event the document event describing the document change
+         */
+        @Override
+        public void documentChanged(DocumentEvent event) {
+        }
+    }
+}
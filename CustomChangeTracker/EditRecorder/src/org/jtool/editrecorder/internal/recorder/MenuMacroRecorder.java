@@ -66,6 +66,11 @@ public class MenuMacroRecorder {
      */
     private Macro parentMacro;
     
+    /**
+     * The counter of the time spent for recording respective commands.
+     */
+    private RecorderOverhead overhead = new RecorderOverhead();
+    
     /**
      * The single instance of this menu recorder
      */
@@ -198,12 +203,21 @@ public class MenuMacroRecorder {
         return parentMacro;
     }
     
+    /**
+     * Returns the counter of the time spent for recording respective commands.
+     * @return the counter
+     */
+    public RecorderOverhead getOverhead() {
+        return overhead;
+    }
+    
     /**
      * Records a command execution macro.
      * @param macro the command execution macro
      */
     protected void recordExecutionMacro(ExecutionMacro macro) {
-        breakMacro();
+        long start = System.nanoTime();
+        int visited = breakModifiedMacros();
         
         String path = macro.getPath();
         DocMacroRecorder docMacroRecorder = getDocMacroRecorder(path);
@@ -214,6 +228,8 @@ public class MenuMacroRecorder {
             recordRawMacro(macro);
             recordMacro(macro);
         }
+        
+        overhead.add(macro.getCommandId(), System.nanoTime() - start, visited);
     }
     
     /**
@@ -221,7 +237,8 @@ public class MenuMacroRecorder {
      * @param macro the trigger macro
      */
     protected void recordTriggerMacro(TriggerMacro macro) {
-        breakMacro();
+        long start = System.nanoTime();
+        int visited = breakModifiedMacros();
         
         String path = macro.getPath();
         DocMacroRecorder docMacroRecorder = getDocMacroRecorder(path);
@@ -232,6 +249,8 @@ public class MenuMacroRecorder {
             recordRawMacro(macro);
             recordMacro(macro);
         }
+        
+        overhead.add(macro.getType(), System.nanoTime() - start, visited);
     }
     
     /**
@@ -239,7 +258,8 @@ public class MenuMacroRecorder {
      * @param macro the resource change macro
      */
     protected void recordResourceMacro(ResourceMacro macro) {
-        breakMacro();
+        long start = System.nanoTime();
+        int visited = breakModifiedMacros();
         
         String path = macro.getPath();
         DocMacroRecorder docMacroRecorder = getDocMacroRecorder(path);
@@ -253,6 +273,8 @@ public class MenuMacroRecorder {
             recordRawMacro(macro);
             recordMacro(macro);
         }
+        
+        overhead.add(macro.getType(), System.nanoTime() - start, visited);
     }
     
     /**
@@ -314,10 +336,24 @@ public class MenuMacroRecorder {
      * Break the current macro.
      */
     public void breakMacro() {
+        breakModifiedMacros();
+    }
+    
+    /**
+     * Break the current macro stored in the documents that might have been changed.
+     * The contents of the other documents are not compared with the previous code.
+     * @return the number of the documents whose differences were checked
+     */
+    private int breakModifiedMacros() {
+        int visited = 0;
         for (DocMacroRecorder docRecorder : Recorder.getDocRecorders()) {
-            docRecorder.dumpLastDocumentMacro();
-            docRecorder.needDiff();
+            if (docRecorder.isModified()) {
+                docRecorder.dumpLastDocumentMacro();
+                docRecorder.needDiff();
+                visited++;
+            }
         }
+        return visited;
     }
     
     /**
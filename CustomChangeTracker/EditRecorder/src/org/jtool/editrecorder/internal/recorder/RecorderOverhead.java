@@ -0,0 +1,111 @@
+package org.jtool.editrecorder.internal.recorder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts the time spent by the recorder for respective commands.
+ */
+public class RecorderOverhead {
+    
+    /**
+     * The counters for respective commands.
+     */
+    private Map<String, Counter> counters = new LinkedHashMap<String, Counter>();
+    
+    /**
+     * Adds the time spent for a command.
+     * @param command the identifier of the command
+     * @param nanoTime the spent time in nanoseconds
+     * @param visited the number of the documents whose differences were checked
+     */
+    synchronized void add(String command, long nanoTime, int visited) {
+        Counter counter = counters.get(command);
+        if (counter == null) {
+            counter = new Counter();
+            counters.put(command, counter);
+        }
+        
+        counter.count++;
+        counter.totalTime = counter.totalTime + nanoTime;
+        counter.maxTime = Math.max(counter.maxTime, nanoTime);
+        counter.visited = counter.visited + visited;
+    }
+    
+    /**
+     * Returns the number of times a command was recorded.
+     * @param command the identifier of the command
+     * @return the number of the times
+     */
+    public synchronized long getCount(String command) {
+        Counter counter = counters.get(command);
+        if (counter != null) {
+            return counter.count;
+        }
+        return 0;
+    }
+    
+    /**
+     * Returns the average time spent for a command.
+     * @param command the identifier of the command
+     * @return the average time in nanoseconds
+     */
+    public synchronized long getAverageTime(String command) {
+        Counter counter = counters.get(command);
+        if (counter != null) {
+            return counter.totalTime / counter.count;
+        }
+        return 0;
+    }
+    
+    /**
+     * Clears all the counters.
+     */
+    public synchronized void clear() {
+        counters.clear();
+    }
+    
+    /**
+     * Returns information for debugging.
+     * @return the string for debug information
+     */
+    public synchronized String toString() {
+        StringBuilder buf = new StringBuilder();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            Counter counter = entry.getValue();
+            buf.append(entry.getKey());
+            buf.append(" count=" + counter.count);
+            buf.append(" avg=" + (counter.totalTime / counter.count / 1000) + "us");
+            buf.append(" max=" + (counter.maxTime / 1000) + "us");
+            buf.append(" docs=" + (counter.visited / counter.count));
+            buf.append("\n");
+        }
+        return buf.toString();
+    }
+    
+    /**
+     * Stores the time spent for a command.
+     */
+    private static class Counter {
+        
+        /**
+         * The number of times the command was recorded.
+         */
+        long count;
+        
+        /**
+         * The total spent time in nanoseconds.
+         */
+        long totalTime;
+        
+        /**
+         * The maximum spent time in nanoseconds.
+         */
+        long maxTime;
+        
+        /**
+         * The total number of the documents whose differences were checked.
+         */
+        long visited;
+    }
+}
@@ -0,0 +1,220 @@
+package org.jtool.editrecorder.internal.recorder;
+
+/**
+ * Stores the shadow copy of code on a gap buffer, which replaces text in time proportional to the size of the edit
+ * and the distance from the previous edit instead of the size of the whole code.
+ */
+public class ShadowCode {
+    
+    /**
+     * The minimum size of the gap created when the buffer grows.
+     */
+    private static final int MIN_GAP_SIZE = 256;
+    
+    /**
+     * The offset basis of the hash function (64-bit FNV-1a).
+     */
+    private static final long HASH_BASIS = 0xcbf29ce484222325L;
+    
+    /**
+     * The prime of the hash function (64-bit FNV-1a).
+     */
+    private static final long HASH_PRIME = 0x100000001b3L;
+    
+    /**
+     * The buffer storing the characters of the code before and after the gap.
+     */
+    private char[] buf;
+    
+    /**
+     * The offset of the beginning of the gap, inclusive.
+     */
+    private int gapStart;
+    
+    /**
+     * The offset of the end of the gap, exclusive.
+     */
+    private int gapEnd;
+    
+    /**
+     * The hash value of the code, or <code>0</code> if it has not been calculated since the last change.
+     */
+    private long hash = 0;
+    
+    /**
+     * Creates a shadow copy of code.
+     * @param code the code
+     */
+    public ShadowCode(String code) {
+        int len = code.length();
+        buf = new char[len + MIN_GAP_SIZE];
+        code.getChars(0, len, buf, 0);
+        gapStart = len;
+        gapEnd = buf.length;
+    }
+    
+    /**
+     * Returns the number of characters of the code.
+     * @return the length of the code
+     */
+    public int length() {
+        return buf.length - (gapEnd - gapStart);
+    }
+    
+    /**
+     * Returns the character at a given offset.
+     * @param offset the offset of the character
+     * @return the character
+     */
+    public char charAt(int offset) {
+        if (offset < gapStart) {
+            return buf[offset];
+        }
+        return buf[offset + gapEnd - gapStart];
+    }
+    
+    /**
+     * Replaces the text within a given range.
+     * @param start the beginning offset of the range, inclusive
+     * @param end the ending offset of the range, exclusive
+     * @param text the text inserted into the range
+     */
+    public void replace(int start, int end, String text) {
+        if (start < 0 || end < start || length() < end) {
+            throw new IndexOutOfBoundsException("start:" + start + " end:" + end + " length:" + length());
+        }
+        
+        moveGap(start);
+        gapEnd = gapEnd + (end - start);
+        
+        int len = text.length();
+        if (gapEnd - gapStart < len) {
+            growGap(len);
+        }
+        text.getChars(0, len, buf, gapStart);
+        gapStart = gapStart + len;
+        
+        hash = 0;
+    }
+    
+    /**
+     * Tests if the code contains a given text at a given offset.
+     * @param offset the offset where the text begins
+     * @param text the text
+     * @return <code>true</code> if the code contains the text at the offset, otherwise <code>false</code>
+     */
+    public boolean matches(int offset, String text) {
+        if (offset < 0 || length() < offset + text.length()) {
+            return false;
+        }
+        
+        for (int i = 0; i < text.length(); i++) {
+            if (charAt(offset + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Tests if the code is the same as given code.
+     * @param code the code to be compared
+     * @return <code>true</code> if both the code are the same, otherwise <code>false</code>
+     */
+    public boolean contentEquals(String code) {
+        if (code.length() != length()) {
+            return false;
+        }
+        return matches(0, code);
+    }
+    
+    /**
+     * Returns the text within a given range.
+     * @param start the beginning offset of the range, inclusive
+     * @param end the ending offset of the range, exclusive
+     * @return the text
+     */
+    public String substring(int start, int end) {
+        StringBuilder text = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            text.append(charAt(i));
+        }
+        return text.toString();
+    }
+    
+    /**
+     * Returns the hash value of the code, which is recalculated only after the code was changed.
+     * @return the hash value
+     */
+    public long contentHash() {
+        if (hash == 0) {
+            long h = HASH_BASIS;
+            int len = length();
+            for (int i = 0; i < len; i++) {
+                h = (h ^ charAt(i)) * HASH_PRIME;
+            }
+            hash = (h != 0) ? h : 1;
+        }
+        return hash;
+    }
+    
+    /**
+     * Calculates the hash value of code in the same way as {@link #contentHash()}.
+     * @param code the code
+     * @return the hash value
+     */
+    public static long contentHash(String code) {
+        long h = HASH_BASIS;
+        int len = code.length();
+        for (int i = 0; i < len; i++) {
+            h = (h ^ code.charAt(i)) * HASH_PRIME;
+        }
+        return (h != 0) ? h : 1;
+    }
+    
+    /**
+     * Moves the gap to a given offset.
+     * @param offset the offset
+     */
+    private void moveGap(int offset) {
+        if (offset < gapStart) {
+            int len = gapStart - offset;
+            System.arraycopy(buf, offset, buf, gapEnd - len, len);
+            gapStart = gapStart - len;
+            gapEnd = gapEnd - len;
+        
+        } else if (offset > gapStart) {
+            int len = offset - gapStart;
+            System.arraycopy(buf, gapEnd, buf, gapStart, len);
+            gapStart = gapStart + len;
+            gapEnd = gapEnd + len;
+        }
+    }
+    
+    /**
+     * Enlarges the gap so that it can store a given number of characters.
+     * @param size the number of characters to be stored
+     */
+    private void growGap(int size) {
+        int len = length();
+        int capacity = Math.max(len + size + MIN_GAP_SIZE, buf.length + buf.length / 2);
+        char[] nbuf = new char[capacity];
+        
+        int tail = buf.length - gapEnd;
+        System.arraycopy(buf, 0, nbuf, 0, gapStart);
+        System.arraycopy(buf, gapEnd, nbuf, capacity - tail, tail);
+        buf = nbuf;
+        gapEnd = capacity - tail;
+    }
+    
+    /**
+     * Returns the code.
+     * @return the code
+     */
+    public String toString() {
+        StringBuilder code = new StringBuilder(length());
+        code.append(buf, 0, gapStart);
+        code.append(buf, gapEnd, buf.length - gapEnd);
+        return code.toString();
+    }
+}
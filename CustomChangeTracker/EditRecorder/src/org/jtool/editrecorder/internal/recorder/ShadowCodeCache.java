@@ -0,0 +1,69 @@
+package org.jtool.editrecorder.internal.recorder;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounds the total size of the shadow copies of code held by recorders for files not opened on editors.
+ * The shadow copies of the least recently used recorders are evicted when the total size exceeds the bound.
+ */
+class ShadowCodeCache {
+    
+    /**
+     * The recorders holding shadow copies and the sizes of the copies, in order of their use.
+     */
+    private Map<DocMacroRecorderOffEdit, Integer> sizes = new LinkedHashMap<DocMacroRecorderOffEdit, Integer>(16, 0.75f, true);
+    
+    /**
+     * The maximum total number of characters of the shadow copies.
+     */
+    private long maxSize;
+    
+    /**
+     * The current total number of characters of the shadow copies.
+     */
+    private long totalSize = 0;
+    
+    /**
+     * Creates a cache that bounds the shadow copies.
+     * @param maxSize the maximum total number of characters of the shadow copies
+     */
+    ShadowCodeCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+    
+    /**
+     * Notifies that a recorder used its shadow copy, and evicts the shadow copies of other recorders if needed.
+     * @param recorder the recorder
+     * @param size the number of characters of the shadow copy
+     */
+    synchronized void touch(DocMacroRecorderOffEdit recorder, int size) {
+        Integer old = sizes.put(recorder, size);
+        if (old != null) {
+            totalSize = totalSize - old;
+        }
+        totalSize = totalSize + size;
+        
+        Iterator<Map.Entry<DocMacroRecorderOffEdit, Integer>> it = sizes.entrySet().iterator();
+        while (totalSize > maxSize && it.hasNext()) {
+            Map.Entry<DocMacroRecorderOffEdit, Integer> entry = it.next();
+            DocMacroRecorderOffEdit eldest = entry.getKey();
+            if (eldest != recorder && eldest.evictPreCode()) {
+                totalSize = totalSize - entry.getValue();
+                it.remove();
+            }
+        }
+    }
+    
+    /**
+     * Removes a recorder whose shadow copy is no longer held.
+     * @param recorder the recorder
+     */
+    synchronized void remove(DocMacroRecorderOffEdit recorder) {
+        Integer old = sizes.remove(recorder);
+        if (old != null) {
+            totalSize = totalSize - old;
+        }
+    }
+}
@@ -6,25 +6,24 @@
 
 package org.jtool.editrecorder.recorder;
 
-import org.jtool.editrecorder.Activator;
 import org.jtool.editrecorder.internal.recorder.DocMacroRecorder;
 import org.jtool.editrecorder.internal.recorder.DocMacroRecorderOffEdit;
 import org.jtool.editrecorder.internal.recorder.DocMacroRecorderOnEdit;
+import org.jtool.editrecorder.internal.recorder.FileBufferManager;
 import org.jtool.editrecorder.internal.recorder.MenuMacroRecorder;
+import org.jtool.editrecorder.internal.recorder.RecorderOverhead;
 import org.jtool.editrecorder.macro.Macro;
 import org.jtool.editrecorder.util.EditorUtilities;
-import org.jtool.editrecorder.util.WorkspaceUtilities;
-import org.eclipse.jface.dialogs.ProgressMonitorDialog;
-import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.IFileBuffer;
+import org.eclipse.core.filebuffers.ITextFileBufferManager;
 import org.eclipse.core.resources.IFile;
-import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
 import org.eclipse.ui.IEditorPart;
-import org.eclipse.ui.IWorkbenchWindow;
-import org.eclipse.swt.widgets.Display;
-import org.eclipse.jface.operation.IRunnableWithProgress;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -43,7 +42,7 @@ public class Recorder {
     /**
      * The collection of recorders that record document macros.
      */
-    private static Map<String, DocMacroRecorder> docRecorders = new HashMap<String, DocMacroRecorder>();
+    private static Map<String, DocMacroRecorder> docRecorders = Collections.synchronizedMap(new HashMap<String, DocMacroRecorder>());
     
     /**
      * A recorder that records menu actions.
@@ -55,6 +54,11 @@ public class Recorder {
      */
     private IMacroCompressor compressor;
     
+    /**
+     * A manager that starts the recording of files not opened on editors.
+     */
+    private FileBufferManager bufferManager;
+    
     /**
      * The collection of listeners that receives macro events.
      */
@@ -65,6 +69,7 @@ public class Recorder {
      */
     private Recorder() {
         this.compressor = new MacroCompressor();
+        this.bufferManager = new FileBufferManager(this);
     }
     
     /**
@@ -93,74 +98,46 @@ public class Recorder {
         menuRecorder.setRecorder(this);
         menuRecorder.start();
         
-        startDocRecording(this);
+        startDocRecording();
     }
     
     /**
-     * Starts the recording of document macros.
-     * @param recorder the recorder
+     * Starts the recording of document macros for files not opened on editors.
+     * A recorder is attached to a file when the document of the file is changed for the first time.
      */
-    private void startDocRecording(final Recorder recorder) {
-        Display.getDefault().asyncExec(new Runnable() {
-            
-            /**
-             * Displays the progress monitor.
-             */
-            @Override
-            public void run() {
-                try {
-                    IWorkbenchWindow window = Activator.getWorkbenchWindow();
-                    ProgressMonitorDialog dialog = new ProgressMonitorDialog(window.getShell());
-                    dialog.run(true, true, new IRunnableWithProgress() {
-                        
-                        /**
-                         * Attaches a recorder to each of collected source files.
-                         * @param monitor the progress monitor to use to display progress
-                         * @exception InvocationTargetException if the run method must propagate a checked exception
-                         * @exception InterruptedException if the operation detects a request to cancel
-                         */
-                        @Override
-                        public void run(IProgressMonitor monitor) throws InvocationTargetException, InterruptedException {
-                            Collection<ICompilationUnit> cus = WorkspaceUtilities.collectAllCompilationUnits();
-                            monitor.beginTask("Attaching a recorder ... ", cus.size());
-                            
-                            int num = 1;
-                            for (ICompilationUnit cu : cus) {
-                                IFile file = (IFile)cu.getResource();
-                                
-                                if (monitor.isCanceled()) {
-                                    monitor.done();
-                                    throw new InterruptedException();
-                                }
-                                
-                                monitor.subTask(String.valueOf(num) + "/" + cus.size() + " " + file.getFullPath().toString());
-                                
-                                startDocRecording(file, recorder);
-                                
-                                num++;
-                                monitor.worked(1);
-                            }
-                            
-                            monitor.done();
-                        }
-                    });
-                } catch (InvocationTargetException e) {
-                    e.printStackTrace();
-                } catch (InterruptedException e) {
-                    stop();
-                }
-            }
-        });
+    private void startDocRecording() {
+        ITextFileBufferManager manager = FileBuffers.getTextFileBufferManager();
+        manager.addFileBufferListener(bufferManager);
+        
+        for (IFileBuffer buffer : manager.getFileBuffers()) {
+            bufferManager.bufferCreated(buffer);
+        }
     }
     
-    private void startDocRecording(IFile file, Recorder recorder) {
+    /**
+     * Starts the recording of document macros for a file not opened on an editor.
+     * @param file the file
+     * @param doc the document of the file
+     * @param event the document event describing the first change of the document
+     */
+    public synchronized void start(IFile file, IDocument doc, DocumentEvent event) {
         String path = file.getFullPath().toString();
         DocMacroRecorder docRecorder = getDocRecorder(path);
-        if (docRecorder == null) {
-            docRecorder = new DocMacroRecorderOffEdit(file, recorder);
-            docRecorders.put(path, docRecorder);
-            docRecorder.start();
+        if (docRecorder instanceof DocMacroRecorderOffEdit) {
+            if (((DocMacroRecorderOffEdit)docRecorder).isRecording(doc)) {
+                return;
+            }
+            
+            docRecorder.stop();
+            removeDocRecorder(path);
+            
+        } else if (docRecorder != null) {
+            return;
         }
+        
+        DocMacroRecorderOffEdit offRecorder = new DocMacroRecorderOffEdit(file, doc, this);
+        docRecorders.put(path, offRecorder);
+        offRecorder.start(event);
     }
     
     /**
@@ -186,13 +163,21 @@ public class Recorder {
     }
     
     /**
-     * Stops the recording of menu and document macros.
+     * Stops the recording of menu and document macros, and displays the time spent for respective commands.
      */
     public synchronized void stop() {
         if (menuRecorder != null) {
             menuRecorder.stop();
+            
+            String overhead = menuRecorder.getOverhead().toString();
+            if (overhead.length() > 0) {
+                System.out.print("Recorder overhead:\n" + overhead);
+            }
         }
         
+        FileBuffers.getTextFileBufferManager().removeFileBufferListener(bufferManager);
+        bufferManager.removeListeners();
+        
         for (DocMacroRecorder docRrecorder : getDocRecorders()) {
             docRrecorder.stop();
         }
@@ -294,15 +279,22 @@ public class Recorder {
      * Break the current macro stored in all files.
      */
     public void breakMacro() {
-        for (DocMacroRecorder docRrecorder : getDocRecorders()) {
-            docRrecorder.breakMacro();
-        }
-        
         if (menuRecorder != null) {
             menuRecorder.breakMacro();
         }
     }
     
+    /**
+     * Returns the counter of the time spent for recording respective commands.
+     * @return the counter, or <code>null</code> if the recording has not started
+     */
+    public RecorderOverhead getOverhead() {
+        if (menuRecorder != null) {
+            return menuRecorder.getOverhead();
+        }
+        return null;
+    }
+    
     /**
      * Returns a recorder that records document macros related to a file.
      * @param path the path of the file
@@ -325,6 +317,8 @@ public class Recorder {
      * @return the collection of the recorders
      */
     public static Collection<DocMacroRecorder> getDocRecorders() {
-        return docRecorders.values();
+        synchronized (docRecorders) {
+            return new ArrayList<DocMacroRecorder>(docRecorders.values());
+        }
     }
 }
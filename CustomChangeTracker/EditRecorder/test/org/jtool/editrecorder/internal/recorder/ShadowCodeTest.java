@@ -0,0 +1,120 @@
+package org.jtool.editrecorder.internal.recorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests the gap buffer of {@link ShadowCode} against the same edits applied to a string.
+ */
+public class ShadowCodeTest {
+
+    /**
+     * Replaces the text of both the shadow copy and the expected code, and compares them.
+     * @param shadow the shadow copy
+     * @param expected the expected code
+     * @param start the beginning offset of the range, inclusive
+     * @param end the ending offset of the range, exclusive
+     * @param text the text inserted into the range
+     */
+    private static void replace(ShadowCode shadow, StringBuilder expected, int start, int end, String text) {
+        shadow.replace(start, end, text);
+        expected.replace(start, end, text);
+
+        String code = expected.toString();
+        assertEquals(code, shadow.toString());
+        assertEquals(code.length(), shadow.length());
+        assertTrue(shadow.contentEquals(code));
+        assertEquals(ShadowCode.contentHash(code), shadow.contentHash());
+    }
+
+    @Test
+    public void testInsertAtEdges() {
+        StringBuilder expected = new StringBuilder("class A {}");
+        ShadowCode shadow = new ShadowCode(expected.toString());
+
+        replace(shadow, expected, expected.length(), expected.length(), "\n");
+        replace(shadow, expected, 0, 0, "public ");
+        replace(shadow, expected, expected.length(), expected.length(), "// end");
+        replace(shadow, expected, 0, 0, "");
+    }
+
+    @Test
+    public void testDeleteAtEdges() {
+        StringBuilder expected = new StringBuilder("public class A {}");
+        ShadowCode shadow = new ShadowCode(expected.toString());
+
+        replace(shadow, expected, 0, 7, "");
+        replace(shadow, expected, expected.length() - 1, expected.length(), "");
+        replace(shadow, expected, 0, expected.length(), "");
+        replace(shadow, expected, 0, 0, "class B {}");
+    }
+
+    @Test
+    public void testReplaceAroundGap() {
+        StringBuilder expected = new StringBuilder("int a = 1;\nint b = 2;\n");
+        ShadowCode shadow = new ShadowCode(expected.toString());
+
+        replace(shadow, expected, 4, 5, "x");
+        replace(shadow, expected, 5, 5, "y");
+        replace(shadow, expected, 3, 6, " z");
+        replace(shadow, expected, 15, 16, "w");
+        replace(shadow, expected, 2, 16, "");
+    }
+
+    @Test
+    public void testGrowGap() {
+        StringBuilder expected = new StringBuilder("{}");
+        ShadowCode shadow = new ShadowCode(expected.toString());
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append((char)('a' + i % 26));
+        }
+        replace(shadow, expected, 1, 1, text.toString());
+        replace(shadow, expected, 0, 0, text.toString());
+        replace(shadow, expected, expected.length(), expected.length(), text.toString());
+    }
+
+    @Test
+    public void testMatches() {
+        ShadowCode shadow = new ShadowCode("abcdef");
+        shadow.replace(3, 3, "XYZ");
+
+        assertTrue(shadow.matches(2, "cXYZd"));
+        assertTrue(shadow.matches(0, "abcXYZdef"));
+        assertFalse(shadow.matches(7, "efg"));
+        assertFalse(shadow.matches(-1, "a"));
+        assertEquals("cXYZd", shadow.substring(2, 7));
+        assertFalse(shadow.contentEquals("abcdef"));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testReplaceOutOfRange() {
+        ShadowCode shadow = new ShadowCode("abc");
+        shadow.replace(2, 4, "");
+    }
+
+    @Test
+    public void testRandomEdits() {
+        Random random = new Random(0);
+        StringBuilder expected = new StringBuilder("class A {\n}\n");
+        ShadowCode shadow = new ShadowCode(expected.toString());
+
+        for (int i = 0; i < 2000; i++) {
+            int start = random.nextInt(expected.length() + 1);
+            int end = start + random.nextInt(Math.min(8, expected.length() - start) + 1);
+
+            StringBuilder text = new StringBuilder();
+            int len = random.nextInt(12);
+            for (int j = 0; j < len; j++) {
+                text.append((char)('a' + random.nextInt(26)));
+            }
+            replace(shadow, expected, start, end, text.toString());
+        }
+    }
+}
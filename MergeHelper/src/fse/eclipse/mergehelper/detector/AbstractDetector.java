@@ -1,8 +1,22 @@
 package fse.eclipse.mergehelper.detector;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
 import fse.eclipse.mergehelper.ui.dialog.ConflictDetectingDialog;
 
 public abstract class AbstractDetector {
+    private IProgressMonitor monitor = new NullProgressMonitor();
+    private boolean isWorkBegun;
+    private final AtomicLong forkedBytes = new AtomicLong();
 
     protected abstract String getMessage();
 
@@ -12,14 +26,41 @@ public abstract class AbstractDetector {
 
     protected abstract void nextState(ConflictDetectingDialog dialog);
 
+    /**
+     * パイプラインにこのステージを登録する．実行は呼び出し元のダイアログが行う
+     */
     public void detect(ConflictDetectingDialog dialog) {
+        dialog.submit(this);
+    }
+
+    /**
+     * ステージを実行し，経過時間と割り当てたメモリ量をレポートに記録する
+     */
+    public void runStage(ConflictDetectingDialog dialog) {
         setMessage(dialog);
 
-        execute();
+        monitor = dialog.createStageMonitor();
+        isWorkBegun = false;
+        forkedBytes.set(0);
+        long bytes = allocatedBytes();
+        long time = System.nanoTime();
+        try {
+            execute();
+        } finally {
+            time = System.nanoTime() - time;
+            bytes = bytes >= 0 ? allocatedBytes() - bytes + forkedBytes.get() : -1;
+            dialog.getReport().addStage(getMessage(), time, bytes);
 
-        dialog.incrementProgressBar();
+            if (!isWorkBegun) {
+                beginWork(1);
+            }
+            monitor.done();
+            monitor = new NullProgressMonitor();
+        }
 
-        nextState(dialog);
+        if (!dialog.isCanceled()) {
+            nextState(dialog);
+        }
     }
 
     private void setMessage(ConflictDetectingDialog dialog) {
@@ -37,4 +78,77 @@ public abstract class AbstractDetector {
         System.err.println(errorMessage);
         dialog.detectFailed(errorMessage);
     }
+
+    protected synchronized void beginWork(int totalWork) {
+        monitor.beginTask(getMessage(), totalWork);
+        isWorkBegun = true;
+    }
+
+    protected synchronized void worked(int work) {
+        monitor.worked(work);
+    }
+
+    protected boolean isCanceled() {
+        return monitor.isCanceled();
+    }
+
+    /**
+     * 作業の開始から進捗の報告までを自身で行う呼び出し先に，このステージのモニタを渡す
+     */
+    protected synchronized IProgressMonitor handOverMonitor() {
+        isWorkBegun = true;
+        return monitor;
+    }
+
+    /**
+     * 互いに独立した処理を並列に実行し，すべての終了を待つ
+     */
+    protected void executeInParallel(Runnable... tasks) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 1; i < tasks.length; i++) {
+            Runnable task = tasks[i];
+            futures.add(CompletableFuture.runAsync(() -> {
+                long bytes = allocatedBytes();
+                task.run();
+                if (bytes >= 0) {
+                    forkedBytes.addAndGet(allocatedBytes() - bytes);
+                }
+            }));
+        }
+
+        try {
+            if (tasks.length > 0) {
+                tasks[0].run();
+            }
+        } finally {
+            for (CompletableFuture<Void> future : futures) {
+                try {
+                    future.join();
+                } catch (CompletionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static long allocatedBytes() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+                if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                    return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+                }
+            }
+        } catch (LinkageError e) {
+            // not available on this VM
+        }
+        return -1;
+    }
 }
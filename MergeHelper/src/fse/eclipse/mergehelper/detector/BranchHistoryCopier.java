@@ -1,24 +1,25 @@
 package fse.eclipse.mergehelper.detector;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
-import org.eclipse.core.resources.ResourcesPlugin;
+import org.jtool.changerecorder.history.OperationHandler;
 import org.jtool.changerecorder.history.OperationHistory;
-import org.jtool.changerecorder.history.XmlConstantStrings;
+import org.jtool.changerecorder.operation.AbstractOperation;
+import org.jtool.changerecorder.operation.CompoundOperation;
 import org.jtool.changerecorder.operation.FileOperation;
 import org.jtool.changerecorder.operation.IOperation;
 import org.jtool.changerecorder.operation.NormalOperation;
 import org.jtool.changerecorder.util.XmlFileStream;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
 
-import fse.eclipse.branchrecorder.commit.history.MH_Operation2Xml;
 import fse.eclipse.branchrecorder.commit.history.MH_Xml2Operation;
+import fse.eclipse.branchrecorder.commit.history.MH_Xml2OperationReader;
 import fse.eclipse.branchrecorder.commit.history.XmlCommitWriter;
 import fse.eclipse.branchrecorder.commit.operation.CommitOperation;
-import fse.eclipse.mergehelper.Activator;
+import fse.eclipse.mergehelper.element.BranchInfo;
 import fse.eclipse.mergehelper.element.BranchRootInfo;
 import fse.eclipse.mergehelper.element.MergeType;
 import fse.eclipse.mergehelper.ui.dialog.ConflictDetectingDialog;
@@ -29,8 +30,6 @@ public class BranchHistoryCopier extends AbstractDetector {
     private static final String ERROR_MESSAGE = "NULL";
     private static AbstractDetector instance = new BranchHistoryCopier();
 
-    private static final String ENCODING = ResourcesPlugin.getEncoding();
-
     public static final String BRANCH_NAME_MARK = "@";
 
     private BranchHistoryCopier() {
@@ -43,31 +42,35 @@ public class BranchHistoryCopier extends AbstractDetector {
     @Override
     public void execute() {
         BranchRootInfo rootInfo = BranchRootInfo.getInstance();
-        copy(rootInfo, MergeType.ACCEPT);
-        copy(rootInfo, MergeType.JOIN);
+        beginWork(countFiles(rootInfo, MergeType.ACCEPT) + countFiles(rootInfo, MergeType.JOIN));
+        executeInParallel(() -> copy(rootInfo, MergeType.ACCEPT), () -> copy(rootInfo, MergeType.JOIN));
     }
 
     private void copy(BranchRootInfo rootInfo, MergeType type) {
-        String branchName = rootInfo.getBranchName(type);
+        BranchInfo bInfo = rootInfo.getBranchInfo(type);
+        String historyPath = getHistoryPath(rootInfo, bInfo.getName());
 
+        if (MergeType.isAccept(type)) {
+            String joinHistoryPath = getHistoryPath(rootInfo, rootInfo.getBranchName(MergeType.JOIN));
+            copyFromAcceptDir(historyPath, joinHistoryPath, bInfo);
+        } else {
+            copyFromJoinDir(historyPath, bInfo);
+        }
+    }
+
+    private String getHistoryPath(BranchRootInfo rootInfo, String branchName) {
         StringBuilder sb = new StringBuilder();
         sb.append(ProjectUtil.getProjectHistoryPath(rootInfo.getProject()));
         sb.append(File.separator).append(branchName);
-        String historyPath = sb.toString();
-
-        if (MergeType.isAccept(type)) {
-            int length = sb.length();
-            sb.delete(length - branchName.length(), length);
-            sb.append(rootInfo.getBranchName(MergeType.JOIN));
-            String joinHistoryPath = sb.toString();
+        return sb.toString();
+    }
 
-            copyFromAcceptDir(historyPath, joinHistoryPath, branchName);
-        } else {
-            copyFromJoinDir(historyPath, branchName);
-        }
+    private int countFiles(BranchRootInfo rootInfo, MergeType type) {
+        File[] files = new File(getHistoryPath(rootInfo, rootInfo.getBranchInfo(type).getName())).listFiles();
+        return files != null ? files.length : 0;
     }
 
-    private void copyFromAcceptDir(String historyPath, String joinHistoryPath, String name) {
+    private void copyFromAcceptDir(String historyPath, String joinHistoryPath, BranchInfo bInfo) {
         String parentId = null;
         File[] files = new File(joinHistoryPath).listFiles();
         for (File file : files) {
@@ -81,8 +84,13 @@ public class BranchHistoryCopier extends AbstractDetector {
             files = new File(historyPath).listFiles();
             int length = files.length;
             for (int i = length - 1; i >= 0; i--) {
+                if (isCanceled()) {
+                    return;
+                }
+
                 File file = files[i];
-                copyFromFile(file, name);
+                copyFromFile(file, bInfo);
+                worked(1);
 
                 if (file.getName().endsWith(XmlCommitWriter.CommitXmlFileName)) {
                     String commitId = convertCommitOperation(file).getCommitId();
@@ -94,66 +102,61 @@ public class BranchHistoryCopier extends AbstractDetector {
         }
     }
 
-    private void copyFromJoinDir(String historyPath, String name) {
+    private void copyFromJoinDir(String historyPath, BranchInfo bInfo) {
         File[] files = new File(historyPath).listFiles();
         for (File file : files) {
-            copyFromFile(file, name);
+            if (isCanceled()) {
+                return;
+            }
+
+            copyFromFile(file, bInfo);
+            worked(1);
         }
     }
 
-    private void copyFromFile(File file, String name) {
+    private void copyFromFile(File file, BranchInfo bInfo) {
+        String name = bInfo.getName();
         OperationHistory history = readOperationHistory(file);
         if (history != null && history.size() > 0) {
-            Document doc = MH_Operation2Xml.convert(history);
-            Document renameDoc = renameFileAttr(doc, name);
-            copy(renameDoc, name, file);
+            for (IOperation op : history.getOperations()) {
+                renameFilePath(op, name);
+            }
+            bInfo.addOperationHistory(history);
         }
     }
 
-    private void copy(Document doc, String name, File file) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(Activator.getWorkingDirPath()).append(File.separator);
-        sb.append(name).append(File.separator);
-        sb.append(file.getName());
-        XmlFileStream.write(doc, sb.toString(), ENCODING);
-    }
-
     private OperationHistory readOperationHistory(File file) {
-        Document doc = XmlFileStream.read(file.getAbsolutePath());
-        OperationHistory history = MH_Xml2Operation.convert(doc);
+        List<IOperation> ops = new ArrayList<>();
+        OperationHandler handler = op -> ops.add(op);
+
+        OperationHistory history = null;
+        try {
+            if (new MH_Xml2OperationReader().read(file.getAbsolutePath(), handler)) {
+                history = new OperationHistory(ops);
+            }
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+
+        if (history == null) {
+            Document doc = XmlFileStream.read(file.getAbsolutePath());
+            history = MH_Xml2Operation.convert(doc);
+        }
         removeOperationAfterMergeConflicts(history);
         return history;
     }
 
-    private Document renameFileAttr(Document doc, String name) {
-        // operation まで下がる
-        NodeList nodeList = doc.getFirstChild().getChildNodes();
-        int length = nodeList.getLength();
-        int i;
-        for (i = 0; i < length; i++) {
-            if (nodeList.item(i).getNodeName().equals(XmlConstantStrings.OperationsElem)) {
-                break;
+    private void renameFilePath(IOperation op, String name) {
+        if (op.getOperationType() == IOperation.Type.COMPOUND) {
+            for (IOperation o : ((CompoundOperation) op).getOperations()) {
+                renameFilePath(o, name);
             }
-        }
-        return renameFileAttr(doc, nodeList.item(i).getChildNodes(), name);
-    }
-
-    private Document renameFileAttr(Document doc, NodeList nodeList, String name) {
-        // fileAttributeプロジェクト名の部分にブランチ名を足す
-        int length = nodeList.getLength();
-        for (int i = 0; i < length; i++) {
-            Element e = (Element) nodeList.item(i);
-            String fileAttr = e.getAttribute(XmlConstantStrings.FileAttr);
-            if (!e.getNodeName().equals(XmlConstantStrings.CompoundOperationElem)) {
-                if (!fileAttr.equals("null") && fileAttr.length() != 0) {
-                    fileAttr = renameFileAttr(fileAttr, name);
-                    e.setAttribute(XmlConstantStrings.FileAttr, fileAttr);
-                }
-            } else {
-                renameFileAttr(doc, e.getChildNodes(), name);
+        } else if (op instanceof AbstractOperation) {
+            String path = op.getFilePath();
+            if (path != null && !path.equals("null") && path.length() != 0) {
+                ((AbstractOperation) op).setFilePath(renameFileAttr(path, name));
             }
         }
-        return doc;
     }
 
     private String renameFileAttr(String fileAttr, String name) {
@@ -1,7 +1,9 @@
 package fse.eclipse.mergehelper.detector;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import org.jtool.changerecorder.history.OperationHistory;
 import org.jtool.changerepository.data.ProjectInfo;
 import org.jtool.changerepository.data.RepositoryManager;
 import org.jtool.changerepository.data.WorkspaceInfo;
@@ -15,7 +17,7 @@ import fse.eclipse.mergehelper.util.RepositoryElementInfoUtil;
 
 public class ChangeRepositoryCreater extends AbstractDetector {
     private static final String MESSAGE = "Create Change Operation Repository ...";
-    private static final String ERROR_MESSAGE = "NULL";
+    private static final String ERROR_MESSAGE = "Change Operation Repository was Not Created";
     private static AbstractDetector instance = new ChangeRepositoryCreater();
 
     private ChangeRepositoryCreater() {
@@ -27,14 +29,20 @@ public class ChangeRepositoryCreater extends AbstractDetector {
 
     @Override
     protected void execute() {
-        RepositoryManager rManager = RepositoryManager.getInstance();
-        rManager.collectOperationsInRepository(Activator.getWorkingDirPath());
-        WorkspaceInfo wInfo = rManager.getWorkspaceInfo();
-
         BranchRootInfo rootInfo = BranchRootInfo.getInstance();
         BranchInfo a_bInfo = rootInfo.getBranchInfo(MergeType.ACCEPT);
         BranchInfo j_bInfo = rootInfo.getBranchInfo(MergeType.JOIN);
 
+        List<OperationHistory> histories = new ArrayList<>(a_bInfo.getOperationHistories());
+        histories.addAll(j_bInfo.getOperationHistories());
+
+        RepositoryManager rManager = RepositoryManager.getInstance();
+        rManager.collectOperationsInRepository(Activator.getWorkingDirPath(), histories, handOverMonitor());
+        WorkspaceInfo wInfo = rManager.getWorkspaceInfo();
+        if (wInfo == null) {
+            return;
+        }
+
         List<ProjectInfo> pInfos = wInfo.getAllProjectInfo();
         for (ProjectInfo pInfo : pInfos) {
             String name = RepositoryElementInfoUtil.getBranchName(pInfo);
@@ -64,6 +72,10 @@ public class ChangeRepositoryCreater extends AbstractDetector {
 
     @Override
     protected void nextState(ConflictDetectingDialog dialog) {
-        OperationAllocater.getInstace().detect(dialog);
+        if (RepositoryManager.getInstance().getWorkspaceInfo() != null) {
+            OperationAllocater.getInstace().detect(dialog);
+        } else {
+            error(dialog);
+        }
     }
 }
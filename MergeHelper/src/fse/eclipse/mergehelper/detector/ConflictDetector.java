@@ -1,12 +1,14 @@
 package fse.eclipse.mergehelper.detector;
 
+import java.util.HashMap;
 import java.util.List;
-
-import org.jtool.changerecorder.util.StringComparator;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import fse.eclipse.mergehelper.detector.merge.OperationSwaper;
 import fse.eclipse.mergehelper.element.BranchFileInfo;
 import fse.eclipse.mergehelper.element.BranchInfo;
+import fse.eclipse.mergehelper.element.BranchJavaElement;
 import fse.eclipse.mergehelper.element.BranchRootInfo;
 import fse.eclipse.mergehelper.element.ConflictInfo;
 import fse.eclipse.mergehelper.element.MergeType;
@@ -35,28 +37,33 @@ public class ConflictDetector extends AbstractDetector {
         List<BranchFileInfo> abfInfos = a_bInfo.getAllBranchFileInfo();
         List<BranchFileInfo> jbfInfos = j_bInfo.getAllBranchFileInfo();
 
+        Map<String, BranchFileInfo> jbfInfoMap = new HashMap<>(jbfInfos.size() * 2);
+        for (BranchFileInfo jbfInfo : jbfInfos) {
+            jbfInfoMap.putIfAbsent(jbfInfo.getFullName(), jbfInfo);
+        }
+
         cInfo = new ConflictInfo();
+        beginWork(abfInfos.size());
         for (BranchFileInfo abfInfo : abfInfos) {
-            for (BranchFileInfo jbfInfo : jbfInfos) {
-                if (abfInfo.equalsFileName(jbfInfo)) {
-                    detectElement(abfInfo, jbfInfo);
-                    break;
-                }
+            if (isCanceled()) {
+                return;
             }
+
+            BranchFileInfo jbfInfo = jbfInfoMap.get(abfInfo.getFullName());
+            if (jbfInfo != null) {
+                detectElement(abfInfo, jbfInfo);
+            }
+            worked(1);
         }
         rootInfo.setConflictInfo(cInfo);
     }
 
     private void detectElement(BranchFileInfo abfInfo, BranchFileInfo jbfInfo) {
-        List<String> aElems = abfInfo.getAllElementName();
-        List<String> jElems = jbfInfo.getAllElementName();
-
-        for (String aElem : aElems) {
-            for (String jElem : jElems) {
-                if (StringComparator.isSame(aElem, jElem)) {
-                    cInfo.addConflictElements(abfInfo.getBranchJavaElement(aElem), jbfInfo.getBranchJavaElement(jElem));
-                    break;
-                }
+        Map<String, BranchJavaElement> jElemMap = jbfInfo.getElementMap();
+        for (Entry<String, BranchJavaElement> entry : abfInfo.getElementMap().entrySet()) {
+            BranchJavaElement jElem = jElemMap.get(entry.getKey());
+            if (jElem != null) {
+                cInfo.addConflictElements(entry.getValue(), jElem);
             }
         }
     }
@@ -0,0 +1,38 @@
+package fse.eclipse.mergehelper.detector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DetectionReport {
+    private final List<String> stages = new ArrayList<>();
+    private final List<Long> times = new ArrayList<>();
+    private final List<Long> allocations = new ArrayList<>();
+
+    public synchronized void addStage(String stage, long nanoTime, long allocatedBytes) {
+        stages.add(stage);
+        times.add(nanoTime);
+        allocations.add(allocatedBytes);
+    }
+
+    public synchronized long getTotalTime() {
+        long total = 0;
+        for (long time : times) {
+            total += time;
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        int size = stages.size();
+        for (int i = 0; i < size; i++) {
+            sb.append(stages.get(i)).append(" ");
+            sb.append(times.get(i) / 1000000).append(" ms, ");
+            long bytes = allocations.get(i);
+            sb.append(bytes >= 0 ? (bytes / 1024) + " KB" : "-").append("\n");
+        }
+        sb.append("Total ").append(getTotalTime() / 1000000).append(" ms");
+        return sb.toString();
+    }
+}
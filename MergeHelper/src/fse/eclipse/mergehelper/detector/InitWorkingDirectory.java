@@ -6,6 +6,7 @@ import java.io.IOException;
 import org.apache.commons.io.FileUtils;
 
 import fse.eclipse.mergehelper.Activator;
+import fse.eclipse.mergehelper.detector.merge.AMerge;
 import fse.eclipse.mergehelper.ui.dialog.ConflictDetectingDialog;
 
 public class InitWorkingDirectory extends AbstractDetector {
@@ -24,10 +25,21 @@ public class InitWorkingDirectory extends AbstractDetector {
     public void execute() {
         File dir = Activator.getWorkingDir();
         if (dir.exists()) {
-            try {
-                FileUtils.cleanDirectory(dir);
-            } catch (IOException e) {
-                e.printStackTrace();
+            // the scratch repository of the artificial merge is kept to reuse the stored files
+            File[] files = dir.listFiles();
+            beginWork(files.length);
+            for (File file : files) {
+                if (isCanceled()) {
+                    return;
+                }
+                if (!file.getName().equals(AMerge.REPOSITORY_NAME)) {
+                    try {
+                        FileUtils.forceDelete(file);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+                worked(1);
             }
         } else {
             dir.mkdirs();
@@ -7,8 +7,8 @@ import java.util.Map.Entry;
 
 import org.jtool.changerepository.data.FileInfo;
 import org.jtool.changerepository.data.ProjectInfo;
+import org.jtool.changerepository.operation.CodeInsertedOperation;
 import org.jtool.changerepository.operation.UnifiedOperation;
-import org.jtool.changerepository.parser.CodeRange;
 import org.jtool.changerepository.parser.OpJavaElement;
 
 import fse.eclipse.mergehelper.element.BranchFileInfo;
@@ -17,6 +17,7 @@ import fse.eclipse.mergehelper.element.BranchJavaElement;
 import fse.eclipse.mergehelper.element.BranchRootInfo;
 import fse.eclipse.mergehelper.element.MergeType;
 import fse.eclipse.mergehelper.ui.dialog.ConflictDetectingDialog;
+import fse.eclipse.mergehelper.util.ElementTracker;
 import fse.eclipse.mergehelper.util.Parser;
 
 public class OperationAllocater extends AbstractDetector {
@@ -34,19 +35,27 @@ public class OperationAllocater extends AbstractDetector {
     @Override
     protected void execute() {
         BranchRootInfo rootInfo = BranchRootInfo.getInstance();
-        allocateOperation(rootInfo.getBranchInfo(MergeType.ACCEPT));
-        allocateOperation(rootInfo.getBranchInfo(MergeType.JOIN));
+        BranchInfo a_bInfo = rootInfo.getBranchInfo(MergeType.ACCEPT);
+        BranchInfo j_bInfo = rootInfo.getBranchInfo(MergeType.JOIN);
+
+        beginWork(a_bInfo.getProjectInfo().getAllFileInfo().size() + j_bInfo.getProjectInfo().getAllFileInfo().size());
+        executeInParallel(() -> allocateOperation(a_bInfo), () -> allocateOperation(j_bInfo));
     }
 
     private void allocateOperation(BranchInfo bInfo) {
         ProjectInfo pInfo = bInfo.getProjectInfo();
         List<FileInfo> fInfos = pInfo.getAllFileInfo();
         for (FileInfo fInfo : fInfos) {
+            if (isCanceled()) {
+                return;
+            }
+
             BranchFileInfo bfInfo = createBranchFileInfo(bInfo, fInfo);
             if (bfInfo != null) {
                 collectBranchJavaElement(bfInfo, fInfo);
                 removeNotEditedElement(bfInfo);
             }
+            worked(1);
         }
     }
 
@@ -65,28 +74,35 @@ public class OperationAllocater extends AbstractDetector {
 
     private void collectBranchJavaElement(BranchFileInfo bfInfo, FileInfo fInfo) {
         List<UnifiedOperation> ops = fInfo.getOperations();
+        ElementTracker tracker = new ElementTracker(fInfo);
+        boolean tracked = false;
         int size = ops.size();
         for (int i = 0; i < size; i++) {
             UnifiedOperation op = ops.get(i);
-            String code = fInfo.getCode(i);
-            List<OpJavaElement> elems = new ArrayList<>();
-            boolean parseable = Parser.collectElements(fInfo, code, elems);
-            if (!parseable) {
+            if (!tracked || !isIncrementalOperation(op)) {
+                tracked = tracker.reset(fInfo.getCode(i));
+            } else if (op.isNormalOperation() && !tracker.apply(op)) {
+                tracked = tracker.reset(fInfo.getCode(i));
+            }
+            if (!tracked) {
                 throw new Error();
                 // continue;
             }
 
-            for (OpJavaElement elem : elems) {
-                CodeRange range = elem.getCodeRange();
-                if (range.inRange(op.getStart())) {
-                    String body = code.substring(range.getStart(), range.getEnd());
-                    bfInfo.addOperation(elem, op, body);
-                    break;
-                }
+            OpJavaElement elem = tracker.getElement(op.getStart());
+            if (elem != null && bfInfo.getBranchJavaElement(elem) != null) {
+                bfInfo.addOperation(elem, op, tracker.getBodyDigest(elem));
             }
         }
     }
 
+    private boolean isIncrementalOperation(UnifiedOperation op) {
+        if (CodeInsertedOperation.isCodeInsertedOperation(op)) {
+            return false;
+        }
+        return !op.isFileNewOperation() && !op.isFileOpenOperation();
+    }
+
     private void removeNotEditedElement(BranchFileInfo bfInfo) {
         Map<String, BranchJavaElement> elemMap = bfInfo.getElementMap();
         for (Entry<String, BranchJavaElement> entry : elemMap.entrySet()) {
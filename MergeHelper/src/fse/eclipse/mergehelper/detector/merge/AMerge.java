@@ -2,20 +2,37 @@ package fse.eclipse.mergehelper.detector.merge;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.TreeMap;
 
 import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.errors.CheckoutConflictException;
 import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.api.errors.InvalidRefNameException;
-import org.eclipse.jgit.api.errors.RefAlreadyExistsException;
-import org.eclipse.jgit.api.errors.RefNotFoundException;
-import org.eclipse.jgit.lib.Ref;
-import org.jtool.changerecorder.util.FileStream;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.merge.ThreeWayMerger;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
 import org.jtool.changerepository.data.FileInfo;
 import org.jtool.changerepository.data.ProjectInfo;
 import org.jtool.changerepository.operation.CodeInsertedOperation;
+import org.jtool.changerepository.operation.OperationManager;
 import org.jtool.changerepository.operation.UnifiedOperation;
 
 import fse.eclipse.mergehelper.Activator;
@@ -33,8 +50,17 @@ public class AMerge extends AbstractDetector {
     private static final String ERROR_MESSAGE = "Artificial Merge Failed";
     private static AbstractDetector instance = new AMerge();
 
+    public static final String REPOSITORY_NAME = ".amerge";
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    // the same threshold as git's gc.auto
+    private static final int LOOSE_OBJECT_LIMIT = 6700;
+    private static final String ACCEPT_REF = Constants.R_HEADS + "accept";
+    private static final String JOIN_REF = Constants.R_HEADS + "join";
+
     private boolean isSuccess;
-    private List<MergeIndexHolder> mergeIdxHoloders = new ArrayList<>();
+    private Repository repository;
+    private ObjectReader reader;
 
     private AMerge() {
     }
@@ -50,106 +76,225 @@ public class AMerge extends AbstractDetector {
         BranchInfo j_bInfo = rootInfo.getBranchInfo(MergeType.JOIN);
         MergePoint mPoint = rootInfo.getMergePoint();
 
-        Git git = init(rootInfo);
+        isSuccess = false;
+        ObjectInserter inserter = null;
         try {
-            commit(git, mPoint.getMergePoint(MergeType.ACCEPT), a_bInfo);
-            commit(git, mPoint.getMergePoint(MergeType.JOIN), j_bInfo);
+            openRepository();
+            inserter = repository.newObjectInserter();
+            reader = repository.newObjectReader();
+
+            int a_size = a_bInfo.getProjectInfo().getAllFileInfo().size();
+            int j_size = j_bInfo.getProjectInfo().getAllFileInfo().size();
+            beginWork(a_size * 3 + j_size * 2);
+
+            Map<String, ObjectId> baseTree = createBaseTree(inserter, a_bInfo);
+            if (isCanceled()) {
+                return;
+            }
+            ObjectId init = commit(inserter, baseTree, null, "MergeHelper-init");
+
+            Map<String, Integer> mergeIdxMap = new HashMap<>();
+            Map<String, ObjectId> a_tree = new TreeMap<>(baseTree);
+            writeBranchFiles(inserter, mPoint.getMergePoint(MergeType.ACCEPT), a_bInfo, a_tree, mergeIdxMap, true);
+            if (isCanceled()) {
+                return;
+            }
+            ObjectId a_commit = commit(inserter, a_tree, init, "MergeHelper-" + a_bInfo.getName());
 
-            Ref ref = git.getRepository().getRef(a_bInfo.getName());
-            isSuccess = git.merge().include(ref).call().getMergeStatus().isSuccessful();
+            Map<String, ObjectId> j_tree = new TreeMap<>(baseTree);
+            writeBranchFiles(inserter, mPoint.getMergePoint(MergeType.JOIN), j_bInfo, j_tree, mergeIdxMap, false);
+            if (isCanceled()) {
+                return;
+            }
+            ObjectId j_commit = commit(inserter, j_tree, init, "MergeHelper-" + j_bInfo.getName());
+            inserter.flush();
+
+            // only the latest snapshots are kept reachable, and the older ones are pruned by the gc
+            updateRef(ACCEPT_REF, a_commit);
+            updateRef(JOIN_REF, j_commit);
+
+            ThreeWayMerger merger = MergeStrategy.RECURSIVE.newMerger(repository, true);
+            isSuccess = merger.merge(j_commit, a_commit);
             if (isSuccess) {
-                insertAMergeOperation(a_bInfo);
-                insertAMergeOperation(j_bInfo);
+                ObjectId mergedTree = merger.getResultTreeId();
+                insertAMergeOperation(a_bInfo, mergedTree, mergeIdxMap);
+                insertAMergeOperation(j_bInfo, mergedTree, mergeIdxMap);
             }
-        } catch (GitAPIException | IOException e) {
+        } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            if (inserter != null) {
+                inserter.release();
+            }
+            if (reader != null) {
+                reader.release();
+                reader = null;
+            }
+            closeRepository();
         }
     }
 
-    private Git init(BranchRootInfo rootInfo) {
-        File dir = new File(Activator.getWorkingDirPath());
-        try {
-            Git.init().setDirectory(dir).call();
-            Git git = Git.open(dir);
+    private void openRepository() throws IOException {
+        File dir = new File(Activator.getWorkingDirPath(), REPOSITORY_NAME);
+        repository = new FileRepositoryBuilder().setGitDir(dir).setBare().build();
+        if (!dir.exists()) {
+            repository.create(true);
+        }
+    }
 
-            BranchInfo a_bInfo = rootInfo.getBranchInfo(MergeType.ACCEPT);
-            String branchName = a_bInfo.getName();
+    private void closeRepository() {
+        if (repository == null) {
+            return;
+        }
 
-            ProjectInfo a_pInfo = a_bInfo.getProjectInfo();
-            List<FileInfo> fInfos = a_pInfo.getAllFileInfo();
-            for (FileInfo fInfo : fInfos) {
-                String filePath = createMergePath(fInfo, branchName);
-                FileStream.write(filePath, fInfo.getCode(0));
+        try {
+            // every run leaves loose objects unreachable from the refs, such as the merged trees
+            Git git = Git.wrap(repository);
+            Properties stats = git.gc().getStatistics();
+            if (Long.parseLong(stats.getProperty("numberOfLooseObjects", "0")) > LOOSE_OBJECT_LIMIT) {
+                git.gc().setExpire(new Date()).call();
             }
+        } catch (GitAPIException | NumberFormatException e) {
+            e.printStackTrace();
+        } finally {
+            repository.close();
+            repository = null;
+        }
+    }
 
-            git.add().addFilepattern(rootInfo.getName()).call();
-            git.commit().setMessage("MergeHelper-init").call();
-
-            // master
-            String nowBranchName = git.getRepository().getBranch();
+    private void updateRef(String name, ObjectId id) throws IOException {
+        RefUpdate update = repository.updateRef(name);
+        update.setNewObjectId(id);
+        update.setForceUpdate(true);
+        update.forceUpdate();
+    }
 
-            String a_branchName = rootInfo.getBranchName(MergeType.ACCEPT);
-            String j_branchName = rootInfo.getBranchName(MergeType.JOIN);
+    private Map<String, ObjectId> createBaseTree(ObjectInserter inserter, BranchInfo a_bInfo) throws IOException {
+        String branchName = a_bInfo.getName();
+        Map<String, ObjectId> tree = new TreeMap<>();
 
-            if (!nowBranchName.equals(a_branchName)) {
-                git.branchCreate().setName(a_branchName).call();
+        ProjectInfo a_pInfo = a_bInfo.getProjectInfo();
+        List<FileInfo> fInfos = a_pInfo.getAllFileInfo();
+        for (FileInfo fInfo : fInfos) {
+            if (isCanceled()) {
+                break;
             }
 
-            if (!nowBranchName.equals(j_branchName)) {
-                git.branchCreate().setName(j_branchName).call();
-            }
-            return git;
-        } catch (IllegalStateException | GitAPIException | IOException e) {
-            e.printStackTrace();
+            tree.put(createMergePath(fInfo, branchName), insertBlob(inserter, fInfo.getCode(0)));
+            worked(1);
         }
-        return null;
+        return tree;
     }
 
-    private void commit(Git git, UnifiedOperation op, BranchInfo bInfo)
-            throws RefAlreadyExistsException, RefNotFoundException, InvalidRefNameException, CheckoutConflictException, GitAPIException {
+    private void writeBranchFiles(ObjectInserter inserter, UnifiedOperation op, BranchInfo bInfo,
+            Map<String, ObjectId> tree, Map<String, Integer> mergeIdxMap, boolean isBase) throws IOException {
         String branchName = bInfo.getName();
-        git.checkout().setName(branchName).call();
-
         List<FileInfo> fInfos = bInfo.getProjectInfo().getAllFileInfo();
         for (FileInfo fInfo : fInfos) {
-            String filePath = createMergePath(fInfo, branchName);
+            if (isCanceled()) {
+                break;
+            }
+
             int idx;
             if (op.getFileInfo().equals(fInfo)) {
                 idx = fInfo.indexOfOperation(op.getId());
             } else {
                 idx = RepositoryElementInfoUtil.indexOfJustBeforeFileOperation(fInfo, op.getTime());
             }
-            String code = fInfo.getCode(idx);
-            FileStream.write(filePath, code);
-            mergeIdxHoloders.add(new MergeIndexHolder(fInfo, idx));
+            mergeIdxMap.putIfAbsent(fInfo.getQualifiedName(), idx);
+
+            // the code of a file without text changes is the same as its first code, so it is not replayed
+            if (isChanged(fInfo, idx)) {
+                tree.put(createMergePath(fInfo, branchName), insertBlob(inserter, fInfo.getCode(idx)));
+            } else if (!isBase) {
+                tree.put(createMergePath(fInfo, branchName), insertBlob(inserter, fInfo.getCode(0)));
+            }
+            worked(1);
+        }
+    }
+
+    private boolean isChanged(FileInfo fInfo, int idx) {
+        List<UnifiedOperation> ops = fInfo.getOperations();
+        if (ops.isEmpty() || !OperationManager.isRestorationOperation(ops.get(0))) {
+            return true;
+        }
+
+        String code = ops.get(0).getCode();
+        for (int i = 1; i <= idx && i < ops.size(); i++) {
+            UnifiedOperation op = ops.get(i);
+            if (CodeInsertedOperation.isCodeInsertedOperation(op) || op.isTextChangedOperation()) {
+                return true;
+            }
+            if (OperationManager.isRestorationOperation(op) && op.getCode() != null && !op.getCode().equals(code)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ObjectId insertBlob(ObjectInserter inserter, String code) throws IOException {
+        byte[] bytes = code != null ? code.getBytes(CHARSET) : new byte[0];
+        ObjectId id = inserter.idFor(Constants.OBJ_BLOB, bytes);
+
+        // the repository is kept across detections, so most of the files are already stored
+        if (reader.has(id)) {
+            return id;
+        }
+        return inserter.insert(Constants.OBJ_BLOB, bytes);
+    }
+
+    private ObjectId commit(ObjectInserter inserter, Map<String, ObjectId> tree, ObjectId parent, String message)
+            throws IOException {
+        DirCache index = DirCache.newInCore();
+        DirCacheBuilder builder = index.builder();
+        for (Entry<String, ObjectId> entry : tree.entrySet()) {
+            DirCacheEntry dcEntry = new DirCacheEntry(entry.getKey());
+            dcEntry.setFileMode(FileMode.REGULAR_FILE);
+            dcEntry.setObjectId(entry.getValue());
+            builder.add(dcEntry);
         }
+        builder.finish();
 
-        git.add().addFilepattern(BranchRootInfo.getInstance().getName()).call();
-        git.commit().setMessage("MergeHelper-" + branchName).call();
+        PersonIdent ident = new PersonIdent("MergeHelper", "");
+        CommitBuilder commit = new CommitBuilder();
+        commit.setTreeId(index.writeTree(inserter));
+        if (parent != null) {
+            commit.setParentId(parent);
+        }
+        commit.setAuthor(ident);
+        commit.setCommitter(ident);
+        commit.setMessage(message);
+        return inserter.insert(commit);
     }
 
-    private void insertAMergeOperation(BranchInfo bInfo) {
+    private void insertAMergeOperation(BranchInfo bInfo, ObjectId mergedTree, Map<String, Integer> mergeIdxMap)
+            throws IOException {
         String branchName = bInfo.getName();
         List<FileInfo> fInfos = bInfo.getProjectInfo().getAllFileInfo();
         for (FileInfo fInfo : fInfos) {
-            String filePath = createMergePath(fInfo, branchName);
-            String code = FileStream.read(filePath);
-
-            int size = mergeIdxHoloders.size();
-            for (int i = 0; i < size; i++) {
-                MergeIndexHolder holder = mergeIdxHoloders.get(i);
-                if (holder.equals(fInfo)) {
-                    int insIdx = holder.idx + 1;
-                    CodeInsertedOperation ciop = new CodeInsertedOperation(fInfo, code);
-                    List<UnifiedOperation> ops = fInfo.getOperations();
-                    ops.add(insIdx, ciop);
-
-                    bInfo.getBranchFileInfo(fInfo).setMergedResult(insIdx, code);
-
-                    mergeIdxHoloders.remove(i);
-                    break;
-                }
+            Integer idx = mergeIdxMap.remove(fInfo.getQualifiedName());
+            if (idx != null) {
+                String code = readMergedCode(mergedTree, createMergePath(fInfo, branchName));
+                int insIdx = idx + 1;
+                CodeInsertedOperation ciop = new CodeInsertedOperation(fInfo, code);
+                List<UnifiedOperation> ops = fInfo.getOperations();
+                ops.add(insIdx, ciop);
+
+                bInfo.getBranchFileInfo(fInfo).setMergedResult(insIdx, code);
             }
+            worked(1);
+        }
+    }
+
+    private String readMergedCode(ObjectId mergedTree, String path) throws IOException {
+        TreeWalk walk = TreeWalk.forPath(repository, path, mergedTree);
+        if (walk == null) {
+            return "";
+        }
+        try {
+            return new String(repository.open(walk.getObjectId(0), Constants.OBJ_BLOB).getBytes(), CHARSET);
+        } finally {
+            walk.release();
         }
     }
 
@@ -158,8 +303,11 @@ public class AMerge extends AbstractDetector {
         int idx = filePath.indexOf(BranchHistoryCopier.BRANCH_NAME_MARK);
         int idx2 = idx + BranchHistoryCopier.BRANCH_NAME_MARK.length() + branchName.length();
 
-        StringBuilder sb = new StringBuilder(Activator.getWorkingDirPath());
+        StringBuilder sb = new StringBuilder();
         sb.append(filePath.substring(0, idx)).append(filePath.substring(idx2));
+        while (sb.length() > 0 && sb.charAt(0) == '/') {
+            sb.deleteCharAt(0);
+        }
         return sb.toString();
     }
 
@@ -181,18 +329,4 @@ public class AMerge extends AbstractDetector {
             error(dialog);
         }
     }
-
-    private class MergeIndexHolder {
-        String name;
-        int idx;
-
-        MergeIndexHolder(FileInfo fInfo, int idx) {
-            name = fInfo.getQualifiedName();
-            this.idx = idx;
-        }
-
-        boolean equals(FileInfo fInfo) {
-            return name.equals(fInfo.getQualifiedName());
-        }
-    }
 }
\ No newline at end of file
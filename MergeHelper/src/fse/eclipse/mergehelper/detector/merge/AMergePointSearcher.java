@@ -1,5 +1,6 @@
 package fse.eclipse.mergehelper.detector.merge;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -22,6 +23,8 @@ public class AMergePointSearcher extends AbstractDetector {
     private static AbstractDetector instance = new AMergePointSearcher();
 
     private MergePoint mPoint;
+    private Map<Integer, Integer> a_indexMap;
+    private Map<Integer, Integer> j_indexMap;
 
     private AMergePointSearcher() {
     }
@@ -39,9 +42,11 @@ public class AMergePointSearcher extends AbstractDetector {
 
         ProjectInfo a_pInfo = a_bInfo.getProjectInfo();
         ProjectInfo j_pInfo = j_bInfo.getProjectInfo();
+        a_indexMap = createIndexMap(a_pInfo);
+        j_indexMap = createIndexMap(j_pInfo);
 
         searchPointBeforeConflictElement(cInfo, a_pInfo, j_pInfo);
-        if (mPoint == null) {
+        if (mPoint == null || isCanceled()) {
             return;
         }
 
@@ -57,7 +62,12 @@ public class AMergePointSearcher extends AbstractDetector {
         UnifiedOperation a_op = null;
         UnifiedOperation j_op = null;
 
+        beginWork(elemMap.size());
         for (Entry<BranchJavaElement, BranchJavaElement> entry : elemMap.entrySet()) {
+            if (isCanceled()) {
+                return;
+            }
+
             BranchJavaElement new_a_elem = entry.getKey();
             BranchJavaElement new_j_elem = entry.getValue();
             UnifiedOperation new_a_op = new_a_elem.getOperations().get(0);
@@ -66,9 +76,10 @@ public class AMergePointSearcher extends AbstractDetector {
             if (isNarrowPoint(new_a_op, new_j_op, a_op, j_op)) {
                 a_elem = new_a_elem;
                 j_elem = new_j_elem;
-                a_op = a_pInfo.getOperation(a_pInfo.indexOfOperation(new_a_op.getId()) - 1);
-                j_op = j_pInfo.getOperation(j_pInfo.indexOfOperation(new_j_op.getId()) - 1);
+                a_op = a_pInfo.getOperation(indexOf(a_indexMap, new_a_op) - 1);
+                j_op = j_pInfo.getOperation(indexOf(j_indexMap, new_j_op) - 1);
             }
+            worked(1);
         }
 
         if (a_elem != null) {
@@ -83,20 +94,26 @@ public class AMergePointSearcher extends AbstractDetector {
         int a_size = a_ops.size() - 1;
         int j_size = j_ops.size() - 1;
 
+        // the latest operation of the join branch for each body
+        Map<String, UnifiedOperation> j_latestMap = new HashMap<>();
+        for (int j = j_size; j >= 0; j--) {
+            UnifiedOperation new_j_op = j_ops.get(j);
+            String j_body = jElem.getBodyDigest(new_j_op);
+            UnifiedOperation j_op = j_latestMap.get(j_body);
+            if (j_op == null || indexOf(j_indexMap, new_j_op) > indexOf(j_indexMap, j_op)) {
+                j_latestMap.put(j_body, new_j_op);
+            }
+        }
+
         UnifiedOperation a_op = null;
         UnifiedOperation j_op = null;
 
         for (int a = a_size; a >= 0; a--) {
             UnifiedOperation new_a_op = a_ops.get(a);
-            String a_body = aElem.getBody(new_a_op);
-            for (int j = j_size; j >= 0; j--) {
-                UnifiedOperation new_j_op = j_ops.get(j);
-                String j_body = jElem.getBody(new_j_op);
-
-                if (a_body.equals(j_body) && isNarrowPoint(new_a_op, new_j_op, a_op, j_op)) {
-                    a_op = new_a_op;
-                    j_op = new_j_op;
-                }
+            UnifiedOperation new_j_op = j_latestMap.get(aElem.getBodyDigest(new_a_op));
+            if (new_j_op != null && isNarrowPoint(new_a_op, new_j_op, a_op, j_op)) {
+                a_op = new_a_op;
+                j_op = new_j_op;
             }
         }
 
@@ -110,11 +127,25 @@ public class AMergePointSearcher extends AbstractDetector {
             return true;
         }
 
-        int new_idx = new_a_op.indexOfProjectInfo() + new_j_op.indexOfProjectInfo();
-        int old_idx = a_op.indexOfProjectInfo() + j_op.indexOfProjectInfo();
+        int new_idx = indexOf(a_indexMap, new_a_op) + indexOf(j_indexMap, new_j_op);
+        int old_idx = indexOf(a_indexMap, a_op) + indexOf(j_indexMap, j_op);
         return new_idx > old_idx;
     }
 
+    private Map<Integer, Integer> createIndexMap(ProjectInfo pInfo) {
+        List<UnifiedOperation> ops = pInfo.getOperations();
+        Map<Integer, Integer> indexMap = new HashMap<>(ops.size() * 2);
+        for (int i = ops.size() - 1; i >= 0; i--) {
+            indexMap.put(ops.get(i).getId(), i);
+        }
+        return indexMap;
+    }
+
+    private int indexOf(Map<Integer, Integer> indexMap, UnifiedOperation op) {
+        Integer idx = indexMap.get(op.getId());
+        return idx != null ? idx : -1;
+    }
+
     @Override
     protected String getMessage() {
         return MESSAGE;
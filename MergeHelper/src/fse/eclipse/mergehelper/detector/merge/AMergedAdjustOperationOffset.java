@@ -1,10 +1,13 @@
 package fse.eclipse.mergehelper.detector.merge;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.jtool.changerepository.data.FileInfo;
 import org.jtool.changerepository.data.ProjectInfo;
+import org.jtool.changerepository.operation.CodeInsertedOperation;
 import org.jtool.changerepository.operation.UnifiedOperation;
 import org.jtool.changerepository.parser.CodeRange;
 import org.jtool.changerepository.parser.OpJavaElement;
@@ -17,6 +20,7 @@ import fse.eclipse.mergehelper.element.BranchRootInfo;
 import fse.eclipse.mergehelper.element.MergePoint;
 import fse.eclipse.mergehelper.element.MergeType;
 import fse.eclipse.mergehelper.ui.dialog.ConflictDetectingDialog;
+import fse.eclipse.mergehelper.util.ElementTracker;
 import fse.eclipse.mergehelper.util.Parser;
 
 public class AMergedAdjustOperationOffset extends AbstractDetector {
@@ -40,6 +44,7 @@ public class AMergedAdjustOperationOffset extends AbstractDetector {
         BranchInfo j_bInfo = rootInfo.getBranchInfo(MergeType.JOIN);
         MergePoint mPoint = rootInfo.getMergePoint();
 
+        beginWork(a_bInfo.getProjectInfo().getOperations().size() + j_bInfo.getProjectInfo().getOperations().size());
         try {
             adjustOffset(a_bInfo, mPoint);
             adjustOffset(j_bInfo, mPoint);
@@ -57,9 +62,15 @@ public class AMergedAdjustOperationOffset extends AbstractDetector {
         UnifiedOperation point = mPoint.getMergePoint(type);
         int mIdx = point.indexOfProjectInfo();
 
-        List<MergedResultHolder> holders = new ArrayList<>();
+        Map<String, MergedResultHolder> holders = new HashMap<>();
+        worked(mIdx + 1);
         for (int i = size - 1; i > mIdx; i--) {
+            if (isCanceled()) {
+                return;
+            }
+
             UnifiedOperation op = ops.get(i);
+            worked(1);
             if (!op.isTextChangedOperation()) {
                 continue;
             }
@@ -67,26 +78,26 @@ public class AMergedAdjustOperationOffset extends AbstractDetector {
             FileInfo fInfo = op.getFileInfo();
             BranchFileInfo bfInfo = bInfo.getBranchFileInfo(fInfo);
 
-            MergedResultHolder holder = selectHolder(holders, fInfo);
+            MergedResultHolder holder = holders.get(fInfo.getQualifiedName());
             if (holder == null) {
                 String mergedCode = bfInfo.getMergedResultCode();
                 List<OpJavaElement> elems = new ArrayList<>();
                 Parser.collectElements(fInfo, mergedCode, elems);
                 holder = new MergedResultHolder(fInfo, elems);
-                holders.add(holder);
+                holders.put(fInfo.getQualifiedName(), holder);
             }
 
             int idx = op.indexOfFileInfo();
-            String code = fInfo.getCode(idx);
-            List<OpJavaElement> elems = new ArrayList<>();
-            Parser.collectElements(fInfo, code, elems);
+            ElementTracker tracker = holder.rewind(idx);
 
             BranchJavaElement targetElem = bfInfo.getBranchJavaElement(op);
-            for (OpJavaElement elem : elems) {
-                if (elem.getFullName().equals(targetElem.getFullName())) {
-                    adjustOperationOffset(op, elem.getCodeRange(), holder.getMergedElementRange(elem));
-                    break;
-                }
+            OpJavaElement elem = tracker.getElement(targetElem.getFullName());
+            CodeRange range = elem != null ? tracker.getCodeRange(elem) : null;
+
+            // the operation is undone before its offset is changed
+            holder.undo(op);
+            if (elem != null) {
+                adjustOperationOffset(op, range, holder.getMergedElementRange(elem));
             }
         }
     }
@@ -97,15 +108,6 @@ public class AMergedAdjustOperationOffset extends AbstractDetector {
         op.setStart(adjustOffset);
     }
 
-    private MergedResultHolder selectHolder(List<MergedResultHolder> holders, FileInfo fInfo) {
-        for (MergedResultHolder holder : holders) {
-            if (holder.equals(fInfo)) {
-                return holder;
-            }
-        }
-        return null;
-    }
-
     @Override
     protected String getMessage() {
         return MESSAGE;
@@ -126,25 +128,56 @@ public class AMergedAdjustOperationOffset extends AbstractDetector {
     }
 
     private class MergedResultHolder {
-        String name;
-        List<OpJavaElement> elems;
+        FileInfo fInfo;
+        Map<String, CodeRange> rangeMap = new HashMap<>();
+        ElementTracker tracker;
+        int trackedIdx = -1;
 
         public MergedResultHolder(FileInfo fInfo, List<OpJavaElement> elems) {
-            name = fInfo.getQualifiedName();
-            this.elems = elems;
+            this.fInfo = fInfo;
+            for (OpJavaElement elem : elems) {
+                rangeMap.putIfAbsent(elem.getFullName(), elem.getCodeRange());
+            }
+            tracker = new ElementTracker(fInfo);
         }
 
         CodeRange getMergedElementRange(OpJavaElement element) {
-            for (OpJavaElement elem : elems) {
-                if (elem.getFullName().equals(element.getFullName())) {
-                    return elem.getCodeRange();
-                }
+            return rangeMap.get(element.getFullName());
+        }
+
+        ElementTracker rewind(int idx) {
+            if (!canRewind(idx)) {
+                tracker.reset(fInfo.getCode(idx));
+            }
+            trackedIdx = idx;
+            return tracker;
+        }
+
+        void undo(UnifiedOperation op) {
+            if (op.isNormalOperation() && !tracker.applyReversely(op)) {
+                trackedIdx = -1;
+                return;
             }
-            return null;
+            trackedIdx--;
         }
 
-        boolean equals(FileInfo fInfo) {
-            return name.equals(fInfo.getQualifiedName());
+        // the tracked code can be rewound without re-parsing only if no operation in between changes the text
+        private boolean canRewind(int idx) {
+            if (trackedIdx < idx) {
+                return false;
+            }
+
+            List<UnifiedOperation> ops = fInfo.getOperations();
+            for (int i = trackedIdx; i > idx; i--) {
+                UnifiedOperation op = ops.get(i);
+                if (CodeInsertedOperation.isCodeInsertedOperation(op)) {
+                    return false;
+                }
+                if (op.isNormalOperation() || op.isFileNewOperation() || op.isFileOpenOperation()) {
+                    return false;
+                }
+            }
+            return true;
         }
     }
 }
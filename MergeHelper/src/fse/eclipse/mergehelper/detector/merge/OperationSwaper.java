@@ -1,7 +1,8 @@
 package fse.eclipse.mergehelper.detector.merge;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -44,11 +45,14 @@ public class OperationSwaper extends AbstractDetector {
         BranchInfo j_bInfo = rootInfo.getBranchInfo(MergeType.JOIN);
         ConflictInfo cInfo = rootInfo.getConflictInfo();
 
-        List<OperationHunk> a_hunks = createOpertationHunk(a_bInfo, cInfo);
-        swapHunk(a_bInfo.getProjectInfo(), a_hunks);
-
-        List<OperationHunk> j_hunks = createOpertationHunk(j_bInfo, cInfo);
-        swapHunk(j_bInfo.getProjectInfo(), j_hunks);
+        beginWork(a_bInfo.getProjectInfo().getOperations().size() + j_bInfo.getProjectInfo().getOperations().size());
+        executeInParallel(() -> {
+            List<OperationHunk> a_hunks = createOpertationHunk(a_bInfo, cInfo);
+            swapHunk(a_bInfo.getProjectInfo(), a_hunks);
+        }, () -> {
+            List<OperationHunk> j_hunks = createOpertationHunk(j_bInfo, cInfo);
+            swapHunk(j_bInfo.getProjectInfo(), j_hunks);
+        });
     }
 
     private List<OperationHunk> createOpertationHunk(BranchInfo bInfo, ConflictInfo cInfo) {
@@ -128,171 +132,172 @@ public class OperationSwaper extends AbstractDetector {
 
     private void swapHunk(ProjectInfo pInfo, List<OperationHunk> hunks) {
         // TODO 複数の要素への対応
-        List<OperationHunk> tmphunks;
-        do {
-            tmphunks = new ArrayList<>(hunks);
-            int start = 0;
-            int size = hunks.size() - 1;
-            if (hunks.get(size).name.equals(CLOSE)) {
-                size--;
+        List<UnifiedOperation> ops = pInfo.getOperations();
+        Map<Integer, UnifiedOperation> opMap = new HashMap<>(ops.size() * 2);
+        Map<Integer, Integer> posMap = new HashMap<>(ops.size() * 2);
+        for (int i = 0; i < ops.size(); i++) {
+            UnifiedOperation op = ops.get(i);
+            opMap.put(op.getId(), op);
+            posMap.put(op.getId(), i);
+        }
+
+        int size = hunks.size();
+        if (hunks.get(size - 1).name.equals(CLOSE)) {
+            size--;
+        }
+
+        // Each conflict hunk finally moves behind all the following non-conflict hunks.
+        // Moving the hunks from the last one meets the operations in the same order as swapping neighboring hunks repeatedly.
+        LinkedList<OperationHunk> following = new LinkedList<>();
+        for (int i = size - 1; i >= 0; i--) {
+            if (isCanceled()) {
+                return;
             }
 
-            for (int i = start; i < size; i++) {
-                OperationHunk hunk1 = hunks.get(i);
-                if (hunk1.isConflictElement) {
-                    OperationHunk hunk2 = hunks.get(i + 1);
-                    if (!hunk2.isConflictElement) {
-                        if (isSwap()) {
-                            swapOperation(pInfo, hunk1, hunk2);
-                            Collections.swap(hunks, i, i + 1);
-                        }
-                    }
-                }
+            OperationHunk hunk = hunks.get(i);
+            worked(hunk.lastId - hunk.firstId + 1);
+            if (!hunk.isConflictElement) {
+                following.addFirst(hunk);
+            } else if (!following.isEmpty() && isSwap()) {
+                swapOperation(ops, opMap, posMap, hunk, following);
             }
-        } while (!isEqualHunk(hunks, tmphunks));
+        }
 
         adaptFileInfoOperation(pInfo);
     }
 
-    private void swapOperation(ProjectInfo pInfo, OperationHunk hunk1, OperationHunk hunk2) {
-        int f1 = hunk1.firstId;
-        int l1 = hunk1.lastId;
-        int f2 = hunk2.firstId;
-        int l2 = hunk2.lastId;
+    private void swapOperation(List<UnifiedOperation> ops, Map<Integer, UnifiedOperation> opMap, Map<Integer, Integer> posMap,
+            OperationHunk hunk1, List<OperationHunk> hunks2) {
+        List<UnifiedOperation> ops1 = collectNormalOperation(opMap, hunk1);
+        List<UnifiedOperation> ops2 = new ArrayList<>();
+        for (OperationHunk hunk2 : hunks2) {
+            ops2.addAll(collectNormalOperation(opMap, hunk2));
+        }
+        if (ops1.isEmpty() || ops2.isEmpty()) {
+            return;
+        }
 
-        List<UnifiedOperation> ops = pInfo.getOperations();
-        for (int i = l1; i >= f1; i--) {
-            for (int j = f2; j <= l2; j++) {
-                UnifiedOperation op1 = pInfo.getOperationById(i);
-                if (!op1.isNormalOperation()) {
-                    continue;
-                }
+        for (int i = ops1.size() - 1; i >= 0; i--) {
+            for (UnifiedOperation op2 : ops2) {
+                adjustOffset(ops1.get(i), op2);
+            }
+        }
 
-                UnifiedOperation op2 = pInfo.getOperationById(j);
-                if (!op2.isNormalOperation()) {
-                    continue;
-                }
+        Comparator<UnifiedOperation> byPosition = Comparator.comparingInt(op -> posMap.get(op.getId()));
+        ops1.sort(byPosition);
+        ops2.sort(byPosition);
 
-                NormalOperation nop1 = (NormalOperation) op1.getIOperation();
-                NormalOperation nop2 = (NormalOperation) op2.getIOperation();
-
-                int s1 = nop1.getStart();
-                int s2 = nop2.getStart();
-                if (s1 != s2) {
-                    boolean isForwardOp1 = s1 < s2;
-                    if (isForwardOp1) {
-                        if (nop1.isInsertion()) {
-                            if (nop2.isInsertion()) {
-                                op2.setStart(s2 - op1.maxInsertedTextLength());
-                            } else if (nop2.isDeletion()) {
-                                op2.setStart(s2 - op1.maxInsertedTextLength());
-                            }
-                        } else if (nop1.isDeletion()) {
-                            if (nop2.isInsertion()) {
-                                op2.setStart(s2 + op1.maxDeletedOrCopiedTextLength());
-                            } else if (nop2.isDeletion()) {
-                                op2.setStart(s2 + op1.maxDeletedOrCopiedTextLength());
-                            }
-                        }
-
-                        if (nop1.isReplace()) {
-                            int iLength = op1.maxInsertedTextLength();
-                            int dLength = op1.maxDeletedOrCopiedTextLength();
-                            if (iLength >= dLength) {
-                                op2.setStart(op2.getStart() + dLength);
-                            } else {
-                                op2.setStart(op2.getStart() - iLength);
-                            }
-                        }
-                    } else {
-                        if (nop1.isInsertion()) {
-                            if (nop2.isInsertion()) {
-                                op1.setStart(s1 + op2.maxInsertedTextLength());
-                            } else if (nop2.isDeletion()) {
-                                op1.setStart(s1 - op2.maxDeletedOrCopiedTextLength());
-                            }
-                        } else if (nop1.isDeletion()) {
-                            if (nop2.isInsertion()) {
-                                op1.setStart(s1 + op2.maxInsertedTextLength());
-                            } else if (nop2.isDeletion()) {
-                                op1.setStart(s1 - op2.maxDeletedOrCopiedTextLength());
-                            }
-                        }
-
-                        if (nop2.isReplace()) {
-                            int iLength = op2.maxInsertedTextLength();
-                            int dLength = op2.maxDeletedOrCopiedTextLength();
-                            if (iLength >= dLength) {
-                                op1.setStart(op1.getStart() - dLength);
-                            } else {
-                                op1.setStart(op1.getStart() + iLength);
-                            }
-                        }
-                    }
-                }
+        List<UnifiedOperation> moved = new ArrayList<>(ops2);
+        moved.addAll(ops1);
+        int[] slots = new int[moved.size()];
+        for (int k = 0; k < slots.length; k++) {
+            slots[k] = posMap.get(moved.get(k).getId());
+        }
+        Arrays.sort(slots);
 
-                long tmpTime = op2.getTime();
-                op2.setTime(op1.getTime());
-                op1.setTime(tmpTime);
+        long[] times = new long[slots.length];
+        for (int k = 0; k < slots.length; k++) {
+            times[k] = ops.get(slots[k]).getTime();
+        }
 
-                int a = ops.indexOf(op1);
-                int b = ops.indexOf(op2);
-                Collections.swap(ops, a, b);
-            }
+        for (int k = 0; k < slots.length; k++) {
+            UnifiedOperation op = moved.get(k);
+            op.setTime(times[k]);
+            ops.set(slots[k], op);
+            posMap.put(op.getId(), slots[k]);
         }
     }
 
-    private int searchOperationIndex(List<UnifiedOperation> ops, int id) {
-        int idx = 0;
-        for (UnifiedOperation op : ops) {
-            if (op.getId() == id) {
-                return idx;
+    private List<UnifiedOperation> collectNormalOperation(Map<Integer, UnifiedOperation> opMap, OperationHunk hunk) {
+        List<UnifiedOperation> ops = new ArrayList<>();
+        for (int id = hunk.firstId; id <= hunk.lastId; id++) {
+            UnifiedOperation op = opMap.get(id);
+            if (op != null && op.isNormalOperation()) {
+                ops.add(op);
             }
-            idx++;
         }
-        return -1;
+        return ops;
     }
 
-    private void adaptFileInfoOperation(ProjectInfo pInfo) {
-        List<UnifiedOperation> ops = pInfo.getOperations();
-        Map<String, List<Integer>> map = new HashMap<String, List<Integer>>();
-        for (UnifiedOperation op : ops) {
-            String name = op.getFileInfo().getQualifiedName();
-            if (map.containsKey(name)) {
-                map.get(name).add(op.getId());
+    private void adjustOffset(UnifiedOperation op1, UnifiedOperation op2) {
+        NormalOperation nop1 = (NormalOperation) op1.getIOperation();
+        NormalOperation nop2 = (NormalOperation) op2.getIOperation();
+
+        int s1 = nop1.getStart();
+        int s2 = nop2.getStart();
+        if (s1 != s2) {
+            boolean isForwardOp1 = s1 < s2;
+            if (isForwardOp1) {
+                if (nop1.isInsertion()) {
+                    if (nop2.isInsertion()) {
+                        op2.setStart(s2 - op1.maxInsertedTextLength());
+                    } else if (nop2.isDeletion()) {
+                        op2.setStart(s2 - op1.maxInsertedTextLength());
+                    }
+                } else if (nop1.isDeletion()) {
+                    if (nop2.isInsertion()) {
+                        op2.setStart(s2 + op1.maxDeletedOrCopiedTextLength());
+                    } else if (nop2.isDeletion()) {
+                        op2.setStart(s2 + op1.maxDeletedOrCopiedTextLength());
+                    }
+                }
+
+                if (nop1.isReplace()) {
+                    int iLength = op1.maxInsertedTextLength();
+                    int dLength = op1.maxDeletedOrCopiedTextLength();
+                    if (iLength >= dLength) {
+                        op2.setStart(op2.getStart() + dLength);
+                    } else {
+                        op2.setStart(op2.getStart() - iLength);
+                    }
+                }
             } else {
-                List<Integer> ids = new ArrayList<Integer>();
-                ids.add(op.getId());
-                map.put(name, ids);
-            }
-        }
+                if (nop1.isInsertion()) {
+                    if (nop2.isInsertion()) {
+                        op1.setStart(s1 + op2.maxInsertedTextLength());
+                    } else if (nop2.isDeletion()) {
+                        op1.setStart(s1 - op2.maxDeletedOrCopiedTextLength());
+                    }
+                } else if (nop1.isDeletion()) {
+                    if (nop2.isInsertion()) {
+                        op1.setStart(s1 + op2.maxInsertedTextLength());
+                    } else if (nop2.isDeletion()) {
+                        op1.setStart(s1 - op2.maxDeletedOrCopiedTextLength());
+                    }
+                }
 
-        List<FileInfo> fInfos = pInfo.getAllFileInfo();
-        for (FileInfo fInfo : fInfos) {
-            List<Integer> ids = map.get(fInfo.getQualifiedName());
-            List<UnifiedOperation> new_ops = new ArrayList<>();
-            for (int id : ids) {
-                int idx = searchOperationIndex(ops, id);
-                new_ops.add(ops.get(idx));
+                if (nop2.isReplace()) {
+                    int iLength = op2.maxInsertedTextLength();
+                    int dLength = op2.maxDeletedOrCopiedTextLength();
+                    if (iLength >= dLength) {
+                        op1.setStart(op1.getStart() - dLength);
+                    } else {
+                        op1.setStart(op1.getStart() + iLength);
+                    }
+                }
             }
-            fInfo.setOperations(new_ops);
         }
     }
 
-    private boolean isEqualHunk(List<OperationHunk> hunks, List<OperationHunk> hunks2) {
-        int size = hunks.size();
-        if (size != hunks2.size()) {
-            return false;
+    private void adaptFileInfoOperation(ProjectInfo pInfo) {
+        Map<String, List<UnifiedOperation>> map = new HashMap<String, List<UnifiedOperation>>();
+        for (UnifiedOperation op : pInfo.getOperations()) {
+            String name = op.getFileInfo().getQualifiedName();
+            List<UnifiedOperation> new_ops = map.get(name);
+            if (new_ops == null) {
+                new_ops = new ArrayList<>();
+                map.put(name, new_ops);
+            }
+            new_ops.add(op);
         }
 
-        for (int i = 0; i < size; i++) {
-            OperationHunk hunk = hunks.get(i);
-            OperationHunk hunk2 = hunks2.get(i);
-            if (!hunk.equals(hunk2)) {
-                return false;
+        List<FileInfo> fInfos = pInfo.getAllFileInfo();
+        for (FileInfo fInfo : fInfos) {
+            List<UnifiedOperation> new_ops = map.get(fInfo.getQualifiedName());
+            if (new_ops != null) {
+                fInfo.setOperations(new_ops);
             }
         }
-        return true;
     }
 
     private boolean isUnknownValue(String[] value) {
@@ -331,21 +336,5 @@ public class OperationSwaper extends AbstractDetector {
             this.firstId = firstId;
             this.isConflictElement = isConflictElement;
         }
-
-        boolean equals(OperationHunk hunk) {
-            if (!this.name.equals(hunk.name)) {
-                return false;
-            }
-            if (this.firstId != hunk.firstId) {
-                return false;
-            }
-            if (this.lastId != hunk.lastId) {
-                return false;
-            }
-            if (this.isConflictElement != hunk.isConflictElement) {
-                return false;
-            }
-            return true;
-        }
     }
 }
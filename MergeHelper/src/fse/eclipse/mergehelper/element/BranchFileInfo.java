@@ -14,11 +14,13 @@ import fse.eclipse.mergehelper.util.RepositoryElementInfoUtil;
 
 public class BranchFileInfo {
     private final FileInfo fInfo;
+    private final String fullName;
     private final Map<String, BranchJavaElement> elemMap = new ConcurrentHashMap<>();
     private Map<Integer, String> mergedResultMap;
 
     public BranchFileInfo(FileInfo fInfo, List<OpJavaElement> elements) {
         this.fInfo = fInfo;
+        this.fullName = createFullName(fInfo);
         for (OpJavaElement elem : elements) {
             elemMap.put(createElementMapKey(elem), new BranchJavaElement(this, elem));
         }
@@ -29,9 +31,13 @@ public class BranchFileInfo {
     }
 
     public String getFullName() {
+        return fullName;
+    }
+
+    private static String createFullName(FileInfo fInfo) {
         StringBuilder sb = new StringBuilder();
         sb.append(fInfo.getPackageInfo().getName());
-        sb.append("#").append(getName());
+        sb.append("#").append(RepositoryElementInfoUtil.getNameExcludeBranchName(fInfo.getName()));
         return sb.toString();
     }
 
@@ -70,12 +76,12 @@ public class BranchFileInfo {
         return getBranchJavaElement(key);
     }
 
-    public void addOperation(OpJavaElement elem, UnifiedOperation op, String body) {
+    public void addOperation(OpJavaElement elem, UnifiedOperation op, String bodyDigest) {
         String key = createElementMapKey(elem);
         BranchJavaElement bElem;
         if (elemMap.containsKey(key)) {
             bElem = elemMap.get(key);
-            bElem.addOperation(op, body);
+            bElem.addOperation(op, bodyDigest);
         }
     }
 
@@ -96,6 +102,6 @@ public class BranchFileInfo {
     }
 
     public boolean equalsFileName(BranchFileInfo bfInfo) {
-        return this.getFullName().compareTo(bfInfo.getFullName()) == 0;
+        return fullName.equals(bfInfo.fullName);
     }
 }
@@ -5,6 +5,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.jtool.changerecorder.history.OperationHistory;
 import org.jtool.changerepository.data.FileInfo;
 import org.jtool.changerepository.data.ProjectInfo;
 import org.jtool.changerepository.parser.OpJavaElement;
@@ -13,6 +14,7 @@ public class BranchInfo {
     private final String name;
     private final MergeType type;
     private final Map<String, BranchFileInfo> bfInfoMap = new ConcurrentHashMap<>();
+    private final List<OperationHistory> histories = new ArrayList<>();
 
     private ProjectInfo pInfo;
 
@@ -37,6 +39,14 @@ public class BranchInfo {
         this.pInfo = pInfo;
     }
 
+    public List<OperationHistory> getOperationHistories() {
+        return histories;
+    }
+
+    public void addOperationHistory(OperationHistory history) {
+        histories.add(history);
+    }
+
     public List<BranchFileInfo> getAllBranchFileInfo() {
         return new ArrayList<>(bfInfoMap.values());
     }
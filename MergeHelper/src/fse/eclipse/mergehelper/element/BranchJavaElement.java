@@ -12,7 +12,7 @@ import org.jtool.changerepository.parser.OpJavaElement;
 public class BranchJavaElement {
     private final BranchFileInfo bfInfo;
     private final OpJavaElement elem;
-    private final Map<UnifiedOperation, String> bodyMap = new LinkedHashMap<>();
+    private final Map<UnifiedOperation, String> bodyDigestMap = new LinkedHashMap<>();
 
     BranchJavaElement(BranchFileInfo bfInfo, OpJavaElement elem) {
         this.bfInfo = bfInfo;
@@ -48,23 +48,23 @@ public class BranchJavaElement {
     }
 
     public List<UnifiedOperation> getOperations() {
-        return new ArrayList<>(bodyMap.keySet());
+        return new ArrayList<>(bodyDigestMap.keySet());
     }
 
-    public void addOperation(UnifiedOperation op, String body) {
-        bodyMap.put(op, body);
+    public void addOperation(UnifiedOperation op, String bodyDigest) {
+        bodyDigestMap.put(op, bodyDigest);
     }
 
     public boolean isEdited() {
-        return bodyMap.size() > 0;
+        return bodyDigestMap.size() > 0;
     }
 
     public boolean contains(UnifiedOperation op) {
-        return bodyMap.containsKey(op);
+        return bodyDigestMap.containsKey(op);
     }
 
-    public String getBody(UnifiedOperation op) {
-        return bodyMap.get(op);
+    public String getBodyDigest(UnifiedOperation op) {
+        return bodyDigestMap.get(op);
     }
 
     public boolean equalsFileElement(BranchJavaElement elem) {
@@ -3,18 +3,27 @@ package fse.eclipse.mergehelper.ui.dialog;
 import java.lang.reflect.InvocationTargetException;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.jface.dialogs.ProgressMonitorDialog;
 import org.eclipse.jface.operation.IRunnableWithProgress;
 import org.eclipse.swt.widgets.Composite;
 
 import fse.eclipse.mergehelper.detector.AbstractDetector;
+import fse.eclipse.mergehelper.detector.DetectionReport;
 import fse.eclipse.mergehelper.detector.InitWorkingDirectory;
 import fse.eclipse.mergehelper.ui.MH_PackageExplorerView;
 
 public class ConflictDetectingDialog extends AbstractMHDialog implements IRunnableWithProgress {
     private static final String TITLE = "Please Wait";
+    private static final int STAGE_NUMBER = 9;
+    private static final int STAGE_WORK = 100;
     private IProgressMonitor monitor;
 
+    private AbstractDetector nextDetector;
+    private final DetectionReport report = new DetectionReport();
+    private boolean isSuccess;
+    private String errorMessage;
+
     ConflictDetectingDialog(Composite parent) {
         super(parent);
     }
@@ -22,18 +31,28 @@ public class ConflictDetectingDialog extends AbstractMHDialog implements IRunnab
     @Override
     public void run(IProgressMonitor monitor) throws InvocationTargetException, InterruptedException {
         this.monitor = monitor;
-        monitor.beginTask("", 7);
+        monitor.beginTask("", STAGE_NUMBER * STAGE_WORK);
         monitor.setCanceled(false);
 
         AbstractDetector detector = InitWorkingDirectory.getInstance();
         detector.detect(this);
+
+        while (nextDetector != null) {
+            if (monitor.isCanceled()) {
+                throw new InterruptedException("detection is canceled");
+            }
+            AbstractDetector current = nextDetector;
+            nextDetector = null;
+            current.runStage(this);
+        }
+        monitor.done();
     }
 
     @Override
     protected void nextProgress() {
         MH_PackageExplorerView.getInstance().refresh();
 
-        ResultDialog nextDialog = new ResultDialog(parent);
+        ResultDialog nextDialog = new ResultDialog(parent, report);
         nextDialog.show();
 
         finish();
@@ -49,9 +68,22 @@ public class ConflictDetectingDialog extends AbstractMHDialog implements IRunnab
         dialog.update();
 
         try {
-            pDialog.run(false, true, this);
-        } catch (InvocationTargetException | InterruptedException e) {
+            pDialog.run(true, true, this);
+        } catch (InvocationTargetException e) {
             e.printStackTrace();
+            return;
+        } catch (InterruptedException e) {
+            // canceled by the user
+            return;
+        }
+
+        if (isSuccess) {
+            nextProgress();
+        } else if (errorMessage != null) {
+            ErrorDialog nextDialog = new ErrorDialog(parent, errorMessage);
+            nextDialog.show();
+
+            finish();
         }
     }
 
@@ -60,12 +92,24 @@ public class ConflictDetectingDialog extends AbstractMHDialog implements IRunnab
         return TITLE;
     }
 
-    public void setMessage(String message) {
-        monitor.setTaskName(message);
+    public void submit(AbstractDetector detector) {
+        nextDetector = detector;
+    }
+
+    public DetectionReport getReport() {
+        return report;
     }
 
-    public void incrementProgressBar() {
-        monitor.worked(1);
+    public IProgressMonitor createStageMonitor() {
+        return new SubProgressMonitor(monitor, STAGE_WORK);
+    }
+
+    public boolean isCanceled() {
+        return monitor.isCanceled();
+    }
+
+    public void setMessage(String message) {
+        monitor.setTaskName(message);
     }
 
     @Override
@@ -74,14 +118,10 @@ public class ConflictDetectingDialog extends AbstractMHDialog implements IRunnab
     }
 
     public void detectSuccess() {
-        monitor.done();
-        nextProgress();
+        isSuccess = true;
     }
 
     public void detectFailed(String errorMessage) {
-        ErrorDialog nextDialog = new ErrorDialog(parent, errorMessage);
-        nextDialog.show();
-
-        finish();
+        this.errorMessage = errorMessage;
     }
 }
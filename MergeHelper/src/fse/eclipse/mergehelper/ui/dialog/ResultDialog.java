@@ -17,6 +17,7 @@ import org.eclipse.swt.widgets.TableItem;
 import org.jtool.changerecorder.util.Time;
 import org.jtool.changerepository.operation.UnifiedOperation;
 
+import fse.eclipse.mergehelper.detector.DetectionReport;
 import fse.eclipse.mergehelper.element.BranchInfo;
 import fse.eclipse.mergehelper.element.BranchJavaElement;
 import fse.eclipse.mergehelper.element.BranchRootInfo;
@@ -26,9 +27,15 @@ import fse.eclipse.mergehelper.element.MergeType;
 
 public class ResultDialog extends AbstractMHDialog {
     private static final String TITLE = "Detecion Result";
+    private final DetectionReport report;
 
     public ResultDialog(Composite parent) {
+        this(parent, null);
+    }
+
+    ResultDialog(Composite parent, DetectionReport report) {
         super(parent);
+        this.report = report;
     }
 
     @Override
@@ -105,6 +112,14 @@ public class ResultDialog extends AbstractMHDialog {
             addHorizontalLine();
         }
 
+        if (report != null) {
+            Label reportLabel = new Label(dialog, SWT.NONE);
+            reportLabel.setText(report.toString());
+            reportLabel.setLayoutData(grabExFILLGridData());
+
+            addHorizontalLine();
+        }
+
         Button okButton = new Button(dialog, SWT.PUSH);
         okButton.setText("OK");
         GridData okButtonGrid = new GridData(GridData.HORIZONTAL_ALIGN_END);
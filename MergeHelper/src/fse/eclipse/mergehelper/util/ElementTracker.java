@@ -0,0 +1,242 @@
+package fse.eclipse.mergehelper.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.Initializer;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.jtool.changerepository.data.FileInfo;
+import org.jtool.changerepository.operation.CodeDocument;
+import org.jtool.changerepository.operation.OperationRestorer;
+import org.jtool.changerepository.operation.UnifiedOperation;
+import org.jtool.changerepository.parser.CodeRange;
+import org.jtool.changerepository.parser.OpJavaElement;
+import org.jtool.changerepository.parser.OpJavaVisitor;
+
+/**
+ * Rolls the code of a file forward or backward one operation at a time and keeps the code ranges of its Java elements.
+ * The code is re-parsed only when an edit may change the declarations, that is, when it is not strictly
+ * inside a single method body or contains characters that can open or close a block, comment, or literal.
+ * Otherwise the ranges are updated by offset arithmetic.
+ */
+public class ElementTracker {
+    private static final String STRUCTURAL_CHARS = "{}\"'/*\\\r\n";
+    private static final String STRUCTURAL_NEIGHBORS = "/*\\\"'";
+
+    private final FileInfo fInfo;
+    private final OperationRestorer restorer = new OperationRestorer();
+    private final MessageDigest digest;
+    private CodeDocument doc;
+    private boolean hasProblems;
+
+    private List<OpJavaElement> elems = new ArrayList<>();
+    private int[] starts = new int[0];
+    private int[] ends = new int[0];
+    private int[] bodyStarts = new int[0];
+    private Map<String, Integer> fullNameMap = new HashMap<>();
+
+    public ElementTracker(FileInfo fInfo) {
+        this.fInfo = fInfo;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public boolean reset(String code) {
+        elems = new ArrayList<>();
+        starts = new int[0];
+        ends = new int[0];
+        bodyStarts = new int[0];
+        fullNameMap = new HashMap<>();
+        if (code == null) {
+            doc = null;
+            return false;
+        }
+        doc = new CodeDocument(code);
+        return parse(code);
+    }
+
+    public boolean apply(UnifiedOperation op) {
+        return edit(op, op.getDeletedText(), op.getInsertedText(), false);
+    }
+
+    public boolean applyReversely(UnifiedOperation op) {
+        return edit(op, op.getInsertedText(), op.getDeletedText(), true);
+    }
+
+    private boolean edit(UnifiedOperation op, String dtext, String itext, boolean reversely) {
+        if (doc == null) {
+            return false;
+        }
+
+        int s = op.getStart();
+        int e = s + dtext.length();
+        boolean incremental = !hasProblems && isSafeText(itext) && isSafeText(dtext) && isSafeNeighbor(s, e);
+
+        int[] nstarts = null;
+        int[] nends = null;
+        int[] nbodyStarts = null;
+        if (incremental) {
+            int delta = itext.length() - dtext.length();
+            nstarts = new int[starts.length];
+            nends = new int[ends.length];
+            nbodyStarts = new int[bodyStarts.length];
+            incremental = shift(s, e, delta, nstarts, nends, nbodyStarts);
+        }
+
+        boolean applied = reversely ? restorer.applyOperationReversely(doc, op) : restorer.applyOperation(doc, op);
+        if (!applied) {
+            doc = null;
+            return false;
+        }
+
+        if (incremental) {
+            starts = nstarts;
+            ends = nends;
+            bodyStarts = nbodyStarts;
+            return true;
+        }
+        return parse(doc.toString());
+    }
+
+    public OpJavaElement getElement(int offset) {
+        for (int i = 0; i < elems.size(); i++) {
+            if (starts[i] <= offset && offset <= ends[i]) {
+                return elems.get(i);
+            }
+        }
+        return null;
+    }
+
+    public OpJavaElement getElement(String fullName) {
+        Integer i = fullNameMap.get(fullName);
+        return i != null ? elems.get(i) : null;
+    }
+
+    public CodeRange getCodeRange(OpJavaElement elem) {
+        int i = elems.indexOf(elem);
+        return new CodeRange(starts[i], ends[i]);
+    }
+
+    public String getBodyDigest(OpJavaElement elem) {
+        int i = elems.indexOf(elem);
+        String body = doc.substring(starts[i], ends[i]);
+        byte[] bytes = digest.digest(body.getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private boolean parse(String code) {
+        CompilationUnit cu = Parser.createCompilationUnit(code);
+        if (cu == null) {
+            return false;
+        }
+
+        BodyCollector visitor = new BodyCollector(fInfo);
+        cu.accept(visitor);
+        elems = visitor.getJavaElements();
+        hasProblems = cu.getProblems().length > 0;
+
+        int size = elems.size();
+        starts = new int[size];
+        ends = new int[size];
+        bodyStarts = new int[size];
+        fullNameMap = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            OpJavaElement elem = elems.get(i);
+            fullNameMap.putIfAbsent(elem.getFullName(), i);
+            starts[i] = elem.getStart();
+            ends[i] = elem.getEnd();
+            Integer bodyStart = visitor.bodyStarts.get(elem);
+            bodyStarts[i] = bodyStart != null ? bodyStart : -1;
+        }
+        return true;
+    }
+
+    private boolean shift(int s, int e, int delta, int[] nstarts, int[] nends, int[] nbodyStarts) {
+        int inner = -1;
+        for (int i = 0; i < starts.length; i++) {
+            int a = starts[i];
+            int b = ends[i];
+            if (s <= a && e <= a) {
+                nstarts[i] = a + delta;
+                nends[i] = b + delta;
+                nbodyStarts[i] = bodyStarts[i] >= 0 ? bodyStarts[i] + delta : -1;
+            } else if (b < s) {
+                nstarts[i] = a;
+                nends[i] = b;
+                nbodyStarts[i] = bodyStarts[i];
+            } else if (a < s && e <= b) {
+                nstarts[i] = a;
+                nends[i] = b + delta;
+                nbodyStarts[i] = bodyStarts[i];
+                if (inner == -1 || b - a < ends[inner] - starts[inner]) {
+                    inner = i;
+                }
+            } else {
+                return false;
+            }
+        }
+        return inner != -1 && bodyStarts[inner] >= 0 && bodyStarts[inner] < s;
+    }
+
+    private boolean isSafeText(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (STRUCTURAL_CHARS.indexOf(text.charAt(i)) != -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isSafeNeighbor(int s, int e) {
+        if (s <= 0 || doc.length() <= e) {
+            return false;
+        }
+        return STRUCTURAL_NEIGHBORS.indexOf(doc.substring(s - 1, s).charAt(0)) == -1 &&
+               STRUCTURAL_NEIGHBORS.indexOf(doc.substring(e, e + 1).charAt(0)) == -1;
+    }
+
+    private static class BodyCollector extends OpJavaVisitor {
+        private final Map<OpJavaElement, Integer> bodyStarts = new IdentityHashMap<>();
+
+        BodyCollector(FileInfo fInfo) {
+            super(fInfo);
+        }
+
+        @Override
+        public boolean visit(MethodDeclaration node) {
+            boolean result = super.visit(node);
+            if (node.getBody() != null) {
+                bodyStarts.put(last(), node.getBody().getStartPosition());
+            }
+            return result;
+        }
+
+        @Override
+        public boolean visit(Initializer node) {
+            boolean result = super.visit(node);
+            bodyStarts.put(last(), node.getBody().getStartPosition());
+            return result;
+        }
+
+        private OpJavaElement last() {
+            List<OpJavaElement> elems = getJavaElements();
+            return elems.get(elems.size() - 1);
+        }
+    }
+}
@@ -58,7 +58,7 @@ public class Parser {
     }
 
     @SuppressWarnings("unchecked")
-    private static CompilationUnit createCompilationUnit(String code) {
+    static CompilationUnit createCompilationUnit(String code) {
         ASTParser parser = ASTParser.newParser(JLS_LEVEL);
         Hashtable<String, String> options = (Hashtable<String, String>) JavaCore.getOptions();
         options.put(JavaCore.COMPILER_CODEGEN_TARGET_PLATFORM, JC_VERSION);
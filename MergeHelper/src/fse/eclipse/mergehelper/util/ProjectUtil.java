@@ -9,6 +9,7 @@ import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.IPath;
 
+import fse.eclipse.branchrecorder.commit.history.CommitBlobStore;
 import fse.eclipse.branchrecorder.util.PathUtil;
 
 public class ProjectUtil {
@@ -66,7 +67,7 @@ public class ProjectUtil {
 
         File[] branchDirs = new File(getProjectHistoryPath(project)).listFiles();
         for (File dir : branchDirs) {
-            if (dir.isDirectory()) {
+            if (dir.isDirectory() && !dir.getName().equals(CommitBlobStore.BlobDirName)) {
                 nameList.add(dir.getName());
             }
         }